@@ -14,6 +14,9 @@ public final class AsgAI extends JavaPlugin {
     public void onEnable() {
         instance = this;
 
+        // Load configuration
+        saveDefaultConfig();
+
         // Initialize custom mob system
         this.customMobManager = new CustomMobManager(this);
 
@@ -30,6 +33,7 @@ public final class AsgAI extends JavaPlugin {
     public void onDisable() {
         if (customMobManager != null) {
             // Clean up any remaining tasks
+            customMobManager.shutdown();
             customMobManager.cleanup();
         }
         getLogger().info("AsgAI Plugin disabled!");
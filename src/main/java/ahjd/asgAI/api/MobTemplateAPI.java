@@ -1,11 +1,17 @@
 package ahjd.asgAI.api;
 
+import ahjd.asgAI.custommobs.CustomMobInstance;
 import ahjd.asgAI.custommobs.CustomMobManager;
 import ahjd.asgAI.custommobs.CustomMobTemplate;
+import ahjd.asgAI.custommobs.spawning.SpawnBatch;
 import org.bukkit.Location;
 import org.bukkit.entity.LivingEntity;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.function.Consumer;
+
 /**
  * API class for spawning registered AI mob templates by ID.
  * Usage: MobTemplateAPI.spawnMob("aggressive_zombie", location);
@@ -28,6 +34,26 @@ public class MobTemplateAPI {
         }
     }
 
+    /**
+     * Queues a mob of the template at every location. The template is resolved once and the mobs
+     * are spawned over the next ticks within the configured per-tick budget, closest to a player
+     * first, so large waves do not stall a single tick.
+     * Usage: MobTemplateAPI.spawnMobs("guard_zombie", locations).getFuture().thenAccept(mobs -> ...);
+     * @param templateId The template ID
+     * @param locations The Bukkit locations to spawn at
+     * @return The handle of the batch, or null if template not found
+     */
+    @Nullable
+    public static SpawnBatch spawnMobs(String templateId, Collection<Location> locations) {
+        CustomMobManager manager = CustomMobManager.getInstance();
+        if (manager == null) return null;
+        try {
+            return manager.spawnCustomMobs(templateId, locations, null);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
     /**
      * Checks if a mob template with the given ID exists.
      * @param templateId The template ID
@@ -48,4 +74,47 @@ public class MobTemplateAPI {
         CustomMobManager manager = CustomMobManager.getInstance();
         return manager != null ? manager.getTemplate(templateId) : null;
     }
+
+    /**
+     * Counts the living mobs of a template in loaded chunks. Mobs hibernated with an unloaded chunk are
+     * not included, add {@link #countHibernatedMobs} for those. Cheap enough to call every tick.
+     * @param templateId The template ID
+     * @return The number of tracked mobs of the template
+     */
+    public static int countMobs(String templateId) {
+        CustomMobManager manager = CustomMobManager.getInstance();
+        return manager != null ? manager.getMobCount(templateId) : 0;
+    }
+
+    /**
+     * Counts the mobs of a template that are hibernated because their chunk unloaded. Only mobs hibernated
+     * since the plugin enabled are known, mobs saved by an earlier run only show up in {@link #countMobs} once they load again.
+     * @param templateId The template ID
+     * @return The number of hibernated mobs of the template
+     */
+    public static int countHibernatedMobs(String templateId) {
+        CustomMobManager manager = CustomMobManager.getInstance();
+        return manager != null ? manager.getHibernatedCount(templateId) : 0;
+    }
+
+    /**
+     * Gets the living mobs of a template.
+     * @param templateId The template ID
+     * @return An unmodifiable live view, copy it before spawning or removing mobs while iterating
+     */
+    public static Collection<CustomMobInstance> getMobs(String templateId) {
+        CustomMobManager manager = CustomMobManager.getInstance();
+        return manager != null ? manager.getMobsOfTemplate(templateId) : Collections.emptyList();
+    }
+
+    /**
+     * Visits the living mobs of a template without copying them.
+     * @param templateId The template ID
+     * @param visitor Called with the entity of every mob
+     */
+    public static void forEachMob(String templateId, Consumer<LivingEntity> visitor) {
+        for (CustomMobInstance instance : getMobs(templateId)) {
+            visitor.accept(instance.getEntity());
+        }
+    }
 }
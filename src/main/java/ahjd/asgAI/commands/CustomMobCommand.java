@@ -4,6 +4,12 @@ import ahjd.asgAI.AsgAI;
 import ahjd.asgAI.custommobs.CustomMobInstance;
 import ahjd.asgAI.custommobs.CustomMobManager;
 import ahjd.asgAI.custommobs.CustomMobTemplate;
+import ahjd.asgAI.custommobs.pathing.AsyncPathfinder;
+import ahjd.asgAI.custommobs.pathing.HierarchicalPathfinder;
+import ahjd.asgAI.custommobs.pathing.PathCache;
+import ahjd.asgAI.custommobs.pathing.PathStats;
+import ahjd.asgAI.custommobs.profiler.AIProfiler;
+import ahjd.asgAI.custommobs.profiler.ProfileTimer;
 import org.bukkit.ChatColor;
 import org.bukkit.Location;
 import org.bukkit.command.Command;
@@ -47,6 +53,10 @@ public class CustomMobCommand implements CommandExecutor, TabCompleter {
                 return handleCleanup(sender, args);
             case "templates":
                 return handleTemplates(sender, args);
+            case "stats":
+                return handleStats(sender, args);
+            case "profile":
+                return handleProfile(sender, args);
             default:
                 sendHelp(sender);
                 return true;
@@ -90,25 +100,27 @@ public class CustomMobCommand implements CommandExecutor, TabCompleter {
         
         Location spawnLocation = player.getLocation();
         
-        try {
-            for (int i = 0; i < amount; i++) {
-                // Offset spawn location slightly for multiple mobs
-                Location offsetLocation = spawnLocation.clone().add(
-                    (Math.random() - 0.5) * 4, 0, (Math.random() - 0.5) * 4
-                );
-                
-                LivingEntity entity = mobManager.spawnCustomMob(templateId, offsetLocation);
-                
-                if (i == 0) { // Only send message for first mob
-                    sender.sendMessage(ChatColor.GREEN + "Spawned " + amount + "x " + 
-                        template.getDisplayName() + ChatColor.GREEN + " at your location!");
-                }
-            }
-        } catch (Exception e) {
-            sender.sendMessage(ChatColor.RED + "Failed to spawn mob: " + e.getMessage());
-            plugin.getLogger().warning("Failed to spawn custom mob: " + e.getMessage());
+        // Mobs spawned together form a squad unless their template already names one
+        String squadId = amount > 1 && template.getSquad() == null ? mobManager.getSquads().nextBatchId() : null;
+        
+        List<Location> locations = new ArrayList<>(amount);
+        for (int i = 0; i < amount; i++) {
+            // Offset spawn location slightly for multiple mobs
+            locations.add(spawnLocation.clone().add(
+                (Math.random() - 0.5) * 4, 0, (Math.random() - 0.5) * 4
+            ));
         }
         
+        int requested = amount;
+        mobManager.spawnCustomMobs(templateId, locations, squadId).getFuture().thenAccept(mobs -> {
+            if (mobs.size() == requested) {
+                sender.sendMessage(ChatColor.GREEN + "Spawned " + requested + "x " + 
+                    template.getDisplayName() + ChatColor.GREEN + " at your location!");
+            } else {
+                sender.sendMessage(ChatColor.RED + "Spawned " + mobs.size() + " of " + requested + " mobs, see the console for errors.");
+            }
+        });
+        
         return true;
     }
     
@@ -204,14 +216,11 @@ public class CustomMobCommand implements CommandExecutor, TabCompleter {
         Location playerLoc = player.getLocation();
         int removed = 0;
         
-        for (CustomMobInstance instance : new ArrayList<>(mobManager.getActiveMobs())) {
+        for (CustomMobInstance instance : mobManager.findMobs(player.getWorld(), playerLoc, radius, null)) {
             if (instance.isActive()) {
-                LivingEntity entity = instance.getEntity();
-                if (entity.getLocation().distance(playerLoc) <= radius) {
-                    entity.remove();
-                    mobManager.removeCustomMob(instance.getEntityId());
-                    removed++;
-                }
+                instance.getEntity().remove();
+                mobManager.removeCustomMob(instance.getEntityId());
+                removed++;
             }
         }
         
@@ -243,6 +252,85 @@ public class CustomMobCommand implements CommandExecutor, TabCompleter {
         return true;
     }
     
+    private boolean handleStats(CommandSender sender, String[] args) {
+        if (args.length >= 2 && args[1].equalsIgnoreCase("reset")) {
+            mobManager.getPathStats().reset();
+            mobManager.getPathfinder().resetStats();
+            mobManager.getFlowFields().resetStats();
+            mobManager.getHierarchicalPathfinder().resetStats();
+            mobManager.getSpawnQueue().resetStats();
+            sender.sendMessage(ChatColor.GREEN + "Reset AI statistics.");
+            return true;
+        }
+        
+        PathStats paths = mobManager.getPathStats();
+        sender.sendMessage(ChatColor.GOLD + "=== Custom Mob AI Stats ===");
+        sender.sendMessage(ChatColor.WHITE + "Tracked mobs: " + mobManager.getActiveMobs().size());
+        sender.sendMessage(String.format(ChatColor.WHITE + "Governor: level %d, %.2f / %.2f ms per tick",
+            mobManager.getGovernor().getLevel(),
+            mobManager.getGovernor().getAverageMillis(),
+            mobManager.getGovernor().getBudgetMillis()));
+        sender.sendMessage(ChatColor.WHITE + "Sensor registrations: " + mobManager.getSensorScheduler().getRegistrationCount());
+        sender.sendMessage(ChatColor.WHITE + "Clusters: " + mobManager.getClusters().getClusterCount()
+            + " (" + mobManager.getClusters().getClusteredMobCount() + " mobs)");
+        sender.sendMessage(String.format(ChatColor.WHITE + "Paths: %d computed, %d reused, %d cached (%.1f%% not computed), %d failed",
+            paths.getComputed(), paths.getReused(), paths.getCached(), paths.getReuseRatio() * 100.0, paths.getFailed()));
+        PathCache cache = mobManager.getPathCache();
+        sender.sendMessage(ChatColor.WHITE + "Path cache: " + cache.size() + " paths, " + cache.getHits() + " hits, "
+            + cache.getMisses() + " misses, " + cache.getInvalidations() + " invalidated");
+        AsyncPathfinder pathfinder = mobManager.getPathfinder();
+        sender.sendMessage(ChatColor.WHITE + "Async paths: " + pathfinder.getQueued() + " queued, " + pathfinder.getInFlight()
+            + " searching, " + pathfinder.getCompleted() + "/" + pathfinder.getSubmitted() + " delivered, "
+            + pathfinder.getRefused() + " refused, " + pathfinder.getEvicted() + " evicted");
+        sender.sendMessage(ChatColor.WHITE + "Flow fields: " + mobManager.getFlowFields().getTrackedCount() + " targets, "
+            + mobManager.getFlowFields().getBuilds() + " builds");
+        HierarchicalPathfinder routes = mobManager.getHierarchicalPathfinder();
+        sender.sendMessage(ChatColor.WHITE + "Routes: " + routes.getRoutes() + " found, " + routes.getFailures() + " failed, "
+            + routes.getCachedSections() + " sections cached, " + routes.getInvalidations() + " invalidated");
+        sender.sendMessage(ChatColor.WHITE + "Defend zones: " + mobManager.getZones().size() + " registered");
+        sender.sendMessage(ChatColor.WHITE + "Spawn queue: " + mobManager.getSpawnQueue().getQueued() + " queued, "
+            + mobManager.getSpawnQueue().getSpawned() + " spawned, " + mobManager.getSpawnQueue().getFailed() + " failed");
+        return true;
+    }
+    
+    private boolean handleProfile(CommandSender sender, String[] args) {
+        AIProfiler profiler = mobManager.getProfiler();
+        if (args.length >= 2) {
+            switch (args[1].toLowerCase()) {
+                case "on":
+                    profiler.setEnabled(true);
+                    sender.sendMessage(ChatColor.GREEN + "AI profiling enabled.");
+                    return true;
+                case "off":
+                    profiler.setEnabled(false);
+                    sender.sendMessage(ChatColor.GREEN + "AI profiling disabled.");
+                    return true;
+                case "reset":
+                    profiler.reset();
+                    sender.sendMessage(ChatColor.GREEN + "Reset AI profile.");
+                    return true;
+                default:
+                    sender.sendMessage(ChatColor.RED + "Usage: /custommob profile [on|off|reset]");
+                    return true;
+            }
+        }
+        
+        List<ProfileTimer.Snapshot> top = profiler.getTop(10);
+        sender.sendMessage(ChatColor.GOLD + "=== AI Profile (" + (profiler.isEnabled() ? "on" : "off") + ") ===");
+        if (top.isEmpty()) {
+            sender.sendMessage(ChatColor.YELLOW + "Nothing recorded, enable it with /custommob profile on");
+            return true;
+        }
+        for (ProfileTimer.Snapshot snapshot : top) {
+            ProfileTimer timer = snapshot.timer();
+            sender.sendMessage(String.format(ChatColor.WHITE + "%s %s [%s]: %d calls, %.1f ms total, p50 %.1f us, p99 %.1f us, max %.1f us",
+                timer.getCategory(), timer.getName(), timer.getTemplateId(), snapshot.calls(),
+                snapshot.totalNanos() / 1_000_000.0, snapshot.p50Nanos() / 1_000.0,
+                snapshot.p99Nanos() / 1_000.0, snapshot.maxNanos() / 1_000.0));
+        }
+        return true;
+    }
+    
     private void sendHelp(CommandSender sender) {
         sender.sendMessage(ChatColor.GOLD + "=== Custom Mob Commands ===");
         sender.sendMessage(ChatColor.WHITE + "/custommob spawn <template> [amount] - Spawn custom mob(s)");
@@ -251,12 +339,14 @@ public class CustomMobCommand implements CommandExecutor, TabCompleter {
         sender.sendMessage(ChatColor.WHITE + "/custommob remove [radius] - Remove custom mobs near you");
         sender.sendMessage(ChatColor.WHITE + "/custommob cleanup - Clean up dead mobs from tracking");
         sender.sendMessage(ChatColor.WHITE + "/custommob templates - List available templates");
+        sender.sendMessage(ChatColor.WHITE + "/custommob stats [reset] - Show AI performance statistics");
+        sender.sendMessage(ChatColor.WHITE + "/custommob profile [on|off|reset] - Show the most expensive goals and sensors");
     }
     
     @Override
     public List<String> onTabComplete(CommandSender sender, Command command, String alias, String[] args) {
         if (args.length == 1) {
-            return Arrays.asList("spawn", "list", "info", "remove", "cleanup", "templates")
+            return Arrays.asList("spawn", "list", "info", "remove", "cleanup", "templates", "stats", "profile")
                 .stream()
                 .filter(s -> s.toLowerCase().startsWith(args[0].toLowerCase()))
                 .collect(Collectors.toList());
@@ -268,6 +358,11 @@ public class CustomMobCommand implements CommandExecutor, TabCompleter {
                     .filter(s -> s.toLowerCase().startsWith(args[1].toLowerCase()))
                     .collect(Collectors.toList());
             }
+            if (args[0].equalsIgnoreCase("profile")) {
+                return Arrays.asList("on", "off", "reset").stream()
+                    .filter(s -> s.startsWith(args[1].toLowerCase()))
+                    .collect(Collectors.toList());
+            }
         }
         
         return new ArrayList<>();
@@ -0,0 +1,36 @@
+package ahjd.asgAI.custommobs;
+
+/**
+ * How much AI a custom mob runs, based on its distance to the nearest player.
+ * The ranges are configured per template with {@link CustomMobTemplate#setActivationRange(double, double)}.
+ */
+public enum ActivationLevel {
+    /**
+     * Within the full range of a player, goals and sensors run at their normal rate
+     */
+    FULL(1),
+
+    /**
+     * Between the full and reduced range, goals start less often and sensors run less often
+     */
+    REDUCED(4),
+
+    /**
+     * Beyond the reduced range, goal selectors are not ticked and sensors are parked until a player comes back
+     */
+    FROZEN(1);
+
+    private final int intervalMultiplier;
+
+    ActivationLevel(int intervalMultiplier) {
+        this.intervalMultiplier = intervalMultiplier;
+    }
+
+    /**
+     * Gets the factor sensor intervals and goal start checks are stretched by at this level.
+     * @return The interval multiplier
+     */
+    public int getIntervalMultiplier() {
+        return intervalMultiplier;
+    }
+}
@@ -0,0 +1,185 @@
+package ahjd.asgAI.custommobs;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.core.SectionPos;
+import net.minecraft.util.Mth;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.Level;
+import org.bukkit.craftbukkit.entity.CraftLivingEntity;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.WeakHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Spatial index of the tracked custom mobs, bucketed by world and chunk. Mobs are moved to their new
+ * chunk in {@link #tick()}, which only reads each mob's position, so a radius query touches the
+ * chunks the radius overlaps instead of every tracked mob. Main thread only.
+ */
+public class CustomMobIndex {
+    private final Map<Level, Long2ObjectOpenHashMap<List<Entry>>> cellsByLevel = new WeakHashMap<>();
+    private final Map<UUID, Entry> entriesById = new HashMap<>();
+    private final List<Entry> entries = new ArrayList<>();
+
+    /**
+     * Starts indexing a mob at its current position.
+     * @param instance The tracked mob
+     */
+    public void add(CustomMobInstance instance) {
+        if (!(instance.getEntity() instanceof CraftLivingEntity craftEntity)) {
+            return;
+        }
+        Entry entry = new Entry(instance, craftEntity.getHandle());
+        Entry previous = entriesById.put(instance.getEntityId(), entry);
+        if (previous != null) {
+            unlink(previous);
+        }
+        entry.slot = entries.size();
+        entries.add(entry);
+        link(entry, entry.handle.level(), chunkOf(entry.handle));
+    }
+
+    /**
+     * Stops indexing a mob.
+     * @param entityId The mob's entity id
+     */
+    public void remove(UUID entityId) {
+        Entry entry = entriesById.remove(entityId);
+        if (entry != null) {
+            unlink(entry);
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Moves every mob that crossed into another chunk or world since the last tick.
+     */
+    public void tick() {
+        for (int i = 0, size = entries.size(); i < size; i++) {
+            Entry entry = entries.get(i);
+            Level level = entry.handle.level();
+            long chunk = chunkOf(entry.handle);
+            if (chunk != entry.chunk || level != entry.level) {
+                removeFromCell(entry);
+                link(entry, level, chunk);
+            }
+        }
+    }
+
+    /**
+     * Collects the tracked mobs within the radius.
+     * @param world The world to search
+     * @param x Center x
+     * @param y Center y
+     * @param z Center z
+     * @param radius The search radius
+     * @param templateId Only mobs of this template, or null for every template
+     * @return The mobs found, in no particular order
+     */
+    public List<CustomMobInstance> findMobs(Level world, double x, double y, double z, double radius, @Nullable String templateId) {
+        List<CustomMobInstance> found = new ArrayList<>();
+        forEachMob(world, x, y, z, radius, templateId, found::add);
+        return found;
+    }
+
+    /**
+     * Visits the tracked mobs within the radius without copying them. The visitor must not add or
+     * remove tracked mobs, collect them with {@link #findMobs} to do that.
+     * @param world The world to search
+     * @param x Center x
+     * @param y Center y
+     * @param z Center z
+     * @param radius The search radius
+     * @param templateId Only mobs of this template, or null for every template
+     * @param visitor Called for every mob found
+     */
+    public void forEachMob(Level world, double x, double y, double z, double radius, @Nullable String templateId,
+                           Consumer<CustomMobInstance> visitor) {
+        Long2ObjectOpenHashMap<List<Entry>> cells = cellsByLevel.get(world);
+        if (cells == null) {
+            return;
+        }
+        double radiusSqr = radius * radius;
+        int minChunkX = SectionPos.blockToSectionCoord(Mth.floor(x - radius));
+        int maxChunkX = SectionPos.blockToSectionCoord(Mth.floor(x + radius));
+        int minChunkZ = SectionPos.blockToSectionCoord(Mth.floor(z - radius));
+        int maxChunkZ = SectionPos.blockToSectionCoord(Mth.floor(z + radius));
+        for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
+            for (int chunkZ = minChunkZ; chunkZ <= maxChunkZ; chunkZ++) {
+                List<Entry> cell = cells.get(ChunkPos.asLong(chunkX, chunkZ));
+                if (cell == null) {
+                    continue;
+                }
+                for (int i = 0, size = cell.size(); i < size; i++) {
+                    Entry entry = cell.get(i);
+                    if (entry.handle.isRemoved() || entry.handle.distanceToSqr(x, y, z) > radiusSqr) {
+                        continue;
+                    }
+                    if (templateId == null || templateId.equals(entry.instance.getTemplateId())) {
+                        visitor.accept(entry.instance);
+                    }
+                }
+            }
+        }
+    }
+
+    public void clear() {
+        cellsByLevel.clear();
+        entriesById.clear();
+        entries.clear();
+    }
+
+    private void link(Entry entry, Level level, long chunk) {
+        entry.level = level;
+        entry.chunk = chunk;
+        cellsByLevel.computeIfAbsent(level, key -> new Long2ObjectOpenHashMap<>())
+            .computeIfAbsent(chunk, key -> new ArrayList<>(4))
+            .add(entry);
+    }
+
+    private void unlink(Entry entry) {
+        removeFromCell(entry);
+        // Swap the last entry into the freed slot
+        Entry last = entries.remove(entries.size() - 1);
+        if (last != entry) {
+            entries.set(entry.slot, last);
+            last.slot = entry.slot;
+        }
+    }
+
+    private void removeFromCell(Entry entry) {
+        Long2ObjectOpenHashMap<List<Entry>> cells = cellsByLevel.get(entry.level);
+        if (cells == null) {
+            return;
+        }
+        List<Entry> cell = cells.get(entry.chunk);
+        if (cell != null && cell.remove(entry) && cell.isEmpty()) {
+            cells.remove(entry.chunk);
+        }
+    }
+
+    private static long chunkOf(net.minecraft.world.entity.Entity handle) {
+        return ChunkPos.asLong(SectionPos.blockToSectionCoord(handle.getBlockX()), SectionPos.blockToSectionCoord(handle.getBlockZ()));
+    }
+
+    private static final class Entry {
+        private final CustomMobInstance instance;
+        private final net.minecraft.world.entity.LivingEntity handle;
+        private Level level;
+        private long chunk;
+        private int slot;
+
+        private Entry(CustomMobInstance instance, net.minecraft.world.entity.LivingEntity handle) {
+            this.instance = instance;
+            this.handle = handle;
+        }
+    }
+}
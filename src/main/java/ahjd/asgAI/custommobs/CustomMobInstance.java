@@ -1,5 +1,7 @@
 package ahjd.asgAI.custommobs;
 
+import net.minecraft.world.entity.Mob;
+import org.bukkit.craftbukkit.entity.CraftLivingEntity;
 import org.bukkit.entity.LivingEntity;
 
 import java.util.HashMap;
@@ -9,26 +11,59 @@ import java.util.UUID;
 public class CustomMobInstance {
     private final LivingEntity entity;
     private final CustomMobTemplate template;
+    private final TemplatePlan plan;
     private final Map<String, Object> instanceData;
     private final long spawnTime;
     private boolean isActive;
+    private ActivationLevel activationLevel;
     
     public CustomMobInstance(LivingEntity entity, CustomMobTemplate template) {
+        this(entity, template, template.compile());
+    }
+    
+    /**
+     * @param entity The custom mob
+     * @param template The template it was spawned from
+     * @param plan The compiled version of the template its AI was built from
+     */
+    public CustomMobInstance(LivingEntity entity, CustomMobTemplate template, TemplatePlan plan) {
         this.entity = entity;
         this.template = template;
+        this.plan = plan;
         this.instanceData = new HashMap<>();
         this.spawnTime = System.currentTimeMillis();
         this.isActive = true;
+        this.activationLevel = ActivationLevel.FULL;
     }
     
     public LivingEntity getEntity() {
         return entity;
     }
     
+    /**
+     * Gets the NMS mob behind the entity.
+     * @return The NMS mob, or null if the entity is not a mob
+     */
+    public Mob getMob() {
+        if (entity instanceof CraftLivingEntity craftEntity && craftEntity.getHandle() instanceof Mob mob) {
+            return mob;
+        }
+        return null;
+    }
+    
     public CustomMobTemplate getTemplate() {
         return template;
     }
     
+    /**
+     * Gets the compiled template the mob's AI was built from, which stays the same when the template
+     * is changed later.
+     * @return The plan
+     */
+    public TemplatePlan getPlan() {
+        return plan;
+    }
+    
     public UUID getEntityId() {
         return entity.getUniqueId();
     }
@@ -53,6 +88,19 @@ public class CustomMobInstance {
         this.isActive = active;
     }
     
+    /**
+     * Gets how much AI this mob currently runs. Mobs start at full activation
+     * until their activation sensor first sees where the players are.
+     * @return The current activation level
+     */
+    public ActivationLevel getActivationLevel() {
+        return activationLevel;
+    }
+    
+    public void setActivationLevel(ActivationLevel activationLevel) {
+        this.activationLevel = activationLevel;
+    }
+    
     public void setInstanceData(String key, Object value) {
         instanceData.put(key, value);
     }
@@ -88,6 +136,7 @@ public class CustomMobInstance {
                 ", templateId='" + getTemplateId() + '\'' +
                 ", spawnTime=" + spawnTime +
                 ", isActive=" + isActive() +
+                ", activationLevel=" + activationLevel +
                 '}';
     }
 }
\ No newline at end of file
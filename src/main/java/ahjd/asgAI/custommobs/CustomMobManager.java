@@ -1,38 +1,213 @@
 package ahjd.asgAI.custommobs;
 
 import ahjd.asgAI.AsgAI;
+import ahjd.asgAI.custommobs.async.AIWorkerPool;
+import ahjd.asgAI.custommobs.clusters.ClusterManager;
 import ahjd.asgAI.custommobs.goals.*;
+import ahjd.asgAI.custommobs.governor.AIGovernor;
+import ahjd.asgAI.custommobs.hibernation.HibernationManager;
+import ahjd.asgAI.custommobs.pathing.AsyncPathfinder;
+import ahjd.asgAI.custommobs.pathing.BlockChangeTracker;
+import ahjd.asgAI.custommobs.pathing.FlowFieldManager;
+import ahjd.asgAI.custommobs.pathing.HierarchicalPathfinder;
+import ahjd.asgAI.custommobs.pathing.PathCache;
+import ahjd.asgAI.custommobs.pathing.PathStats;
+import ahjd.asgAI.custommobs.perception.PerceptionCache;
+import ahjd.asgAI.custommobs.perception.PlayerSpatialIndex;
+import ahjd.asgAI.custommobs.profiler.AIProfiler;
 import ahjd.asgAI.custommobs.sensors.*;
+import ahjd.asgAI.custommobs.spawning.SpawnBatch;
+import ahjd.asgAI.custommobs.spawning.SpawnQueue;
+import ahjd.asgAI.custommobs.squads.SquadManager;
+import ahjd.asgAI.custommobs.zones.ZoneRegistry;
 import ahjd.asgAI.utils.RemoveVanillaAI;
 import net.minecraft.world.entity.Mob;
 import net.minecraft.world.entity.ai.goal.Goal;
 import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.craftbukkit.CraftWorld;
 import org.bukkit.craftbukkit.entity.CraftLivingEntity;
 import org.bukkit.entity.LivingEntity;
+import org.bukkit.scheduler.BukkitRunnable;
+import org.bukkit.scheduler.BukkitTask;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 public class CustomMobManager {
     private static CustomMobManager instance;
     private final Map<String, CustomMobTemplate> mobTemplates;
     private final Map<UUID, CustomMobInstance> activeMobs;
+    private final CustomMobIndex mobIndex;
+    private final Map<String, Set<CustomMobInstance>> mobsByTemplate;
+    private final AIGovernor governor;
+    private final SensorScheduler sensorScheduler;
+    private final PerceptionCache perception;
+    private final PlayerSpatialIndex playerIndex;
+    private final AIWorkerPool workerPool;
+    private final ActivationSensor activationSensor;
+    private final HibernationManager hibernation;
+    private final SquadManager squads;
+    private final ClusterManager clusters;
+    private final PathStats pathStats;
+    private final PathCache pathCache;
+    private final AsyncPathfinder pathfinder;
+    private final FlowFieldManager flowFields;
+    private final HierarchicalPathfinder hierarchicalPathfinder;
+    private final BlockChangeTracker blockChanges;
+    private final ZoneRegistry zones;
+    private final AIProfiler profiler;
+    private final SpawnQueue spawnQueue;
     private final AsgAI plugin;
+    private BukkitTask tickTask;
     
     public CustomMobManager(AsgAI plugin) {
         this.plugin = plugin;
         this.mobTemplates = new ConcurrentHashMap<>();
         this.activeMobs = new ConcurrentHashMap<>();
+        this.mobIndex = new CustomMobIndex();
+        this.mobsByTemplate = new ConcurrentHashMap<>();
+        this.governor = new AIGovernor(plugin.getConfig().getDouble("governor.budget-ms", 5.0));
+        this.profiler = new AIProfiler(plugin.getConfig().getBoolean("profiler.enabled", false));
+        this.perception = new PerceptionCache();
+        this.clusters = new ClusterManager();
+        this.pathStats = new PathStats();
+        this.pathCache = new PathCache(plugin.getConfig().getInt("pathing.cache-size", 512));
+        this.sensorScheduler = new SensorScheduler(governor, perception, clusters, profiler, plugin.getConfig().getInt("sensors.event-fallback-multiplier", 8));
+        this.playerIndex = new PlayerSpatialIndex();
+        this.workerPool = new AIWorkerPool(plugin.getConfig().getInt("async.worker-threads", 0));
+        this.pathfinder = new AsyncPathfinder(workerPool,
+            plugin.getConfig().getInt("pathing.async-queue-size", 256),
+            plugin.getConfig().getInt("pathing.async-max-in-flight", 0));
+        this.flowFields = new FlowFieldManager(workerPool);
+        this.hierarchicalPathfinder = new HierarchicalPathfinder(workerPool,
+            plugin.getConfig().getInt("pathing.route-max-in-flight", 4),
+            plugin.getConfig().getInt("pathing.route-cache-sections", 4096));
+        this.blockChanges = new BlockChangeTracker();
+        blockChanges.addListener(pathCache);
+        blockChanges.addListener(hierarchicalPathfinder);
+        blockChanges.addListener(flowFields);
+        this.zones = new ZoneRegistry();
+        this.spawnQueue = new SpawnQueue(this,
+            plugin.getConfig().getInt("spawning.per-tick", 20),
+            plugin.getConfig().getDouble("spawning.budget-ms", 2.0));
+        this.activationSensor = new ActivationSensor();
+        this.squads = new SquadManager();
+        this.hibernation = new HibernationManager(plugin, this, plugin.getConfig().getInt("hibernation.rehydrate-per-tick", 32));
+        plugin.getServer().getPluginManager().registerEvents(governor, plugin);
+        plugin.getServer().getPluginManager().registerEvents(hibernation, plugin);
+        plugin.getServer().getPluginManager().registerEvents(sensorScheduler.getWakeIndex(), plugin);
+        plugin.getServer().getPluginManager().registerEvents(blockChanges, plugin);
+        plugin.getServer().getPluginManager().registerEvents(zones, plugin);
+        plugin.getServer().getPluginManager().registerEvents(new CustomMobRemovalListener(this), plugin);
         instance = this;
         
         // Register default templates
         registerDefaultTemplates();
+        
+        // Pick up custom mobs that were loaded before the plugin enabled
+        hibernation.queueLoaded();
+        
+        // Drive all per-tick AI work from a single task
+        startTickTask();
     }
     
     public static CustomMobManager getInstance() {
         return instance;
     }
     
+    public AIGovernor getGovernor() {
+        return governor;
+    }
+    
+    public AIProfiler getProfiler() {
+        return profiler;
+    }
+    
+    public SensorScheduler getSensorScheduler() {
+        return sensorScheduler;
+    }
+    
+    public PerceptionCache getPerception() {
+        return perception;
+    }
+    
+    public PlayerSpatialIndex getPlayerIndex() {
+        return playerIndex;
+    }
+    
+    public AIWorkerPool getWorkerPool() {
+        return workerPool;
+    }
+    
+    public HibernationManager getHibernation() {
+        return hibernation;
+    }
+    
+    public SquadManager getSquads() {
+        return squads;
+    }
+    
+    public ClusterManager getClusters() {
+        return clusters;
+    }
+    
+    public PathStats getPathStats() {
+        return pathStats;
+    }
+    
+    public PathCache getPathCache() {
+        return pathCache;
+    }
+    
+    public AsyncPathfinder getPathfinder() {
+        return pathfinder;
+    }
+    
+    public FlowFieldManager getFlowFields() {
+        return flowFields;
+    }
+    
+    public HierarchicalPathfinder getHierarchicalPathfinder() {
+        return hierarchicalPathfinder;
+    }
+    
+    public ZoneRegistry getZones() {
+        return zones;
+    }
+    
+    public SpawnQueue getSpawnQueue() {
+        return spawnQueue;
+    }
+    
+    private void startTickTask() {
+        this.tickTask = new BukkitRunnable() {
+            @Override
+            public void run() {
+                tick();
+            }
+        }.runTaskTimer(plugin, 1L, 1L);
+    }
+    
+    private void tick() {
+        // Spawning has its own budget and is not charged to the governor
+        spawnQueue.tick();
+        long start = System.nanoTime();
+        // Apply results of async work first so sensors see the committed state
+        workerPool.drainCommits();
+        hibernation.tick();
+        mobIndex.tick();
+        clusters.tick(activeMobs.values());
+        sensorScheduler.tick();
+        // Requests queued by goals during the last tick
+        pathfinder.tick();
+        flowFields.tick();
+        zones.tick();
+        governor.record(System.nanoTime() - start);
+    }
+    
     private void registerDefaultTemplates() {
         // Example: Aggressive Zombie Template
         CustomMobTemplate aggressiveZombie = new CustomMobTemplate("aggressive_zombie")
@@ -51,6 +226,23 @@ public class CustomMobManager {
             
         registerTemplate(aggressiveZombie);
         
+        // Example: Horde Zombie Template, chases along flow fields shared with the rest of the horde
+        CustomMobTemplate hordeZombie = new CustomMobTemplate("horde_zombie")
+            .setBaseEntity(org.bukkit.entity.EntityType.ZOMBIE)
+            .setDisplayName("§4Horde Zombie")
+            .setHealth(40.0)
+            .setSpeed(0.35)
+            .setAttackDamage(6.0)
+            .setFollowRange(32.0)
+            .addGoal(1, new CustomFlowFieldChaseGoal())
+            .addGoal(2, new CustomChaseGoal())
+            .addGoal(3, new CustomWanderGoal())
+            .addTargetGoal(1, new CustomNearestPlayerTargetGoal())
+            .addSensor(new CustomPlayerSensor())
+            .addSensor(new CustomHostileSensor());
+            
+        registerTemplate(hordeZombie);
+        
         // Example: Guard Zombie Template
         CustomMobTemplate guardZombie = new CustomMobTemplate("guard_zombie")
             .setBaseEntity(org.bukkit.entity.EntityType.ZOMBIE)
@@ -70,6 +262,8 @@ public class CustomMobManager {
     }
     
     public void registerTemplate(CustomMobTemplate template) {
+        // Compile up front so the first spawn does not pay for it
+        template.compile();
         mobTemplates.put(template.getId(), template);
         plugin.getLogger().info("Registered custom mob template: " + template.getId());
     }
@@ -83,31 +277,102 @@ public class CustomMobManager {
     }
     
     public LivingEntity spawnCustomMob(String templateId, Location location) {
+        return spawnCustomMob(templateId, location, null);
+    }
+    
+    /**
+     * Spawns a custom mob and puts it into a squad.
+     * @param templateId The template to spawn
+     * @param location Where to spawn it
+     * @param squadId The squad to join, or null to use the template's squad if it has one
+     * @return The spawned entity
+     */
+    public LivingEntity spawnCustomMob(String templateId, Location location, String squadId) {
         CustomMobTemplate template = getTemplate(templateId);
         if (template == null) {
             throw new IllegalArgumentException("Unknown mob template: " + templateId);
         }
-        
+        return spawnCustomMob(template, location, squadId);
+    }
+    
+    /**
+     * Queues a mob of the template at every location. The mobs are spawned over the next ticks
+     * within the per-tick spawn budget, closest to a player first.
+     * @param templateId The template to spawn
+     * @param locations Where to spawn the mobs
+     * @param squadId The squad to join, or null to use the template's squad if it has one
+     * @return The handle of the batch
+     */
+    public SpawnBatch spawnCustomMobs(String templateId, Collection<Location> locations, String squadId) {
+        CustomMobTemplate template = getTemplate(templateId);
+        if (template == null) {
+            throw new IllegalArgumentException("Unknown mob template: " + templateId);
+        }
+        return spawnQueue.submit(template, locations, squadId);
+    }
+    
+    /**
+     * Spawns a custom mob of an already resolved template and puts it into a squad.
+     * @param template The template to spawn
+     * @param location Where to spawn it
+     * @param squadId The squad to join, or null to use the template's squad if it has one
+     * @return The spawned entity
+     */
+    public LivingEntity spawnCustomMob(CustomMobTemplate template, Location location, String squadId) {
         // Spawn the base entity
         LivingEntity entity = (LivingEntity) location.getWorld().spawnEntity(location, template.getBaseEntity());
         
+        // Track the custom mob first so sensors and goals can look it up while attaching
+        CustomMobInstance instance = new CustomMobInstance(entity, template, template.compile());
+        track(instance);
+        hibernation.tag(entity, template);
+        
         // Apply customizations
-        applyTemplate(entity, template);
+        applyTemplate(entity, instance);
         
-        // Track the custom mob
-        CustomMobInstance instance = new CustomMobInstance(entity, template);
-        activeMobs.put(entity.getUniqueId(), instance);
+        String squad = squadId != null ? squadId : template.getSquad();
+        if (squad != null && entity instanceof CraftLivingEntity craftEntity) {
+            squads.join((Mob) craftEntity.getHandle(), squad);
+        }
         
         return entity;
     }
     
-    private void applyTemplate(LivingEntity entity, CustomMobTemplate template) {
+    /**
+     * Rebuilds the AI of a custom mob that was hibernated with its chunk and tracks it again.
+     * Health, name and attributes are saved with the entity and are left as they are.
+     * @param entity The loaded entity
+     * @param template The template it was spawned from
+     * @param plan The compiled version of the template the mob's AI was built from before it hibernated
+     * @return The new instance tracking the mob
+     */
+    public CustomMobInstance restoreCustomMob(LivingEntity entity, CustomMobTemplate template, TemplatePlan plan) {
+        CustomMobInstance instance = new CustomMobInstance(entity, template, plan);
+        track(instance);
+        installAI(entity, plan, instance);
+        return instance;
+    }
+    
+    private void applyTemplate(LivingEntity entity, CustomMobInstance instance) {
+        TemplatePlan plan = instance.getPlan();
+        
         // Set basic attributes
-        entity.setMaxHealth(template.getHealth());
-        entity.setHealth(template.getHealth());
-        entity.setCustomName(template.getDisplayName());
+        if (plan.hasHealth()) {
+            entity.setMaxHealth(plan.getHealth());
+            entity.setHealth(plan.getHealth());
+        }
+        entity.setCustomName(plan.getDisplayName());
         entity.setCustomNameVisible(true);
         
+        // Apply custom attributes
+        if (entity instanceof CraftLivingEntity craftEntity) {
+            plan.applyAttributes((Mob) craftEntity.getHandle());
+        }
+        
+        installAI(entity, plan, instance);
+    }
+    
+    private void installAI(LivingEntity entity, TemplatePlan plan, CustomMobInstance instance) {
         // Clear vanilla AI
         RemoveVanillaAI.clearVanillaAI(entity);
         
@@ -115,78 +380,183 @@ public class CustomMobManager {
         if (entity instanceof CraftLivingEntity craftEntity) {
             Mob nmsMob = (Mob) craftEntity.getHandle();
             
-            // Apply custom attributes
-            applyAttributes(nmsMob, template);
-            
             // Add custom goals
-            addCustomGoals(nmsMob, template);
+            addCustomGoals(nmsMob, plan, instance);
             
             // Add custom sensors
-            addCustomSensors(nmsMob, template);
-        }
-    }
-    
-    private void applyAttributes(Mob nmsMob, CustomMobTemplate template) {
-        // Apply movement speed
-        if (template.getSpeed() != null) {
-            nmsMob.getAttribute(net.minecraft.world.entity.ai.attributes.Attributes.MOVEMENT_SPEED)
-                .setBaseValue(template.getSpeed());
-        }
-        
-        // Apply attack damage
-        if (template.getAttackDamage() != null) {
-            nmsMob.getAttribute(net.minecraft.world.entity.ai.attributes.Attributes.ATTACK_DAMAGE)
-                .setBaseValue(template.getAttackDamage());
-        }
-        
-        // Apply follow range
-        if (template.getFollowRange() != null) {
-            nmsMob.getAttribute(net.minecraft.world.entity.ai.attributes.Attributes.FOLLOW_RANGE)
-                .setBaseValue(template.getFollowRange());
+            addCustomSensors(nmsMob, plan);
         }
     }
     
-    private void addCustomGoals(Mob nmsMob, CustomMobTemplate template) {
+    private void addCustomGoals(Mob nmsMob, TemplatePlan plan, CustomMobInstance instance) {
         // Add regular goals
-        for (Map.Entry<Integer, CustomGoal> entry : template.getGoals().entrySet()) {
-            Goal nmsGoal = entry.getValue().createNMSGoal(nmsMob);
+        for (int i = 0; i < plan.getGoalCount(); i++) {
+            Goal nmsGoal = createGovernedGoal(nmsMob, instance, plan.getGoal(i));
             if (nmsGoal != null) {
-                nmsMob.goalSelector.addGoal(entry.getKey(), nmsGoal);
+                nmsMob.goalSelector.addGoal(plan.getGoalPriority(i), nmsGoal);
             }
         }
         
         // Add target goals
-        for (Map.Entry<Integer, CustomGoal> entry : template.getTargetGoals().entrySet()) {
-            Goal nmsGoal = entry.getValue().createNMSGoal(nmsMob);
+        for (int i = 0; i < plan.getTargetGoalCount(); i++) {
+            Goal nmsGoal = createGovernedGoal(nmsMob, instance, plan.getTargetGoal(i));
             if (nmsGoal != null) {
-                nmsMob.targetSelector.addGoal(entry.getKey(), nmsGoal);
+                nmsMob.targetSelector.addGoal(plan.getTargetGoalPriority(i), nmsGoal);
             }
         }
     }
     
-    private void addCustomSensors(Mob nmsMob, CustomMobTemplate template) {
+    private Goal createGovernedGoal(Mob nmsMob, CustomMobInstance instance, CustomGoal goal) {
+        Goal nmsGoal = goal.createNMSGoal(nmsMob);
+        if (nmsGoal == null) {
+            return null;
+        }
+        return new GovernedGoal(nmsGoal, nmsMob, instance, governor, goal.isDeferrable(), profiler, goal.getName());
+    }
+    
+    private void addCustomSensors(Mob nmsMob, TemplatePlan plan) {
         // Note: Sensor implementation would require more complex NMS integration
         // For now, we'll focus on goals which are more straightforward
-        for (CustomSensor sensor : template.getSensors()) {
+        for (CustomSensor sensor : plan.getSensors()) {
             sensor.attachToMob(nmsMob);
         }
+        
+        // Lowers the AI level of detail when no player is near
+        if (plan.usesActivationRange()) {
+            activationSensor.attachToMob(nmsMob);
+        }
     }
     
     public CustomMobInstance getCustomMob(UUID entityId) {
         return activeMobs.get(entityId);
     }
     
+    private void track(CustomMobInstance instance) {
+        CustomMobInstance previous = activeMobs.put(instance.getEntityId(), instance);
+        if (previous != null) {
+            untrackMember(previous);
+        }
+        // Only tracking creates template sets, lookups of templates without mobs must not leave empty ones behind
+        mobsByTemplate.computeIfAbsent(instance.getTemplateId(), key -> ConcurrentHashMap.newKeySet()).add(instance);
+        instance.getTemplate().retainPlan(instance.getPlan());
+        mobIndex.add(instance);
+    }
+    
+    private void untrackMember(CustomMobInstance instance) {
+        Set<CustomMobInstance> members = mobsByTemplate.get(instance.getTemplateId());
+        if (members != null) {
+            members.remove(instance);
+        }
+        instance.getTemplate().releasePlan(instance.getPlan());
+    }
+    
     public void removeCustomMob(UUID entityId) {
-        activeMobs.remove(entityId);
+        CustomMobInstance instance = activeMobs.remove(entityId);
+        if (instance != null) {
+            untrackMember(instance);
+        }
+        mobIndex.remove(entityId);
+    }
+    
+    /**
+     * Gets how many mobs of a template are tracked. Mobs hibernated with their chunk are not tracked and
+     * not included, see {@link #getHibernatedCount}.
+     * @param templateId The template id
+     * @return The number of tracked mobs of the template
+     */
+    public int getMobCount(String templateId) {
+        Set<CustomMobInstance> members = mobsByTemplate.get(templateId);
+        return members != null ? members.size() : 0;
+    }
+    
+    /**
+     * Gets how many mobs of a template are hibernated with their chunk and not tracked right now.
+     * @param templateId The template id
+     * @return The number of mobs hibernated since the plugin enabled that have not been rebuilt yet
+     */
+    public int getHibernatedCount(String templateId) {
+        return hibernation.getHibernatedCount(templateId);
     }
     
+    /**
+     * Gets the tracked mobs of a template.
+     * @param templateId The template id
+     * @return An unmodifiable live view, copy it before removing mobs while iterating. Empty and not
+     * live if no mob of the template was ever tracked
+     */
+    public Collection<CustomMobInstance> getMobsOfTemplate(String templateId) {
+        return Collections.unmodifiableCollection(mobsByTemplate.getOrDefault(templateId, Set.of()));
+    }
+    
+    /**
+     * Gets every tracked custom mob.
+     * @return An unmodifiable live view, copy it before removing mobs while iterating
+     */
     public Collection<CustomMobInstance> getActiveMobs() {
-        return new ArrayList<>(activeMobs.values());
+        return Collections.unmodifiableCollection(activeMobs.values());
+    }
+    
+    /**
+     * Visits every tracked custom mob without copying them.
+     * @param visitor Called for every mob
+     */
+    public void forEachActiveMob(Consumer<CustomMobInstance> visitor) {
+        activeMobs.values().forEach(visitor);
+    }
+    
+    /**
+     * Finds the tracked custom mobs near a location, only looking at the chunks the radius overlaps.
+     * @param world The world to search
+     * @param center The center of the search
+     * @param radius The search radius
+     * @param templateFilter Only mobs of this template, or null for every template
+     * @return The mobs found, in no particular order
+     */
+    public List<CustomMobInstance> findMobs(World world, Location center, double radius, @Nullable String templateFilter) {
+        return mobIndex.findMobs(((CraftWorld) world).getHandle(), center.getX(), center.getY(), center.getZ(), radius, templateFilter);
+    }
+    
+    /**
+     * Visits the tracked custom mobs near a location without copying them. The visitor must not spawn or remove custom mobs.
+     * @param world The world to search
+     * @param center The center of the search
+     * @param radius The search radius
+     * @param templateFilter Only mobs of this template, or null for every template
+     * @param visitor Called for every mob found
+     */
+    public void forEachMob(World world, Location center, double radius, @Nullable String templateFilter,
+                           Consumer<CustomMobInstance> visitor) {
+        mobIndex.forEachMob(((CraftWorld) world).getHandle(), center.getX(), center.getY(), center.getZ(), radius,
+            templateFilter, visitor);
+    }
+    
+    public void shutdown() {
+        if (tickTask != null) {
+            tickTask.cancel();
+            tickTask = null;
+        }
+        spawnQueue.clear();
+        // Save AI state onto the entities before the worlds are saved
+        hibernation.hibernateAll();
+        sensorScheduler.clear();
+        squads.clear();
+        pathCache.clear();
+        pathfinder.clear();
+        flowFields.clear();
+        hierarchicalPathfinder.clear();
+        zones.clear();
+        mobIndex.clear();
+        mobsByTemplate.clear();
+        workerPool.shutdown();
     }
     
     public void cleanup() {
         // Remove dead mobs from tracking
-        activeMobs.entrySet().removeIf(entry -> 
-            entry.getValue().getEntity().isDead() || !entry.getValue().getEntity().isValid());
+        for (CustomMobInstance instance : new ArrayList<>(activeMobs.values())) {
+            if (instance.getEntity().isDead() || !instance.getEntity().isValid()) {
+                removeCustomMob(instance.getEntityId());
+            }
+        }
+        squads.cleanup();
     }
 }
\ No newline at end of file
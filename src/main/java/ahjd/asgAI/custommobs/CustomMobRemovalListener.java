@@ -0,0 +1,54 @@
+package ahjd.asgAI.custommobs;
+
+import com.destroystokyo.paper.event.entity.EntityRemoveFromWorldEvent;
+import net.minecraft.world.entity.Entity;
+import net.minecraft.world.entity.Mob;
+import org.bukkit.craftbukkit.entity.CraftEntity;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.entity.EntityDeathEvent;
+
+/**
+ * Stops tracking custom mobs as soon as they die or are discarded, so per-template counts stay exact
+ * without waiting for a cleanup. Dying mobs are untracked on the death event, the entity itself is only
+ * removed from the world once its death animation ends about 20 ticks later. Mobs removed because their
+ * chunk unloaded are left to the hibernation manager, which saves their state first.
+ */
+public class CustomMobRemovalListener implements Listener {
+    private final CustomMobManager manager;
+
+    public CustomMobRemovalListener(CustomMobManager manager) {
+        this.manager = manager;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onEntityDeath(EntityDeathEvent event) {
+        CustomMobInstance instance = manager.getCustomMob(event.getEntity().getUniqueId());
+        if (instance != null && event.getEntity() instanceof CraftEntity craftEntity) {
+            untrack(instance, craftEntity.getHandle());
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onEntityRemoveFromWorld(EntityRemoveFromWorldEvent event) {
+        CustomMobInstance instance = manager.getCustomMob(event.getEntity().getUniqueId());
+        if (instance == null || !(event.getEntity() instanceof CraftEntity craftEntity)) {
+            return;
+        }
+        Entity handle = craftEntity.getHandle();
+        Entity.RemovalReason reason = handle.getRemovalReason();
+        if (reason != null && reason.shouldSave()) {
+            return;
+        }
+        untrack(instance, handle);
+    }
+
+    private void untrack(CustomMobInstance instance, Entity handle) {
+        manager.removeCustomMob(instance.getEntityId());
+        if (handle instanceof Mob mob) {
+            manager.getSquads().leave(mob);
+            manager.getClusters().remove(mob);
+        }
+    }
+}
@@ -1,8 +1,14 @@
 package ahjd.asgAI.custommobs;
 
+import ahjd.asgAI.custommobs.behavior.BehaviorTree;
+import ahjd.asgAI.custommobs.goals.BehaviorTreeGoal;
 import ahjd.asgAI.custommobs.goals.CustomGoal;
 import ahjd.asgAI.custommobs.sensors.CustomSensor;
+import ahjd.asgAI.custommobs.sensors.SensorMode;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 import org.bukkit.entity.EntityType;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
 
@@ -17,11 +23,20 @@ public class CustomMobTemplate {
     private Double armor;
     private Double armorToughness;
     private Double knockbackResistance;
+    private MobPriority priority;
+    private double fullActivationRange;
+    private double reducedActivationRange;
+    private String squadId;
+    private SensorMode sensorMode;
+    private boolean clusterSharing;
     
     private final Map<Integer, CustomGoal> goals;
     private final Map<Integer, CustomGoal> targetGoals;
     private final List<CustomSensor> sensors;
     private final Map<String, Object> customData;
+    private int version;
+    private volatile TemplatePlan plan;
+    private final Int2ObjectMap<PlanReference> retainedPlans;
     
     public CustomMobTemplate(String id) {
         this.id = id;
@@ -29,74 +44,215 @@ public class CustomMobTemplate {
         this.targetGoals = new TreeMap<>();
         this.sensors = new ArrayList<>();
         this.customData = new HashMap<>();
+        this.retainedPlans = new Int2ObjectOpenHashMap<>();
+        this.priority = MobPriority.NORMAL;
+        this.fullActivationRange = 48.0;
+        this.reducedActivationRange = 96.0;
+        this.sensorMode = SensorMode.POLLING;
+        this.clusterSharing = true;
     }
     
     // Builder pattern methods
     public CustomMobTemplate setBaseEntity(EntityType baseEntity) {
         this.baseEntity = baseEntity;
-        return this;
+        return changed();
     }
     
     public CustomMobTemplate setDisplayName(String displayName) {
         this.displayName = displayName;
-        return this;
+        return changed();
     }
     
     public CustomMobTemplate setHealth(Double health) {
         this.health = health;
-        return this;
+        return changed();
     }
     
     public CustomMobTemplate setSpeed(Double speed) {
         this.speed = speed;
-        return this;
+        return changed();
     }
     
     public CustomMobTemplate setAttackDamage(Double attackDamage) {
         this.attackDamage = attackDamage;
-        return this;
+        return changed();
     }
     
     public CustomMobTemplate setFollowRange(Double followRange) {
         this.followRange = followRange;
-        return this;
+        return changed();
     }
     
     public CustomMobTemplate setArmor(Double armor) {
         this.armor = armor;
-        return this;
+        return changed();
     }
     
     public CustomMobTemplate setArmorToughness(Double armorToughness) {
         this.armorToughness = armorToughness;
-        return this;
+        return changed();
     }
     
     public CustomMobTemplate setKnockbackResistance(Double knockbackResistance) {
         this.knockbackResistance = knockbackResistance;
-        return this;
+        return changed();
+    }
+    
+    public CustomMobTemplate setPriority(MobPriority priority) {
+        this.priority = priority;
+        return changed();
+    }
+    
+    /**
+     * Sets the distances to the nearest player at which mobs of this template lower their AI level of detail.
+     * Within the full range the AI runs normally, up to the reduced range goals and sensors run less often,
+     * and beyond it the AI is frozen. Pass {@link Double#POSITIVE_INFINITY} as the reduced range to never freeze.
+     * @param fullRange Distance up to which the AI runs at full rate
+     * @param reducedRange Distance up to which the AI runs at reduced rate
+     * @return This template
+     */
+    public CustomMobTemplate setActivationRange(double fullRange, double reducedRange) {
+        if (fullRange < 0.0 || reducedRange < fullRange) {
+            throw new IllegalArgumentException("Activation ranges must satisfy 0 <= full <= reduced");
+        }
+        this.fullActivationRange = fullRange;
+        this.reducedActivationRange = reducedRange;
+        return changed();
+    }
+    
+    /**
+     * Puts every mob spawned from this template into the named squad, so they share targets and alerts.
+     * @param squadId The squad id, or null to only group mobs that are spawned together
+     * @return This template
+     */
+    public CustomMobTemplate setSquad(String squadId) {
+        this.squadId = squadId;
+        return changed();
+    }
+    
+    /**
+     * Sets whether the sensors of this template poll on their intervals or wait for changes near the mob.
+     * @param sensorMode The sensor mode
+     * @return This template
+     */
+    public CustomMobTemplate setSensorMode(SensorMode sensorMode) {
+        this.sensorMode = sensorMode;
+        return changed();
+    }
+    
+    /**
+     * Sets whether mobs of this template standing close together share the results of their sensors.
+     * Enabled by default, disable it for templates whose sensors must see exactly from each mob.
+     * @param clusterSharing true to let a cluster leader sense for its followers
+     * @return This template
+     */
+    public CustomMobTemplate setClusterSharing(boolean clusterSharing) {
+        this.clusterSharing = clusterSharing;
+        return changed();
     }
     
     public CustomMobTemplate addGoal(int priority, CustomGoal goal) {
         this.goals.put(priority, goal);
-        return this;
+        return changed();
+    }
+    
+    /**
+     * Adds a behavior tree that runs as a single goal. The tree is compiled once and shared by
+     * every mob of this template.
+     * @param priority The goal priority
+     * @param name The name of the tree
+     * @param root The root node
+     * @return This template
+     */
+    public CustomMobTemplate addBehaviorTree(int priority, String name, BehaviorTree.Node root) {
+        return addGoal(priority, new BehaviorTreeGoal(name, root));
     }
     
     public CustomMobTemplate addTargetGoal(int priority, CustomGoal goal) {
         this.targetGoals.put(priority, goal);
-        return this;
+        return changed();
     }
     
     public CustomMobTemplate addSensor(CustomSensor sensor) {
         this.sensors.add(sensor);
-        return this;
+        return changed();
     }
     
     public CustomMobTemplate setCustomData(String key, Object value) {
         this.customData.put(key, value);
+        return changed();
+    }
+    
+    private CustomMobTemplate changed() {
+        version++;
         return this;
     }
     
+    /**
+     * Compiles the template into a spawn plan. The plan is cached until the template changes again,
+     * after which the next call compiles a new version.
+     * @return The plan for the current state of the template
+     */
+    public TemplatePlan compile() {
+        TemplatePlan current = plan;
+        if (current == null || current.getVersion() != version) {
+            current = new TemplatePlan(this, version, goals, targetGoals, sensors);
+            plan = current;
+        }
+        return current;
+    }
+    
+    public int getVersion() {
+        return version;
+    }
+    
+    /**
+     * Keeps an older plan of this template resolvable by its version while a mob references it. Main thread only.
+     * @param plan A plan compiled from this template
+     */
+    public void retainPlan(TemplatePlan plan) {
+        PlanReference reference = retainedPlans.get(plan.getVersion());
+        if (reference == null) {
+            reference = new PlanReference(plan);
+            retainedPlans.put(plan.getVersion(), reference);
+        }
+        reference.count++;
+    }
+    
+    /**
+     * Releases a reference taken with {@link #retainPlan}, the version is forgotten once no reference is left.
+     * @param plan The retained plan
+     */
+    public void releasePlan(TemplatePlan plan) {
+        PlanReference reference = retainedPlans.get(plan.getVersion());
+        if (reference != null && --reference.count <= 0) {
+            retainedPlans.remove(plan.getVersion());
+        }
+    }
+    
+    /**
+     * Looks up a plan of this template by its version.
+     * @param version The plan version
+     * @return The current plan or a retained older one, or null if no mob references that version any more
+     */
+    @Nullable
+    public TemplatePlan getPlan(int version) {
+        if (version == this.version) {
+            return compile();
+        }
+        PlanReference reference = retainedPlans.get(version);
+        return reference != null ? reference.plan : null;
+    }
+    
+    private static final class PlanReference {
+        private final TemplatePlan plan;
+        private int count;
+        
+        private PlanReference(TemplatePlan plan) {
+            this.plan = plan;
+        }
+    }
+    
     // Getters
     public String getId() {
         return id;
@@ -138,6 +294,38 @@ public class CustomMobTemplate {
         return knockbackResistance;
     }
     
+    public MobPriority getPriority() {
+        return priority;
+    }
+    
+    public double getFullActivationRange() {
+        return fullActivationRange;
+    }
+    
+    public double getReducedActivationRange() {
+        return reducedActivationRange;
+    }
+    
+    public String getSquad() {
+        return squadId;
+    }
+    
+    public SensorMode getSensorMode() {
+        return sensorMode;
+    }
+    
+    public boolean isClusterSharing() {
+        return clusterSharing;
+    }
+    
+    /**
+     * Checks if mobs of this template ever leave full activation.
+     * @return true if the activation ranges are finite
+     */
+    public boolean usesActivationRange() {
+        return Double.isFinite(reducedActivationRange);
+    }
+    
     public Map<Integer, CustomGoal> getGoals() {
         return new TreeMap<>(goals);
     }
@@ -0,0 +1,22 @@
+package ahjd.asgAI.custommobs;
+
+/**
+ * Priority class of a mob template, used by the AI governor to decide
+ * which mobs lose fidelity first when AsgAI runs over its tick budget.
+ */
+public enum MobPriority {
+    /**
+     * Never throttled, for bosses and other mobs players are focused on
+     */
+    BOSS,
+
+    /**
+     * Throttled at half the rate of trash mobs
+     */
+    NORMAL,
+
+    /**
+     * Throttled first and hardest, for mobs that come in large numbers
+     */
+    TRASH
+}
@@ -0,0 +1,178 @@
+package ahjd.asgAI.custommobs;
+
+import ahjd.asgAI.custommobs.goals.CustomGoal;
+import ahjd.asgAI.custommobs.sensors.CustomSensor;
+import ahjd.asgAI.custommobs.sensors.SensorMode;
+import net.minecraft.core.Holder;
+import net.minecraft.world.entity.Mob;
+import net.minecraft.world.entity.ai.attributes.Attribute;
+import net.minecraft.world.entity.ai.attributes.AttributeInstance;
+import net.minecraft.world.entity.ai.attributes.Attributes;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Frozen snapshot of a {@link CustomMobTemplate}, compiled once so spawning a mob copies no
+ * collections and unboxes no values. Goals are kept in priority order in parallel arrays and
+ * attribute values as a list of operations. Changing the template afterwards does not affect an
+ * existing plan, the template compiles a new version instead.
+ */
+public final class TemplatePlan {
+    private final int version;
+    private final String displayName;
+    private final boolean hasHealth;
+    private final double health;
+    private final int[] goalPriorities;
+    private final CustomGoal[] goals;
+    private final int[] targetGoalPriorities;
+    private final CustomGoal[] targetGoals;
+    private final List<CustomSensor> sensors;
+    private final AttributeOperation[] attributes;
+    private final MobPriority priority;
+    private final SensorMode sensorMode;
+    private final boolean clusterSharing;
+    private final double fullActivationRange;
+    private final double reducedActivationRange;
+
+    TemplatePlan(CustomMobTemplate template, int version, Map<Integer, CustomGoal> goals,
+                 Map<Integer, CustomGoal> targetGoals, List<CustomSensor> sensors) {
+        this.version = version;
+        this.displayName = template.getDisplayName();
+        this.hasHealth = template.getHealth() != null;
+        this.health = hasHealth ? template.getHealth() : 0.0;
+        this.goalPriorities = new int[goals.size()];
+        this.goals = new CustomGoal[goals.size()];
+        fill(goals, goalPriorities, this.goals);
+        this.targetGoalPriorities = new int[targetGoals.size()];
+        this.targetGoals = new CustomGoal[targetGoals.size()];
+        fill(targetGoals, targetGoalPriorities, this.targetGoals);
+        this.sensors = List.copyOf(sensors);
+        this.priority = template.getPriority();
+        this.sensorMode = template.getSensorMode();
+        this.clusterSharing = template.isClusterSharing();
+        this.fullActivationRange = template.getFullActivationRange();
+        this.reducedActivationRange = template.getReducedActivationRange();
+
+        List<AttributeOperation> operations = new ArrayList<>(6);
+        addOperation(operations, Attributes.MOVEMENT_SPEED, template.getSpeed());
+        addOperation(operations, Attributes.ATTACK_DAMAGE, template.getAttackDamage());
+        addOperation(operations, Attributes.FOLLOW_RANGE, template.getFollowRange());
+        addOperation(operations, Attributes.ARMOR, template.getArmor());
+        addOperation(operations, Attributes.ARMOR_TOUGHNESS, template.getArmorToughness());
+        addOperation(operations, Attributes.KNOCKBACK_RESISTANCE, template.getKnockbackResistance());
+        this.attributes = operations.toArray(new AttributeOperation[0]);
+    }
+
+    private static void fill(Map<Integer, CustomGoal> source, int[] priorities, CustomGoal[] goals) {
+        int index = 0;
+        for (Map.Entry<Integer, CustomGoal> entry : source.entrySet()) {
+            priorities[index] = entry.getKey();
+            goals[index] = entry.getValue();
+            index++;
+        }
+    }
+
+    private static void addOperation(List<AttributeOperation> operations, Holder<Attribute> attribute, Double value) {
+        if (value != null) {
+            operations.add(new AttributeOperation(attribute, value));
+        }
+    }
+
+    /**
+     * Gets the template version this plan was compiled from.
+     * @return The version, higher for later changes
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    public boolean hasHealth() {
+        return hasHealth;
+    }
+
+    public double getHealth() {
+        return health;
+    }
+
+    public int getGoalCount() {
+        return goals.length;
+    }
+
+    public int getGoalPriority(int index) {
+        return goalPriorities[index];
+    }
+
+    public CustomGoal getGoal(int index) {
+        return goals[index];
+    }
+
+    public int getTargetGoalCount() {
+        return targetGoals.length;
+    }
+
+    public int getTargetGoalPriority(int index) {
+        return targetGoalPriorities[index];
+    }
+
+    public CustomGoal getTargetGoal(int index) {
+        return targetGoals[index];
+    }
+
+    /**
+     * Gets the sensors of the template.
+     * @return An immutable list, shared by every caller
+     */
+    public List<CustomSensor> getSensors() {
+        return sensors;
+    }
+
+    public MobPriority getPriority() {
+        return priority;
+    }
+
+    public SensorMode getSensorMode() {
+        return sensorMode;
+    }
+
+    public boolean isClusterSharing() {
+        return clusterSharing;
+    }
+
+    public double getFullActivationRange() {
+        return fullActivationRange;
+    }
+
+    public double getReducedActivationRange() {
+        return reducedActivationRange;
+    }
+
+    /**
+     * Checks if mobs of this plan ever leave full activation.
+     * @return true if the activation ranges are finite
+     */
+    public boolean usesActivationRange() {
+        return Double.isFinite(reducedActivationRange);
+    }
+
+    /**
+     * Sets the base value of every attribute the template defines. Attributes the mob does not have are skipped.
+     * @param mob The mob
+     */
+    public void applyAttributes(Mob mob) {
+        for (AttributeOperation operation : attributes) {
+            AttributeInstance instance = mob.getAttribute(operation.attribute());
+            if (instance != null) {
+                instance.setBaseValue(operation.value());
+            }
+        }
+    }
+
+    private record AttributeOperation(Holder<Attribute> attribute, double value) {
+    }
+}
@@ -0,0 +1,92 @@
+package ahjd.asgAI.custommobs.async;
+
+import ahjd.asgAI.AsgAI;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Runs AI work off the server thread and hands the results back to it.
+ * Work submitted here must only read immutable snapshots captured on the main thread. Its result is
+ * queued and passed to the commit callback on the main thread the next time {@link #drainCommits()}
+ * runs, which the custom mob manager does at the start of every tick.
+ */
+public class AIWorkerPool {
+    private final ForkJoinPool pool;
+    private final Queue<Runnable> pendingCommits;
+
+    /**
+     * @param parallelism Number of worker threads, or 0 or less to use one less than the available cores
+     */
+    public AIWorkerPool(int parallelism) {
+        int threads = parallelism > 0 ? parallelism : Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        this.pool = new ForkJoinPool(threads, AIWorkerPool::newThread, null, true);
+        this.pendingCommits = new ConcurrentLinkedQueue<>();
+    }
+
+    /**
+     * Runs the work on a worker thread and commits its result on the main thread on a later tick.
+     * If the work throws, the failure is logged and the commit receives null so callers can reset their state.
+     * @param work Computation to run off the main thread
+     * @param commit Called on the main thread with the result
+     */
+    public <T> void submit(Supplier<T> work, Consumer<T> commit) {
+        if (pool.isShutdown()) {
+            return;
+        }
+        pool.execute(() -> {
+            T result;
+            try {
+                result = work.get();
+            } catch (RuntimeException e) {
+                AsgAI.getInstance().getLogger().warning("Async AI task failed: " + e.getMessage());
+                result = null;
+            }
+            T finalResult = result;
+            pendingCommits.add(() -> commit.accept(finalResult));
+        });
+    }
+
+    /**
+     * Runs every commit that has been queued by finished work. Main thread only.
+     */
+    public void drainCommits() {
+        Runnable commit;
+        while ((commit = pendingCommits.poll()) != null) {
+            try {
+                commit.run();
+            } catch (RuntimeException e) {
+                AsgAI.getInstance().getLogger().warning("Async AI commit failed: " + e.getMessage());
+            }
+        }
+    }
+
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+        try {
+            if (!pool.awaitTermination(1, TimeUnit.SECONDS)) {
+                pool.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            pool.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        pendingCommits.clear();
+    }
+
+    private static ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        thread.setName("AsgAI-Worker-" + thread.getPoolIndex());
+        thread.setDaemon(true);
+        return thread;
+    }
+}
@@ -0,0 +1,28 @@
+package ahjd.asgAI.custommobs.behavior;
+
+/**
+ * Leaf of a behavior tree that makes the mob do something, possibly over several ticks.
+ */
+public interface BehaviorAction {
+
+    /**
+     * Called when the action is first reached, before its first {@link #tick(BehaviorContext)}.
+     * @param context The mob and its blackboard
+     */
+    default void start(BehaviorContext context) {
+    }
+
+    /**
+     * Runs the action for one tick.
+     * @param context The mob and its blackboard
+     * @return {@link BehaviorStatus#RUNNING} to be ticked again next tick, otherwise the outcome
+     */
+    BehaviorStatus tick(BehaviorContext context);
+
+    /**
+     * Called when the action finished or another branch of the tree took over.
+     * @param context The mob and its blackboard
+     */
+    default void stop(BehaviorContext context) {
+    }
+}
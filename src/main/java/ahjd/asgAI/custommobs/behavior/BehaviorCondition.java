@@ -0,0 +1,16 @@
+package ahjd.asgAI.custommobs.behavior;
+
+/**
+ * Leaf of a behavior tree that checks something about the mob or its surroundings.
+ * Conditions should not change any state, they may be skipped while their input is unchanged.
+ */
+@FunctionalInterface
+public interface BehaviorCondition {
+
+    /**
+     * Checks the condition.
+     * @param context The mob and its blackboard
+     * @return true if the condition holds
+     */
+    boolean test(BehaviorContext context);
+}
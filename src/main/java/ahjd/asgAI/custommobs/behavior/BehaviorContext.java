@@ -0,0 +1,68 @@
+package ahjd.asgAI.custommobs.behavior;
+
+import net.minecraft.world.entity.Mob;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * Per-mob state of a {@link BehaviorProgram}: the blackboard its nodes share, and the cooldowns,
+ * cached condition results and running action of the program, all kept in arrays indexed by node.
+ * Created once per mob, evaluating the program does not allocate. Main thread only.
+ */
+public final class BehaviorContext {
+    static final byte UNKNOWN = 0;
+    static final byte PASSED = 1;
+    static final byte FAILED = 2;
+
+    private final Mob mob;
+    private Object[] values;
+    final int[] cooldownUntil;
+    final long[] inputs;
+    final byte[] results;
+    int running = -1;
+    int ranAction = -1;
+
+    BehaviorContext(Mob mob, int nodeCount) {
+        this.mob = mob;
+        this.values = new Object[8];
+        this.cooldownUntil = new int[nodeCount];
+        this.inputs = new long[nodeCount];
+        this.results = new byte[nodeCount];
+    }
+
+    public Mob getMob() {
+        return mob;
+    }
+
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public <T> T get(BlackboardKey<T> key) {
+        int index = key.getIndex();
+        return index < values.length ? (T) values[index] : null;
+    }
+
+    public <T> T getOrDefault(BlackboardKey<T> key, T fallback) {
+        T value = get(key);
+        return value != null ? value : fallback;
+    }
+
+    public <T> void set(BlackboardKey<T> key, @Nullable T value) {
+        int index = key.getIndex();
+        if (index >= values.length) {
+            values = Arrays.copyOf(values, Math.max(values.length * 2, index + 1));
+        }
+        values[index] = value;
+    }
+
+    public void remove(BlackboardKey<?> key) {
+        set(key, null);
+    }
+
+    /**
+     * Forgets every cached condition result, so all conditions are tested on the next evaluation.
+     */
+    public void invalidate() {
+        Arrays.fill(results, UNKNOWN);
+    }
+}
@@ -0,0 +1,17 @@
+package ahjd.asgAI.custommobs.behavior;
+
+/**
+ * Summarises what a condition depends on as a single number, for example the id of the current
+ * target or a packed block position. While the number stays the same the condition is not tested
+ * again and its last result is reused.
+ */
+@FunctionalInterface
+public interface BehaviorInput {
+
+    /**
+     * Reads the current input.
+     * @param context The mob and its blackboard
+     * @return A value that changes whenever the result of the condition may change
+     */
+    long read(BehaviorContext context);
+}
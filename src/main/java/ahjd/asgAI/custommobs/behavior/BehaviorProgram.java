@@ -0,0 +1,216 @@
+package ahjd.asgAI.custommobs.behavior;
+
+import net.minecraft.world.entity.Mob;
+
+/**
+ * A behavior tree compiled by {@link BehaviorTree#compile(BehaviorTree.Node)} into flat arrays. Nodes are laid out
+ * in depth-first order, so the children of a node follow it directly and {@code ends[i]} is the first
+ * node after its subtree. The program is immutable and shared by every mob running the tree, the
+ * state of one mob lives in its {@link BehaviorContext}.
+ * <p>
+ * The tree is evaluated from the root every time, so a higher priority branch takes over as soon as
+ * it can run. Conditions with an input are only tested when the input changed, so the guards above a
+ * running action usually cost one comparison each. {@link #canRun(BehaviorContext)} walks the same
+ * guards without starting or ticking actions, for callers that must not act yet.
+ */
+public final class BehaviorProgram {
+    static final byte SELECTOR = 0;
+    static final byte SEQUENCE = 1;
+    static final byte CONDITION = 2;
+    static final byte ACTION = 3;
+    static final byte COOLDOWN = 4;
+
+    private final byte[] types;
+    private final int[] ends;
+    private final int[] cooldowns;
+    private final String[] names;
+    private final BehaviorCondition[] conditions;
+    private final BehaviorInput[] inputs;
+    private final BehaviorAction[] actions;
+
+    BehaviorProgram(byte[] types, int[] ends, int[] cooldowns, String[] names, BehaviorCondition[] conditions,
+                    BehaviorInput[] inputs, BehaviorAction[] actions) {
+        this.types = types;
+        this.ends = ends;
+        this.cooldowns = cooldowns;
+        this.names = names;
+        this.conditions = conditions;
+        this.inputs = inputs;
+        this.actions = actions;
+    }
+
+    public int getNodeCount() {
+        return types.length;
+    }
+
+    /**
+     * Creates the state one mob needs to run this program.
+     * @param mob The mob
+     * @return A new context
+     */
+    public BehaviorContext createContext(Mob mob) {
+        return new BehaviorContext(mob, types.length);
+    }
+
+    /**
+     * Evaluates the tree for one tick. An action that was running but was not reached this time is stopped.
+     * @param context The state of the mob
+     * @return The status of the root
+     */
+    public BehaviorStatus evaluate(BehaviorContext context) {
+        context.ranAction = -1;
+        BehaviorStatus status = run(0, context);
+        if (context.running >= 0 && context.running != context.ranAction) {
+            stopRunning(context);
+        }
+        return status;
+    }
+
+    /**
+     * Checks whether evaluating the tree would reach an action, without running any. Actions are taken to
+     * keep running and cooldowns are only read, so this has no effect on the mob and can be asked any
+     * number of times per tick.
+     * @param context The state of the mob
+     * @return True if an action would run
+     */
+    public boolean canRun(BehaviorContext context) {
+        return probe(0, context) == BehaviorStatus.RUNNING;
+    }
+
+    /**
+     * Stops the running action, if any.
+     * @param context The state of the mob
+     */
+    public void stop(BehaviorContext context) {
+        if (context.running >= 0) {
+            stopRunning(context);
+        }
+    }
+
+    /**
+     * Gets the name of the running action.
+     * @param context The state of the mob
+     * @return The name, or null if no action is running
+     */
+    public String getRunningAction(BehaviorContext context) {
+        return context.running >= 0 ? names[context.running] : null;
+    }
+
+    private BehaviorStatus run(int node, BehaviorContext context) {
+        switch (types[node]) {
+            case SELECTOR -> {
+                for (int child = node + 1; child < ends[node]; child = ends[child]) {
+                    BehaviorStatus status = run(child, context);
+                    if (status != BehaviorStatus.FAILURE) {
+                        return status;
+                    }
+                }
+                return BehaviorStatus.FAILURE;
+            }
+            case SEQUENCE -> {
+                for (int child = node + 1; child < ends[node]; child = ends[child]) {
+                    BehaviorStatus status = run(child, context);
+                    if (status != BehaviorStatus.SUCCESS) {
+                        return status;
+                    }
+                }
+                return BehaviorStatus.SUCCESS;
+            }
+            case CONDITION -> {
+                return test(node, context) ? BehaviorStatus.SUCCESS : BehaviorStatus.FAILURE;
+            }
+            case ACTION -> {
+                return runAction(node, context);
+            }
+            case COOLDOWN -> {
+                int tick = context.getMob().tickCount;
+                if (tick < context.cooldownUntil[node]) {
+                    return BehaviorStatus.FAILURE;
+                }
+                BehaviorStatus status = run(node + 1, context);
+                if (status == BehaviorStatus.SUCCESS) {
+                    context.cooldownUntil[node] = tick + cooldowns[node];
+                }
+                return status;
+            }
+            default -> throw new IllegalStateException("Unknown node type " + types[node]);
+        }
+    }
+
+    private BehaviorStatus probe(int node, BehaviorContext context) {
+        switch (types[node]) {
+            case SELECTOR -> {
+                for (int child = node + 1; child < ends[node]; child = ends[child]) {
+                    BehaviorStatus status = probe(child, context);
+                    if (status != BehaviorStatus.FAILURE) {
+                        return status;
+                    }
+                }
+                return BehaviorStatus.FAILURE;
+            }
+            case SEQUENCE -> {
+                for (int child = node + 1; child < ends[node]; child = ends[child]) {
+                    BehaviorStatus status = probe(child, context);
+                    if (status != BehaviorStatus.SUCCESS) {
+                        return status;
+                    }
+                }
+                return BehaviorStatus.SUCCESS;
+            }
+            case CONDITION -> {
+                return test(node, context) ? BehaviorStatus.SUCCESS : BehaviorStatus.FAILURE;
+            }
+            case ACTION -> {
+                return BehaviorStatus.RUNNING;
+            }
+            case COOLDOWN -> {
+                if (context.getMob().tickCount < context.cooldownUntil[node]) {
+                    return BehaviorStatus.FAILURE;
+                }
+                return probe(node + 1, context);
+            }
+            default -> throw new IllegalStateException("Unknown node type " + types[node]);
+        }
+    }
+
+    private boolean test(int node, BehaviorContext context) {
+        BehaviorInput input = inputs[node];
+        if (input == null) {
+            return conditions[node].test(context);
+        }
+        long value = input.read(context);
+        byte cached = context.results[node];
+        if (cached != BehaviorContext.UNKNOWN && context.inputs[node] == value) {
+            return cached == BehaviorContext.PASSED;
+        }
+        boolean passed = conditions[node].test(context);
+        context.inputs[node] = value;
+        context.results[node] = passed ? BehaviorContext.PASSED : BehaviorContext.FAILED;
+        return passed;
+    }
+
+    private BehaviorStatus runAction(int node, BehaviorContext context) {
+        if (context.running != node) {
+            if (context.running >= 0) {
+                // Another branch took over
+                stopRunning(context);
+            }
+            actions[node].start(context);
+        }
+        BehaviorStatus status = actions[node].tick(context);
+        if (status == BehaviorStatus.RUNNING) {
+            context.running = node;
+            context.ranAction = node;
+        } else {
+            context.running = -1;
+            actions[node].stop(context);
+        }
+        return status;
+    }
+
+    private void stopRunning(BehaviorContext context) {
+        int node = context.running;
+        context.running = -1;
+        actions[node].stop(context);
+    }
+}
@@ -0,0 +1,10 @@
+package ahjd.asgAI.custommobs.behavior;
+
+/**
+ * Result of evaluating a node of a behavior tree for one tick.
+ */
+public enum BehaviorStatus {
+    SUCCESS,
+    FAILURE,
+    RUNNING
+}
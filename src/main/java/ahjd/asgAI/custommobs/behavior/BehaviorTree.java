@@ -0,0 +1,158 @@
+package ahjd.asgAI.custommobs.behavior;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Factory for the nodes of a behavior tree. A tree is built once from these nodes, usually on a
+ * template, and {@link #compile(Node)} flattens it into a {@link BehaviorProgram} shared by every
+ * mob running it.
+ * <pre>
+ * BehaviorTree.selector(
+ *     BehaviorTree.sequence(
+ *         BehaviorTree.condition("has_target", ctx -&gt; ctx.getMob().getTarget() != null),
+ *         BehaviorTree.cooldown(40, BehaviorTree.action("leap", new LeapAction()))),
+ *     BehaviorTree.action("wander", new WanderAction()))
+ * </pre>
+ */
+public final class BehaviorTree {
+    private BehaviorTree() {
+    }
+
+    /**
+     * Runs its children in order until one does not fail. Succeeds or runs with that child, fails if all fail.
+     * @param children The children, highest priority first
+     * @return The node
+     */
+    public static Node selector(Node... children) {
+        return new Node(BehaviorProgram.SELECTOR, null, null, null, null, 0, children);
+    }
+
+    /**
+     * Runs its children in order until one does not succeed. Fails or runs with that child, succeeds if all succeed.
+     * @param children The children in order
+     * @return The node
+     */
+    public static Node sequence(Node... children) {
+        return new Node(BehaviorProgram.SEQUENCE, null, null, null, null, 0, children);
+    }
+
+    /**
+     * Leaf that succeeds when the condition holds. The condition is tested on every evaluation.
+     * @param name Name shown in debug output
+     * @param condition The condition
+     * @return The node
+     */
+    public static Node condition(String name, BehaviorCondition condition) {
+        return new Node(BehaviorProgram.CONDITION, name, condition, null, null, 0);
+    }
+
+    /**
+     * Leaf that succeeds when the condition holds. The condition is only tested again when its input changed.
+     * @param name Name shown in debug output
+     * @param input What the condition depends on
+     * @param condition The condition
+     * @return The node
+     */
+    public static Node condition(String name, BehaviorInput input, BehaviorCondition condition) {
+        return new Node(BehaviorProgram.CONDITION, name, condition, input, null, 0);
+    }
+
+    /**
+     * Leaf that makes the mob act.
+     * @param name Name shown in debug output
+     * @param action The action
+     * @return The node
+     */
+    public static Node action(String name, BehaviorAction action) {
+        return new Node(BehaviorProgram.ACTION, name, null, null, action, 0);
+    }
+
+    /**
+     * Fails without evaluating its child until the given ticks have passed since the child last succeeded.
+     * @param ticks The cooldown in ticks
+     * @param child The child
+     * @return The node
+     */
+    public static Node cooldown(int ticks, Node child) {
+        if (ticks <= 0) {
+            throw new IllegalArgumentException("Cooldown must be positive");
+        }
+        return new Node(BehaviorProgram.COOLDOWN, null, null, null, null, ticks, child);
+    }
+
+    /**
+     * Flattens the tree into a program.
+     * @param root The root node
+     * @return The compiled program
+     */
+    public static BehaviorProgram compile(Node root) {
+        List<Node> order = new ArrayList<>();
+        flatten(root, order);
+        int count = order.size();
+        byte[] types = new byte[count];
+        int[] ends = new int[count];
+        int[] cooldowns = new int[count];
+        String[] names = new String[count];
+        BehaviorCondition[] conditions = new BehaviorCondition[count];
+        BehaviorInput[] inputs = new BehaviorInput[count];
+        BehaviorAction[] actions = new BehaviorAction[count];
+
+        int index = 0;
+        for (Node node : order) {
+            types[index] = node.type;
+            names[index] = node.name;
+            conditions[index] = node.condition;
+            inputs[index] = node.input;
+            actions[index] = node.action;
+            cooldowns[index] = node.ticks;
+            index++;
+        }
+        // Children follow their parent directly, so a subtree ends where the next sibling starts
+        computeEnds(order, 0, ends);
+        return new BehaviorProgram(types, ends, cooldowns, names, conditions, inputs, actions);
+    }
+
+    private static void flatten(Node node, List<Node> order) {
+        order.add(node);
+        for (Node child : node.children) {
+            flatten(child, order);
+        }
+    }
+
+    private static int computeEnds(List<Node> order, int index, int[] ends) {
+        int next = index + 1;
+        for (int i = 0; i < order.get(index).children.length; i++) {
+            next = computeEnds(order, next, ends);
+        }
+        ends[index] = next;
+        return next;
+    }
+
+    /**
+     * Definition of one node, only used to build a tree before it is compiled.
+     */
+    public static final class Node {
+        private final byte type;
+        private final String name;
+        private final BehaviorCondition condition;
+        private final BehaviorInput input;
+        private final BehaviorAction action;
+        private final int ticks;
+        private final Node[] children;
+
+        private Node(byte type, String name, BehaviorCondition condition, BehaviorInput input, BehaviorAction action,
+                     int ticks, Node... children) {
+            if ((type == BehaviorProgram.SELECTOR || type == BehaviorProgram.SEQUENCE) && children.length == 0) {
+                throw new IllegalArgumentException("Composite nodes need at least one child");
+            }
+            this.type = type;
+            this.name = name;
+            this.condition = condition;
+            this.input = input;
+            this.action = action;
+            this.ticks = ticks;
+            this.children = children.clone();
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package ahjd.asgAI.custommobs.behavior;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Typed slot of the per-mob blackboard that the nodes of a behavior tree share. Keys are usually
+ * created once as constants, each one gets the next free slot of every blackboard.
+ * @param <T> The type of the value
+ */
+public final class BlackboardKey<T> {
+    private static final AtomicInteger NEXT_INDEX = new AtomicInteger();
+
+    private final String name;
+    private final int index;
+
+    public BlackboardKey(String name) {
+        this.name = name;
+        this.index = NEXT_INDEX.getAndIncrement();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    int getIndex() {
+        return index;
+    }
+
+    @Override
+    public String toString() {
+        return "BlackboardKey[" + name + "]";
+    }
+}
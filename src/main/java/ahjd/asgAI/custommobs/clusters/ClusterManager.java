@@ -0,0 +1,149 @@
+package ahjd.asgAI.custommobs.clusters;
+
+import ahjd.asgAI.custommobs.ActivationLevel;
+import ahjd.asgAI.custommobs.CustomMobInstance;
+import ahjd.asgAI.custommobs.TemplatePlan;
+import net.minecraft.world.entity.Mob;
+import net.minecraft.world.level.Level;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Groups co-located custom mobs of the same template plan into {@link MobCluster}s so their shareable
+ * sensors run once per cluster instead of once per mob. Mobs are bucketed into cubic cells and every
+ * cell with more than one mob becomes a cluster. Clusters are rebuilt every {@link #RECLUSTER_INTERVAL}
+ * ticks, a leader keeps its role as long as it stays in its cell, otherwise the member nearest the
+ * middle of the cell takes over. A cluster whose leader dies or unloads dissolves right away and its
+ * members sense on their own until the next rebuild. Main thread only.
+ */
+public class ClusterManager {
+    public static final int RECLUSTER_INTERVAL = 20;
+    private static final double CELL_SIZE = 6.0;
+    private static final double MOVEMENT_SLACK = 2.0; // How far members may move between rebuilds
+
+    private final Map<Mob, MobCluster> clusterByMob = new IdentityHashMap<>();
+    private final List<MobCluster> clusters = new ArrayList<>();
+    private int ticksUntilRecluster;
+
+    /**
+     * Rebuilds the clusters every {@link #RECLUSTER_INTERVAL} ticks.
+     * @param mobs The tracked custom mobs
+     */
+    public void tick(Collection<CustomMobInstance> mobs) {
+        if (--ticksUntilRecluster > 0) {
+            return;
+        }
+        ticksUntilRecluster = RECLUSTER_INTERVAL;
+        recluster(mobs);
+    }
+
+    /**
+     * Gets the cluster the mob belongs to.
+     * @param mob The mob
+     * @return The cluster, or null if the mob senses on its own
+     */
+    @Nullable
+    public MobCluster getCluster(Mob mob) {
+        return clusterByMob.get(mob);
+    }
+
+    public int getClusterCount() {
+        return clusters.size();
+    }
+
+    public int getClusteredMobCount() {
+        return clusterByMob.size();
+    }
+
+    /**
+     * Takes a mob out of clustering until the next rebuild, dissolving its cluster if it led one.
+     * @param mob The mob that died, unloaded or lost its sensors
+     */
+    public void remove(Mob mob) {
+        MobCluster cluster = clusterByMob.remove(mob);
+        if (cluster != null && cluster.getLeader() == mob) {
+            for (Mob member : cluster.getMembers()) {
+                clusterByMob.remove(member);
+            }
+            clusters.remove(cluster);
+        }
+    }
+
+    public void clear() {
+        clusterByMob.clear();
+        clusters.clear();
+    }
+
+    private void recluster(Collection<CustomMobInstance> mobs) {
+        Map<CellKey, List<Mob>> cells = new HashMap<>();
+        for (CustomMobInstance instance : mobs) {
+            TemplatePlan plan = instance.getPlan();
+            if (!plan.isClusterSharing() || instance.getActivationLevel() == ActivationLevel.FROZEN) {
+                continue;
+            }
+            Mob mob = instance.getMob();
+            if (mob == null || mob.isRemoved() || !mob.isAlive()) {
+                continue;
+            }
+            CellKey key = new CellKey(plan, mob.level(), cellOf(mob.getX()), cellOf(mob.getY()), cellOf(mob.getZ()));
+            cells.computeIfAbsent(key, k -> new ArrayList<>()).add(mob);
+        }
+
+        Map<Mob, MobCluster> previous = new IdentityHashMap<>(clusterByMob);
+        clusterByMob.clear();
+        clusters.clear();
+        for (Map.Entry<CellKey, List<Mob>> entry : cells.entrySet()) {
+            List<Mob> members = entry.getValue();
+            if (members.size() < 2) {
+                continue;
+            }
+            Mob leader = selectLeader(entry.getKey(), members, previous);
+            double margin = 0.0;
+            for (Mob member : members) {
+                margin = Math.max(margin, leader.distanceTo(member));
+            }
+            MobCluster cluster = new MobCluster(leader, members, margin + MOVEMENT_SLACK);
+            clusters.add(cluster);
+            for (Mob member : members) {
+                clusterByMob.put(member, cluster);
+            }
+        }
+    }
+
+    private Mob selectLeader(CellKey key, List<Mob> members, Map<Mob, MobCluster> previous) {
+        // Prefer a mob that already led, so sensor state does not hop between mobs every rebuild
+        for (Mob member : members) {
+            MobCluster cluster = previous.get(member);
+            if (cluster != null && cluster.getLeader() == member) {
+                return member;
+            }
+        }
+
+        double centerX = (key.x() + 0.5) * CELL_SIZE;
+        double centerY = (key.y() + 0.5) * CELL_SIZE;
+        double centerZ = (key.z() + 0.5) * CELL_SIZE;
+        Mob leader = members.get(0);
+        double best = Double.MAX_VALUE;
+        for (Mob member : members) {
+            double distance = member.distanceToSqr(centerX, centerY, centerZ);
+            if (distance < best) {
+                best = distance;
+                leader = member;
+            }
+        }
+        return leader;
+    }
+
+    private static int cellOf(double coordinate) {
+        return (int) Math.floor(coordinate / CELL_SIZE);
+    }
+
+    private record CellKey(TemplatePlan plan, Level level, int x, int y, int z) {
+    }
+}
@@ -0,0 +1,43 @@
+package ahjd.asgAI.custommobs.clusters;
+
+import net.minecraft.world.entity.Mob;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Co-located custom mobs of one template whose shareable sensors are run once, by the leader.
+ * The margin is how far the leader has to see beyond a sensor's own range so that every member's
+ * range is covered, including some slack for members moving until the next reclustering.
+ */
+public class MobCluster {
+    private final Mob leader;
+    private final List<Mob> members;
+    private final double margin;
+
+    MobCluster(Mob leader, List<Mob> members, double margin) {
+        this.leader = leader;
+        this.members = members;
+        this.margin = margin;
+    }
+
+    public Mob getLeader() {
+        return leader;
+    }
+
+    /**
+     * Gets every member, the leader included.
+     * @return The members
+     */
+    public List<Mob> getMembers() {
+        return Collections.unmodifiableList(members);
+    }
+
+    public double getMargin() {
+        return margin;
+    }
+
+    public int size() {
+        return members.size();
+    }
+}
@@ -0,0 +1,110 @@
+package ahjd.asgAI.custommobs.goals;
+
+import ahjd.asgAI.custommobs.behavior.BehaviorContext;
+import ahjd.asgAI.custommobs.behavior.BehaviorProgram;
+import ahjd.asgAI.custommobs.behavior.BehaviorStatus;
+import ahjd.asgAI.custommobs.behavior.BehaviorTree;
+import net.minecraft.world.entity.Mob;
+import net.minecraft.world.entity.ai.goal.Goal;
+
+import java.util.EnumSet;
+
+/**
+ * Runs a whole behavior tree as one goal. The tree is compiled once when the goal is created and
+ * shared by every mob of the template, each mob only gets its own {@link BehaviorContext}. This
+ * replaces a stack of goals that would each be polled on their own, and lets the nodes share state
+ * through the blackboard. The goal can start when the guards of the tree lead to an action, and runs
+ * while the tree returns {@link BehaviorStatus#RUNNING}.
+ */
+public class BehaviorTreeGoal implements CustomGoal {
+    private final String name;
+    private final BehaviorProgram program;
+    private final EnumSet<Goal.Flag> flags;
+
+    public BehaviorTreeGoal(String name, BehaviorTree.Node root) {
+        this(name, root, EnumSet.of(Goal.Flag.MOVE, Goal.Flag.LOOK));
+    }
+
+    public BehaviorTreeGoal(String name, BehaviorTree.Node root, EnumSet<Goal.Flag> flags) {
+        this.name = name;
+        this.program = BehaviorTree.compile(root);
+        this.flags = EnumSet.copyOf(flags);
+    }
+
+    public BehaviorProgram getProgram() {
+        return program;
+    }
+
+    @Override
+    public Goal createNMSGoal(Mob mob) {
+        return new BehaviorTreeGoalImpl(mob, program, flags);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String getDescription() {
+        return "Runs the behavior tree '" + name + "' with " + program.getNodeCount() + " nodes";
+    }
+
+    private static class BehaviorTreeGoalImpl extends Goal {
+        private final Mob mob;
+        private final BehaviorProgram program;
+        private final BehaviorContext context;
+        private BehaviorStatus lastStatus = BehaviorStatus.FAILURE;
+        private int lastEvaluatedTick = -1;
+
+        public BehaviorTreeGoalImpl(Mob mob, BehaviorProgram program, EnumSet<Goal.Flag> flags) {
+            this.mob = mob;
+            this.program = program;
+            this.context = program.createContext(mob);
+            this.setFlags(flags);
+        }
+
+        /**
+         * Evaluates the tree at most once per tick, the selector ticks the goal in the tick it starts it.
+         */
+        private BehaviorStatus evaluate() {
+            if (lastEvaluatedTick != mob.tickCount) {
+                lastEvaluatedTick = mob.tickCount;
+                lastStatus = program.evaluate(context);
+            }
+            return lastStatus;
+        }
+
+        @Override
+        public boolean canUse() {
+            // Only the guards, actions must not run before the selector starts the goal
+            return program.canRun(context);
+        }
+
+        @Override
+        public void start() {
+            evaluate();
+        }
+
+        @Override
+        public boolean canContinueToUse() {
+            return lastStatus == BehaviorStatus.RUNNING;
+        }
+
+        @Override
+        public void stop() {
+            program.stop(context);
+            lastStatus = BehaviorStatus.FAILURE;
+        }
+
+        @Override
+        public boolean requiresUpdateEveryTick() {
+            return true;
+        }
+
+        @Override
+        public void tick() {
+            evaluate();
+        }
+    }
+}
@@ -1,32 +1,47 @@
 package ahjd.asgAI.custommobs.goals;
 
+import ahjd.asgAI.AsgAI;
+import ahjd.asgAI.custommobs.CustomMobManager;
+import ahjd.asgAI.custommobs.pathing.PathLifecycle;
+import ahjd.asgAI.custommobs.pathing.RepathPolicy;
+import ahjd.asgAI.custommobs.zones.DefendZone;
+import ahjd.asgAI.custommobs.zones.ZoneListener;
 import net.minecraft.core.BlockPos;
+import net.minecraft.server.level.ServerPlayer;
 import net.minecraft.world.entity.LivingEntity;
 import net.minecraft.world.entity.Mob;
 import net.minecraft.world.entity.PathfinderMob;
 import net.minecraft.world.entity.ai.goal.Goal;
-import net.minecraft.world.entity.player.Player;
 import net.minecraft.world.phys.Vec3;
+import org.bukkit.NamespacedKey;
+import org.bukkit.persistence.PersistentDataContainer;
+import org.bukkit.persistence.PersistentDataType;
 
 import java.util.EnumSet;
 
 public class CustomDefendAreaGoal implements CustomGoal {
     private final double defendRadius;
     private final double speedModifier;
+    private final RepathPolicy repathPolicy;
     
     public CustomDefendAreaGoal() {
         this(16.0, 1.0);
     }
     
     public CustomDefendAreaGoal(double defendRadius, double speedModifier) {
+        this(defendRadius, speedModifier, RepathPolicy.MOVING_TARGET);
+    }
+    
+    public CustomDefendAreaGoal(double defendRadius, double speedModifier, RepathPolicy repathPolicy) {
         this.defendRadius = defendRadius;
         this.speedModifier = speedModifier;
+        this.repathPolicy = repathPolicy;
     }
     
     @Override
     public Goal createNMSGoal(Mob mob) {
         if (mob instanceof PathfinderMob pathfinderMob) {
-            return new DefendAreaGoalImpl(pathfinderMob, defendRadius, speedModifier);
+            return new DefendAreaGoalImpl(pathfinderMob, defendRadius, speedModifier, repathPolicy);
         }
         return null;
     }
@@ -46,35 +61,47 @@ public class CustomDefendAreaGoal implements CustomGoal {
         return mob instanceof PathfinderMob;
     }
     
-    private static class DefendAreaGoalImpl extends Goal {
+    private static class DefendAreaGoalImpl extends Goal implements StatefulGoal, ZoneListener {
         private final PathfinderMob mob;
         private final double defendRadius;
         private final double speedModifier;
+        private final PathLifecycle path;
         private BlockPos defendCenter;
+        private DefendZone zone;
+        private boolean intruded; // Kept up to date by the zone while a targetable player is inside
         private LivingEntity target;
         
-        public DefendAreaGoalImpl(PathfinderMob mob, double defendRadius, double speedModifier) {
+        public DefendAreaGoalImpl(PathfinderMob mob, double defendRadius, double speedModifier, RepathPolicy repathPolicy) {
             this.mob = mob;
             this.defendRadius = defendRadius;
             this.speedModifier = speedModifier;
+            this.path = new PathLifecycle(mob, repathPolicy);
             this.defendCenter = mob.blockPosition();
             this.setFlags(EnumSet.of(Goal.Flag.MOVE, Goal.Flag.TARGET));
         }
         
         @Override
         public boolean canUse() {
-            // Look for threats near the defend area
-            LivingEntity nearestThreat = mob.level().getNearestPlayer(
-                defendCenter.getX(), defendCenter.getY(), defendCenter.getZ(),
-                defendRadius, false
-            );
+            // The zone reports players entering and leaving, so an empty area costs nothing to watch
+            if (zone == null || !zone.isRegistered()) {
+                watch();
+            }
+            if (!intruded) {
+                return false;
+            }
             
-            if (nearestThreat != null && isValidTarget(nearestThreat)) {
-                this.target = nearestThreat;
-                return true;
+            ServerPlayer nearestThreat = null;
+            double nearestDistance = Double.MAX_VALUE;
+            for (ServerPlayer occupant : zone.getOccupants()) {
+                double distance = occupant.distanceToSqr(defendCenter.getX(), defendCenter.getY(), defendCenter.getZ());
+                if (distance < nearestDistance) {
+                    nearestDistance = distance;
+                    nearestThreat = occupant;
+                }
             }
             
-            return false;
+            this.target = nearestThreat;
+            return nearestThreat != null;
         }
         
         @Override
@@ -83,23 +110,66 @@ public class CustomDefendAreaGoal implements CustomGoal {
                 return false;
             }
             
-            // Stop defending if target is too far from defend area
-            double distanceToDefendCenter = target.distanceToSqr(
-                defendCenter.getX(), defendCenter.getY(), defendCenter.getZ()
-            );
-            
-            return distanceToDefendCenter <= defendRadius * defendRadius;
+            // Stop defending once the target has left the defend area
+            return zone.isOccupant(target);
+        }
+        
+        @Override
+        public void onEnter(DefendZone zone, ServerPlayer player) {
+            intruded = true;
+        }
+        
+        @Override
+        public void onLeave(DefendZone zone, ServerPlayer player) {
+            intruded = zone.isOccupied();
+        }
+        
+        /**
+         * Registers a zone for the current defend center, replacing the old one after the center was
+         * loaded or the old zone was pruned.
+         */
+        private void watch() {
+            if (zone != null) {
+                CustomMobManager.getInstance().getZones().unregister(zone);
+            }
+            zone = CustomMobManager.getInstance().getZones().register(mob, defendCenter, defendRadius);
+            // Players already inside entered before the goal was listening
+            zone.addListener(this);
+            intruded = zone.isOccupied();
         }
         
         @Override
         public void start() {
             mob.setTarget(target);
+            path.reset();
         }
         
         @Override
         public void stop() {
             mob.setTarget(null);
             target = null;
+            path.reset();
+        }
+        
+        @Override
+        public void saveState(PersistentDataContainer state) {
+            state.set(defendKey(), PersistentDataType.INTEGER_ARRAY,
+                new int[] { defendCenter.getX(), defendCenter.getY(), defendCenter.getZ() });
+        }
+        
+        @Override
+        public void loadState(PersistentDataContainer state) {
+            int[] saved = state.get(defendKey(), PersistentDataType.INTEGER_ARRAY);
+            if (saved != null && saved.length == 3) {
+                defendCenter = new BlockPos(saved[0], saved[1], saved[2]);
+                if (zone != null && !zone.getCenter().equals(defendCenter)) {
+                    watch();
+                }
+            }
+        }
+        
+        private static NamespacedKey defendKey() {
+            return new NamespacedKey(AsgAI.getInstance(), "defend_center");
         }
         
         @Override
@@ -110,14 +180,11 @@ public class CustomDefendAreaGoal implements CustomGoal {
                 double distanceToTarget = mob.distanceToSqr(target);
                 if (distanceToTarget < 4.0) {
                     mob.getNavigation().stop();
+                    path.reset();
                 } else {
-                    mob.getNavigation().moveTo(target, speedModifier);
+                    path.moveTo(target, speedModifier);
                 }
             }
         }
-        
-        private boolean isValidTarget(LivingEntity entity) {
-            return entity instanceof Player player && !entity.isSpectator() && !player.isCreative();
-        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,156 @@
+package ahjd.asgAI.custommobs.goals;
+
+import ahjd.asgAI.custommobs.CustomMobManager;
+import ahjd.asgAI.custommobs.pathing.FlowField;
+import ahjd.asgAI.custommobs.pathing.FlowFieldManager;
+import ahjd.asgAI.custommobs.pathing.PathLifecycle;
+import ahjd.asgAI.custommobs.pathing.RepathPolicy;
+import net.minecraft.core.BlockPos;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.util.Mth;
+import net.minecraft.world.InteractionHand;
+import net.minecraft.world.entity.LivingEntity;
+import net.minecraft.world.entity.Mob;
+import net.minecraft.world.entity.PathfinderMob;
+import net.minecraft.world.entity.ai.goal.Goal;
+import net.minecraft.world.entity.player.Player;
+
+import java.util.EnumSet;
+
+/**
+ * Melee pursuit for hordes. Instead of every mob computing its own path to the target, all mobs
+ * chasing the same target walk down one shared {@link FlowField}. Close to the target, or when they
+ * are off the field, mobs fall back to their own navigation. Use it in place of {@link CustomAttackGoal},
+ * as the horde_zombie template does.
+ */
+public class CustomFlowFieldChaseGoal implements CustomGoal {
+    private final double speedModifier;
+
+    public CustomFlowFieldChaseGoal() {
+        this(1.0);
+    }
+
+    public CustomFlowFieldChaseGoal(double speedModifier) {
+        this.speedModifier = speedModifier;
+    }
+
+    @Override
+    public Goal createNMSGoal(Mob mob) {
+        if (mob instanceof PathfinderMob pathfinderMob) {
+            return new FlowFieldChaseGoalImpl(pathfinderMob, speedModifier);
+        }
+        return null;
+    }
+
+    @Override
+    public String getName() {
+        return "custom_flow_field_chase";
+    }
+
+    @Override
+    public String getDescription() {
+        return "Makes the mob chase and melee its target along a flow field shared with other chasers";
+    }
+
+    @Override
+    public boolean canApplyTo(Mob mob) {
+        return mob instanceof PathfinderMob;
+    }
+
+    private static class FlowFieldChaseGoalImpl extends Goal {
+        private static final double DIRECT_RANGE_SQR = 16.0; // Within 4 blocks mobs path straight at the target
+        private static final int ATTACK_INTERVAL = 20;
+
+        private final PathfinderMob mob;
+        private final double speedModifier;
+        private final FlowFieldManager flowFields;
+        private final PathLifecycle directPath;
+        private final int height;
+        private boolean onField;
+        private int attackCooldown;
+
+        public FlowFieldChaseGoalImpl(PathfinderMob mob, double speedModifier) {
+            this.mob = mob;
+            this.speedModifier = speedModifier;
+            this.flowFields = CustomMobManager.getInstance().getFlowFields();
+            this.directPath = new PathLifecycle(mob, RepathPolicy.MOVING_TARGET);
+            this.height = Mth.ceil(mob.getBbHeight());
+            this.setFlags(EnumSet.of(Goal.Flag.MOVE, Goal.Flag.LOOK));
+        }
+
+        @Override
+        public boolean canUse() {
+            return isChaseable(mob.getTarget());
+        }
+
+        @Override
+        public boolean canContinueToUse() {
+            LivingEntity target = mob.getTarget();
+            return isChaseable(target) && mob.isWithinRestriction(target.blockPosition());
+        }
+
+        private static boolean isChaseable(LivingEntity target) {
+            if (target == null || !target.isAlive()) {
+                return false;
+            }
+            return !(target instanceof Player player) || (!player.isSpectator() && !player.isCreative());
+        }
+
+        @Override
+        public void start() {
+            directPath.reset();
+            onField = false;
+            attackCooldown = 0;
+            mob.setAggressive(true);
+        }
+
+        @Override
+        public void stop() {
+            directPath.reset();
+            mob.getNavigation().stop();
+            mob.setAggressive(false);
+        }
+
+        @Override
+        public boolean requiresUpdateEveryTick() {
+            return true;
+        }
+
+        @Override
+        public void tick() {
+            LivingEntity target = mob.getTarget();
+            if (target == null) {
+                return;
+            }
+            mob.getLookControl().setLookAt(target, 30.0F, 30.0F);
+
+            BlockPos step = null;
+            if (mob.distanceToSqr(target) > DIRECT_RANGE_SQR) {
+                FlowField field = flowFields.getField(target, height);
+                if (field != null) {
+                    step = field.nextStep(mob.blockPosition());
+                }
+            }
+            if (step != null) {
+                if (!onField) {
+                    // Drop the direct path once, the navigation would otherwise steer against the field
+                    directPath.reset();
+                    mob.getNavigation().stop();
+                    onField = true;
+                }
+                // Walk straight to the next block, the move control jumps up steps on its own
+                mob.getMoveControl().setWantedPosition(step.getX() + 0.5, step.getY(), step.getZ() + 0.5, speedModifier);
+            } else {
+                onField = false;
+                directPath.moveTo(target, speedModifier);
+            }
+
+            attackCooldown = Math.max(attackCooldown - 1, 0);
+            if (attackCooldown == 0 && mob.isWithinMeleeAttackRange(target) && mob.getSensing().hasLineOfSight(target)) {
+                attackCooldown = adjustedTickDelay(ATTACK_INTERVAL);
+                mob.swing(InteractionHand.MAIN_HAND);
+                mob.doHurtTarget((ServerLevel) mob.level(), target);
+            }
+        }
+    }
+}
@@ -37,4 +37,24 @@ public interface CustomGoal {
     default boolean canApplyTo(Mob mob) {
         return true;
     }
+    
+    /**
+     * Checks if this goal is low priority and may be postponed while the AI governor is throttling.
+     * Idle behaviours such as wandering or patrolling should return true.
+     * @return true if the goal can be deferred under load, false otherwise
+     */
+    default boolean isDeferrable() {
+        return false;
+    }
+    
+    /**
+     * Wraps a goal so it checks whether it can start at most once every interval.
+     * @param goal The goal to throttle
+     * @param intervalTicks Ticks between checks
+     * @return The throttled goal
+     * @see ThrottledGoal
+     */
+    static CustomGoal throttled(CustomGoal goal, int intervalTicks) {
+        return new ThrottledGoal(goal, intervalTicks);
+    }
 }
\ No newline at end of file
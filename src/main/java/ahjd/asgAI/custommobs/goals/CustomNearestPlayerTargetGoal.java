@@ -1,5 +1,6 @@
 package ahjd.asgAI.custommobs.goals;
 
+import ahjd.asgAI.custommobs.CustomMobManager;
 import net.minecraft.world.entity.Mob;
 import net.minecraft.world.entity.PathfinderMob;
 import net.minecraft.world.entity.ai.goal.Goal;
@@ -28,14 +29,7 @@ public class CustomNearestPlayerTargetGoal implements CustomGoal {
     @Override
     public Goal createNMSGoal(Mob mob) {
         if (mob instanceof PathfinderMob pathfinderMob) {
-            return new NearestAttackableTargetGoal<>(
-                pathfinderMob, 
-                Player.class, 
-                randomInterval, 
-                mustSee, 
-                mustReach, 
-                null
-            );
+            return new IndexedPlayerTargetGoal(pathfinderMob, randomInterval, mustSee, mustReach);
         }
         return null;
     }
@@ -54,4 +48,25 @@ public class CustomNearestPlayerTargetGoal implements CustomGoal {
     public boolean canApplyTo(Mob mob) {
         return mob instanceof PathfinderMob;
     }
-}
\ No newline at end of file
+    
+    /**
+     * Vanilla nearest player targeting that first asks the shared player index whether any
+     * eligible player is within follow range, so mobs with nobody around skip the level search.
+     */
+    private static class IndexedPlayerTargetGoal extends NearestAttackableTargetGoal<Player> {
+        
+        public IndexedPlayerTargetGoal(PathfinderMob mob, int randomInterval, boolean mustSee, boolean mustReach) {
+            super(mob, Player.class, randomInterval, mustSee, mustReach, null);
+        }
+        
+        @Override
+        protected void findTarget() {
+            if (!CustomMobManager.getInstance().getPlayerIndex().hasAnyInRange(
+                    mob.level(), mob.getX(), mob.getY(), mob.getZ(), getFollowDistance())) {
+                this.target = null;
+                return;
+            }
+            super.findTarget();
+        }
+    }
+}
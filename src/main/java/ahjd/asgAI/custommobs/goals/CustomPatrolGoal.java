@@ -1,10 +1,15 @@
 package ahjd.asgAI.custommobs.goals;
 
+import ahjd.asgAI.AsgAI;
+import ahjd.asgAI.custommobs.pathing.PathLifecycle;
+import ahjd.asgAI.custommobs.pathing.RepathPolicy;
 import net.minecraft.core.BlockPos;
 import net.minecraft.world.entity.Mob;
 import net.minecraft.world.entity.PathfinderMob;
 import net.minecraft.world.entity.ai.goal.Goal;
-import net.minecraft.world.level.pathfinder.Path;
+import org.bukkit.NamespacedKey;
+import org.bukkit.persistence.PersistentDataContainer;
+import org.bukkit.persistence.PersistentDataType;
 
 import java.util.ArrayList;
 import java.util.EnumSet;
@@ -14,21 +19,27 @@ public class CustomPatrolGoal implements CustomGoal {
     private final double speedModifier;
     private final int patrolRadius;
     private final int patrolPoints;
+    private final RepathPolicy repathPolicy;
     
     public CustomPatrolGoal() {
         this(1.0, 20, 4);
     }
     
     public CustomPatrolGoal(double speedModifier, int patrolRadius, int patrolPoints) {
+        this(speedModifier, patrolRadius, patrolPoints, RepathPolicy.STATIC_TARGET);
+    }
+    
+    public CustomPatrolGoal(double speedModifier, int patrolRadius, int patrolPoints, RepathPolicy repathPolicy) {
         this.speedModifier = speedModifier;
         this.patrolRadius = patrolRadius;
         this.patrolPoints = patrolPoints;
+        this.repathPolicy = repathPolicy;
     }
     
     @Override
     public Goal createNMSGoal(Mob mob) {
         if (mob instanceof PathfinderMob pathfinderMob) {
-            return new PatrolGoalImpl(pathfinderMob, speedModifier, patrolRadius, patrolPoints);
+            return new PatrolGoalImpl(pathfinderMob, speedModifier, patrolRadius, patrolPoints, repathPolicy);
         }
         return null;
     }
@@ -48,27 +59,37 @@ public class CustomPatrolGoal implements CustomGoal {
         return mob instanceof PathfinderMob;
     }
     
-    private static class PatrolGoalImpl extends Goal {
+    @Override
+    public boolean isDeferrable() {
+        return true;
+    }
+    
+    private static class PatrolGoalImpl extends Goal implements StatefulGoal {
         private final PathfinderMob mob;
         private final double speedModifier;
         private final int patrolRadius;
+        private final int patrolPointCount;
+        private final BlockPos origin;
         private final List<BlockPos> patrolPoints;
+        private final PathLifecycle path;
         private int currentPatrolIndex;
         private int idleTime;
         private final int maxIdleTime = 100; // 5 seconds at 20 TPS
         
-        public PatrolGoalImpl(PathfinderMob mob, double speedModifier, int patrolRadius, int patrolPointCount) {
+        public PatrolGoalImpl(PathfinderMob mob, double speedModifier, int patrolRadius, int patrolPointCount, RepathPolicy repathPolicy) {
             this.mob = mob;
             this.speedModifier = speedModifier;
             this.patrolRadius = patrolRadius;
+            this.patrolPointCount = patrolPointCount;
+            this.origin = mob.blockPosition();
             this.patrolPoints = new ArrayList<>();
+            // Patrol points never move and a late path only delays the walk, so paths are computed off the main
+            // thread, and wide loops are walked along high level routes
+            this.path = new PathLifecycle(mob, repathPolicy, true, true);
             this.currentPatrolIndex = 0;
             this.idleTime = 0;
             
             this.setFlags(EnumSet.of(Goal.Flag.MOVE));
-            
-            // Generate patrol points around spawn location
-            generatePatrolPoints(mob.blockPosition(), patrolPointCount);
         }
         
         private void generatePatrolPoints(BlockPos center, int pointCount) {
@@ -87,6 +108,11 @@ public class CustomPatrolGoal implements CustomGoal {
         
         @Override
         public boolean canUse() {
+            // Generate patrol points around spawn location on first use, restored mobs already have theirs
+            if (patrolPoints.isEmpty()) {
+                generatePatrolPoints(origin, patrolPointCount);
+            }
+            
             // Only patrol if mob has no target
             return mob.getTarget() == null && !patrolPoints.isEmpty();
         }
@@ -99,13 +125,48 @@ public class CustomPatrolGoal implements CustomGoal {
         @Override
         public void start() {
             idleTime = 0;
+            path.reset();
         }
         
         @Override
         public void stop() {
+            path.reset();
             mob.getNavigation().stop();
         }
         
+        /**
+         * Saves the current index followed by the points themselves, so restoring never samples the heightmap.
+         */
+        @Override
+        public void saveState(PersistentDataContainer state) {
+            int[] saved = new int[1 + patrolPoints.size() * 3];
+            saved[0] = currentPatrolIndex;
+            for (int i = 0; i < patrolPoints.size(); i++) {
+                BlockPos point = patrolPoints.get(i);
+                saved[1 + i * 3] = point.getX();
+                saved[2 + i * 3] = point.getY();
+                saved[3 + i * 3] = point.getZ();
+            }
+            state.set(patrolKey(), PersistentDataType.INTEGER_ARRAY, saved);
+        }
+        
+        @Override
+        public void loadState(PersistentDataContainer state) {
+            int[] saved = state.get(patrolKey(), PersistentDataType.INTEGER_ARRAY);
+            if (saved == null || saved.length < 4) {
+                return;
+            }
+            patrolPoints.clear();
+            for (int i = 1; i + 2 < saved.length; i += 3) {
+                patrolPoints.add(new BlockPos(saved[i], saved[i + 1], saved[i + 2]));
+            }
+            currentPatrolIndex = Math.floorMod(saved[0], patrolPoints.size());
+        }
+        
+        private static NamespacedKey patrolKey() {
+            return new NamespacedKey(AsgAI.getInstance(), "patrol");
+        }
+        
         @Override
         public void tick() {
             if (patrolPoints.isEmpty()) return;
@@ -123,11 +184,8 @@ public class CustomPatrolGoal implements CustomGoal {
                     idleTime = 0;
                 }
             } else {
-                // Move towards current patrol point
-                Path path = mob.getNavigation().createPath(currentTarget, 1);
-                if (path != null) {
-                    mob.getNavigation().moveTo(path, speedModifier);
-                }
+                // Move towards current patrol point, keeping the path while it is still good
+                path.moveTo(currentTarget, speedModifier);
             }
         }
     }
@@ -44,4 +44,9 @@ public class CustomWanderGoal implements CustomGoal {
     public boolean canApplyTo(Mob mob) {
         return mob instanceof PathfinderMob;
     }
+    
+    @Override
+    public boolean isDeferrable() {
+        return true;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,78 @@
+package ahjd.asgAI.custommobs.goals;
+
+import ca.spottedleaf.moonrise.common.set.OptimizedSmallEnumSet;
+import net.minecraft.world.entity.ai.goal.Goal;
+
+/**
+ * Base class for goals that wrap another NMS goal and forward every call to it.
+ * Subclasses override the calls they want to decorate. Flags are shared with the
+ * wrapped goal so the goal selector sees the same control flags either way.
+ */
+public abstract class ForwardingGoal extends Goal {
+    protected final Goal delegate;
+
+    protected ForwardingGoal(Goal delegate) {
+        this.delegate = delegate;
+    }
+
+    public Goal getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * Strips every forwarding layer from the given goal.
+     * @param goal The possibly wrapped goal
+     * @return The innermost goal
+     */
+    public static Goal unwrap(Goal goal) {
+        while (goal instanceof ForwardingGoal forwarding) {
+            goal = forwarding.delegate;
+        }
+        return goal;
+    }
+
+    @Override
+    public boolean canUse() {
+        return delegate.canUse();
+    }
+
+    @Override
+    public boolean canContinueToUse() {
+        return delegate.canContinueToUse();
+    }
+
+    @Override
+    public boolean isInterruptable() {
+        return delegate.isInterruptable();
+    }
+
+    @Override
+    public void start() {
+        delegate.start();
+    }
+
+    @Override
+    public void stop() {
+        delegate.stop();
+    }
+
+    @Override
+    public boolean requiresUpdateEveryTick() {
+        return delegate.requiresUpdateEveryTick();
+    }
+
+    @Override
+    public void tick() {
+        delegate.tick();
+    }
+
+    @Override
+    public OptimizedSmallEnumSet<Goal.Flag> getFlags() {
+        return delegate.getFlags();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[" + delegate + "]";
+    }
+}
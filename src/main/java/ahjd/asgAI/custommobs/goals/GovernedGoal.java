@@ -0,0 +1,101 @@
+package ahjd.asgAI.custommobs.goals;
+
+import ahjd.asgAI.custommobs.ActivationLevel;
+import ahjd.asgAI.custommobs.CustomMobInstance;
+import ahjd.asgAI.custommobs.MobPriority;
+import ahjd.asgAI.custommobs.governor.AIGovernor;
+import ahjd.asgAI.custommobs.profiler.AIProfiler;
+import ahjd.asgAI.custommobs.profiler.ProfileTimer;
+import net.minecraft.world.entity.Mob;
+import net.minecraft.world.entity.ai.goal.Goal;
+
+/**
+ * Wraps every goal produced by a template so the time it spends is charged to the {@link AIGovernor}.
+ * Deferrable goals additionally skip their start check while the governor is throttling, and every
+ * goal checks whether it can start less often while the mob is in the reduced {@link ActivationLevel}.
+ * The start checks and ticks are also charged to the {@link AIProfiler} under the goal's name.
+ */
+public class GovernedGoal extends ForwardingGoal {
+    private final Mob mob;
+    private final CustomMobInstance instance;
+    private final AIGovernor governor;
+    private final MobPriority priority;
+    private final boolean deferrable;
+    private final ProfileTimer canUseTimer;
+    private final ProfileTimer tickTimer;
+
+    public GovernedGoal(Goal delegate, Mob mob, CustomMobInstance instance, AIGovernor governor, boolean deferrable,
+                        AIProfiler profiler, String name) {
+        super(delegate);
+        this.mob = mob;
+        this.instance = instance;
+        this.governor = governor;
+        this.priority = instance.getPlan().getPriority();
+        this.deferrable = deferrable;
+        String templateId = instance.getTemplate().getId();
+        this.canUseTimer = profiler.timer(AIProfiler.GOAL, name + ".canUse", templateId);
+        this.tickTimer = profiler.timer(AIProfiler.GOAL, name + ".tick", templateId);
+    }
+
+    @Override
+    public boolean canUse() {
+        int phase = mob.tickCount + mob.getId();
+        ActivationLevel level = instance.getActivationLevel();
+        if (level != ActivationLevel.FULL && phase % level.getIntervalMultiplier() != 0) {
+            return false;
+        }
+        if (deferrable && governor.shouldDefer(priority, phase)) {
+            return false;
+        }
+        long start = System.nanoTime();
+        try {
+            return delegate.canUse();
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            governor.record(elapsed);
+            canUseTimer.record(elapsed);
+        }
+    }
+
+    @Override
+    public boolean canContinueToUse() {
+        long start = System.nanoTime();
+        try {
+            return delegate.canContinueToUse();
+        } finally {
+            governor.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void start() {
+        long start = System.nanoTime();
+        try {
+            delegate.start();
+        } finally {
+            governor.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void stop() {
+        long start = System.nanoTime();
+        try {
+            delegate.stop();
+        } finally {
+            governor.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void tick() {
+        long start = System.nanoTime();
+        try {
+            delegate.tick();
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            governor.record(elapsed);
+            tickTimer.record(elapsed);
+        }
+    }
+}
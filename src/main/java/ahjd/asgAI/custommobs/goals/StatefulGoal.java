@@ -0,0 +1,23 @@
+package ahjd.asgAI.custommobs.goals;
+
+import org.bukkit.persistence.PersistentDataContainer;
+
+/**
+ * Implemented by NMS goals that carry state worth keeping while their mob is hibernated.
+ * Goals are rebuilt from the template when the mob's chunk loads again, and the saved state
+ * is handed back before the goal is first used.
+ */
+public interface StatefulGoal {
+
+    /**
+     * Writes the goal state before the mob is hibernated.
+     * @param state Container owned by this goal
+     */
+    void saveState(PersistentDataContainer state);
+
+    /**
+     * Restores the goal state after the mob was rehydrated.
+     * @param state Container written by {@link #saveState(PersistentDataContainer)}
+     */
+    void loadState(PersistentDataContainer state);
+}
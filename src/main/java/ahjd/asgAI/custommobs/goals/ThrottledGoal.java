@@ -0,0 +1,96 @@
+package ahjd.asgAI.custommobs.goals;
+
+import net.minecraft.world.entity.Mob;
+import net.minecraft.world.entity.ai.goal.Goal;
+
+/**
+ * Decorator that caps how often an expensive goal checks whether it can start. The wrapped goal's
+ * {@code canUse} runs once every interval, at a random phase per mob so checks spread over the
+ * interval, and the answer is reused in between. Being hurt by a living attacker triggers a check right
+ * away so the mob still reacts to being attacked, damage from the environment waits for the next check. Create it with {@link CustomGoal#throttled(CustomGoal, int)}.
+ */
+public class ThrottledGoal implements CustomGoal {
+    private final CustomGoal goal;
+    private final int intervalTicks;
+
+    ThrottledGoal(CustomGoal goal, int intervalTicks) {
+        if (intervalTicks < 1) {
+            throw new IllegalArgumentException("Throttle interval must be at least one tick");
+        }
+        this.goal = goal;
+        this.intervalTicks = intervalTicks;
+    }
+
+    public CustomGoal getGoal() {
+        return goal;
+    }
+
+    public int getIntervalTicks() {
+        return intervalTicks;
+    }
+
+    @Override
+    public Goal createNMSGoal(Mob mob) {
+        Goal nmsGoal = goal.createNMSGoal(mob);
+        if (nmsGoal == null || intervalTicks == 1) {
+            return nmsGoal;
+        }
+        return new ThrottledGoalImpl(nmsGoal, mob, intervalTicks);
+    }
+
+    @Override
+    public String getName() {
+        return goal.getName();
+    }
+
+    @Override
+    public String getDescription() {
+        return goal.getDescription() + " (checked every " + intervalTicks + " ticks)";
+    }
+
+    @Override
+    public boolean canApplyTo(Mob mob) {
+        return goal.canApplyTo(mob);
+    }
+
+    @Override
+    public boolean isDeferrable() {
+        return goal.isDeferrable();
+    }
+
+    private static class ThrottledGoalImpl extends ForwardingGoal {
+        private final Mob mob;
+        private final int intervalTicks;
+        private int nextCheckTick;
+        private int lastHurtTimestamp;
+        private boolean cachedAnswer;
+
+        public ThrottledGoalImpl(Goal delegate, Mob mob, int intervalTicks) {
+            super(delegate);
+            this.mob = mob;
+            this.intervalTicks = intervalTicks;
+            this.nextCheckTick = mob.tickCount + mob.getRandom().nextInt(intervalTicks);
+            this.lastHurtTimestamp = mob.getLastHurtByMobTimestamp();
+        }
+
+        @Override
+        public boolean canUse() {
+            // Stamped with the tick of every hit by a living attacker, so no hit between two checks is missed
+            int hurtTimestamp = mob.getLastHurtByMobTimestamp();
+            boolean hurt = hurtTimestamp != lastHurtTimestamp;
+            lastHurtTimestamp = hurtTimestamp;
+            if (hurt || mob.tickCount >= nextCheckTick) {
+                nextCheckTick = mob.tickCount + intervalTicks;
+                cachedAnswer = delegate.canUse();
+            }
+            return cachedAnswer;
+        }
+
+        @Override
+        public void start() {
+            // The answer was used up, the goal has to check again before it restarts
+            cachedAnswer = false;
+            delegate.start();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package ahjd.asgAI.custommobs.governor;
+
+import ahjd.asgAI.custommobs.MobPriority;
+import com.destroystokyo.paper.event.server.ServerTickEndEvent;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+
+/**
+ * Keeps AsgAI within a per-tick time budget.
+ * Sensors and goals report the time they spend through {@link #record(long)}. At the end of every
+ * server tick the governor folds that into a moving average and raises or lowers a throttle level.
+ * The level stretches sensor intervals and postpones deferrable goals, scaled by the template's
+ * {@link MobPriority}. The budget is halved while the server itself is running behind 20 TPS.
+ */
+public class AIGovernor implements Listener {
+    public static final int MAX_LEVEL = 4;
+    private static final double SMOOTHING = 0.1;
+    private static final double SERVER_TICK_MILLIS = 50.0;
+    private static final int RAISE_AFTER_TICKS = 20;
+    private static final int LOWER_AFTER_TICKS = 100;
+    private static final double HEADROOM_RATIO = 0.6;
+
+    private long budgetNanos;
+    private long tickNanos;
+    private double averageNanos;
+    private int level;
+    private int overBudgetTicks;
+    private int underBudgetTicks;
+
+    public AIGovernor(double budgetMillis) {
+        setBudgetMillis(budgetMillis);
+    }
+
+    public void setBudgetMillis(double budgetMillis) {
+        this.budgetNanos = (long) (Math.max(0.1, budgetMillis) * 1_000_000L);
+    }
+
+    public double getBudgetMillis() {
+        return budgetNanos / 1_000_000.0;
+    }
+
+    /**
+     * Adds time spent in AsgAI code to the current tick. Main thread only.
+     * @param nanos The elapsed time in nanoseconds
+     */
+    public void record(long nanos) {
+        tickNanos += nanos;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public double getAverageMillis() {
+        return averageNanos / 1_000_000.0;
+    }
+
+    /**
+     * Gets the factor sensor intervals are stretched by for mobs of the given priority.
+     * @param priority The mob's priority class
+     * @return 1 at full fidelity, a power of two while throttled
+     */
+    public int getIntervalMultiplier(MobPriority priority) {
+        return switch (priority) {
+            case BOSS -> 1;
+            case NORMAL -> 1 << ((level + 1) / 2);
+            case TRASH -> 1 << level;
+        };
+    }
+
+    /**
+     * Checks whether a deferrable goal should skip its start check this tick.
+     * @param priority The mob's priority class
+     * @param tickCount A per-mob tick counter, offset so mobs do not all resume on the same tick
+     * @return true if the goal should not be considered this tick
+     */
+    public boolean shouldDefer(MobPriority priority, int tickCount) {
+        int multiplier = getIntervalMultiplier(priority);
+        return multiplier > 1 && tickCount % multiplier != 0;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onTickEnd(ServerTickEndEvent event) {
+        endTick(event.getTickDuration());
+    }
+
+    private void endTick(double serverTickMillis) {
+        averageNanos += (tickNanos - averageNanos) * SMOOTHING;
+        tickNanos = 0;
+
+        // Leave more room for the rest of the server while it cannot keep up
+        double budget = serverTickMillis > SERVER_TICK_MILLIS ? budgetNanos * 0.5 : budgetNanos;
+
+        if (averageNanos > budget) {
+            underBudgetTicks = 0;
+            if (++overBudgetTicks >= RAISE_AFTER_TICKS && level < MAX_LEVEL) {
+                level++;
+                overBudgetTicks = 0;
+            }
+        } else if (averageNanos < budget * HEADROOM_RATIO) {
+            overBudgetTicks = 0;
+            if (++underBudgetTicks >= LOWER_AFTER_TICKS && level > 0) {
+                level--;
+                underBudgetTicks = 0;
+            }
+        } else {
+            overBudgetTicks = 0;
+            underBudgetTicks = 0;
+        }
+    }
+}
@@ -0,0 +1,303 @@
+package ahjd.asgAI.custommobs.hibernation;
+
+import ahjd.asgAI.AsgAI;
+import ahjd.asgAI.custommobs.ActivationLevel;
+import ahjd.asgAI.custommobs.CustomMobInstance;
+import ahjd.asgAI.custommobs.CustomMobManager;
+import ahjd.asgAI.custommobs.CustomMobTemplate;
+import ahjd.asgAI.custommobs.TemplatePlan;
+import ahjd.asgAI.custommobs.goals.ForwardingGoal;
+import ahjd.asgAI.custommobs.goals.StatefulGoal;
+import ahjd.asgAI.custommobs.sensors.CustomSensor;
+import ahjd.asgAI.custommobs.squads.Squad;
+import ahjd.asgAI.utils.RemoveVanillaAI;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import net.minecraft.world.entity.Mob;
+import net.minecraft.world.entity.ai.goal.GoalSelector;
+import net.minecraft.world.entity.ai.goal.WrappedGoal;
+import org.bukkit.Bukkit;
+import org.bukkit.NamespacedKey;
+import org.bukkit.World;
+import org.bukkit.craftbukkit.entity.CraftLivingEntity;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.LivingEntity;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.EntitiesLoadEvent;
+import org.bukkit.event.world.EntitiesUnloadEvent;
+import org.bukkit.persistence.PersistentDataContainer;
+import org.bukkit.persistence.PersistentDataType;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Takes custom mobs out of the AI system while their chunk is unloaded.
+ * Every custom mob is tagged with its template id when it spawns. When its chunk unloads, the state
+ * of its stateful goals and sensors and the version of the {@link TemplatePlan} it was built from are
+ * written into the entity's persistent data, its sensors are detached and it is no longer tracked, so
+ * unloaded regions cost no ticks and no memory. When the chunk loads again the vanilla AI is cleared
+ * right away and the custom AI is rebuilt over the next ticks, a limited number of mobs per tick, from
+ * the same plan version if a tracked or queued mob still holds it and from the current template otherwise,
+ * which is also what happens after a restart. Hibernated mobs are counted per template until they are
+ * rebuilt, see {@link #getHibernatedCount}.
+ */
+public class HibernationManager implements Listener {
+    private final CustomMobManager manager;
+    private final NamespacedKey templateKey;
+    private final NamespacedKey stateKey;
+    private final NamespacedKey squadKey;
+    private final NamespacedKey planVersionKey;
+    private final NamespacedKey sessionKey;
+    private final Queue<PendingMob> pendingRehydration;
+    private final Object2IntOpenHashMap<String> hibernatedByTemplate;
+    private final int session;
+    private final int rehydratePerTick;
+
+    public HibernationManager(AsgAI plugin, CustomMobManager manager, int rehydratePerTick) {
+        this.manager = manager;
+        this.templateKey = new NamespacedKey(plugin, "template");
+        this.stateKey = new NamespacedKey(plugin, "ai_state");
+        this.squadKey = new NamespacedKey(plugin, "squad");
+        this.planVersionKey = new NamespacedKey(plugin, "plan_version");
+        this.sessionKey = new NamespacedKey(plugin, "session");
+        this.pendingRehydration = new ArrayDeque<>();
+        this.hibernatedByTemplate = new Object2IntOpenHashMap<>();
+        // Plan versions start over with the server, a version saved by an earlier run must not match
+        this.session = ThreadLocalRandom.current().nextInt();
+        this.rehydratePerTick = Math.max(1, rehydratePerTick);
+    }
+
+    /**
+     * Marks a freshly spawned entity as a custom mob of the given template.
+     * @param entity The spawned entity
+     * @param template The template it was spawned from
+     */
+    public void tag(LivingEntity entity, CustomMobTemplate template) {
+        entity.getPersistentDataContainer().set(templateKey, PersistentDataType.STRING, template.getId());
+    }
+
+    /**
+     * Saves the AI state of a tracked custom mob onto its entity and stops tracking it.
+     * @param instance The custom mob to hibernate
+     */
+    public void hibernate(CustomMobInstance instance) {
+        LivingEntity entity = instance.getEntity();
+        manager.removeCustomMob(entity.getUniqueId());
+        if (!(entity instanceof CraftLivingEntity craftEntity) || !(craftEntity.getHandle() instanceof Mob mob)) {
+            return;
+        }
+
+        PersistentDataContainer data = entity.getPersistentDataContainer();
+        PersistentDataContainer state = data.getAdapterContext().newPersistentDataContainer();
+        saveGoals(mob.goalSelector, "goal_", state);
+        saveGoals(mob.targetSelector, "target_", state);
+        for (CustomSensor sensor : instance.getPlan().getSensors()) {
+            PersistentDataContainer sensorState = state.getAdapterContext().newPersistentDataContainer();
+            sensor.saveState(mob, sensorState);
+            if (!sensorState.isEmpty()) {
+                state.set(sensorKey(sensor), PersistentDataType.TAG_CONTAINER, sensorState);
+            }
+        }
+        data.set(stateKey, PersistentDataType.TAG_CONTAINER, state);
+        data.set(planVersionKey, PersistentDataType.INTEGER, instance.getPlan().getVersion());
+        data.set(sessionKey, PersistentDataType.INTEGER, session);
+        hibernatedByTemplate.addTo(instance.getTemplateId(), 1);
+
+        Squad squad = manager.getSquads().getSquad(mob);
+        if (squad != null) {
+            data.set(squadKey, PersistentDataType.STRING, squad.getId());
+            manager.getSquads().leave(mob);
+        } else {
+            data.remove(squadKey);
+        }
+
+        // The aware flag is saved with the entity, a frozen mob must not come back frozen
+        if (instance.getActivationLevel() == ActivationLevel.FROZEN) {
+            mob.aware = true;
+        }
+        manager.getSensorScheduler().unscheduleAll(mob);
+    }
+
+    /**
+     * Hibernates every tracked custom mob, so their state survives a restart.
+     */
+    public void hibernateAll() {
+        for (CustomMobInstance instance : manager.getActiveMobs()) {
+            hibernate(instance);
+        }
+        for (PendingMob pending : pendingRehydration) {
+            pending.template().releasePlan(pending.plan());
+        }
+        pendingRehydration.clear();
+        hibernatedByTemplate.clear();
+    }
+
+    /**
+     * Queues every tagged custom mob that is already loaded, for when the plugin enables after worlds have loaded.
+     */
+    public void queueLoaded() {
+        for (World world : Bukkit.getWorlds()) {
+            for (LivingEntity entity : world.getLivingEntities()) {
+                queue(entity);
+            }
+        }
+    }
+
+    /**
+     * Rebuilds the AI of queued mobs, at most the configured number per tick. Main thread only.
+     */
+    public void tick() {
+        for (int i = 0; i < rehydratePerTick && !pendingRehydration.isEmpty(); i++) {
+            PendingMob pending = pendingRehydration.poll();
+            LivingEntity entity = pending.entity();
+            // Unloaded again before it got its turn, its saved state is still on the entity
+            if (entity.isValid() && manager.getCustomMob(entity.getUniqueId()) == null) {
+                rehydrate(pending);
+                uncount(pending);
+            } else if (entity.isDead()) {
+                uncount(pending);
+            }
+            // Tracking took its own reference, or the mob is gone
+            pending.template().releasePlan(pending.plan());
+        }
+    }
+
+    public int getPendingCount() {
+        return pendingRehydration.size();
+    }
+
+    /**
+     * Counts the mobs of a template that were hibernated since the plugin enabled and have not been rebuilt
+     * yet, including mobs whose chunk loaded again and that are still waiting in the queue. Mobs hibernated
+     * by an earlier run are not counted.
+     * @param templateId The template id
+     * @return The number of hibernated mobs of the template
+     */
+    public int getHibernatedCount(String templateId) {
+        return hibernatedByTemplate.getInt(templateId);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onEntitiesUnload(EntitiesUnloadEvent event) {
+        for (Entity entity : event.getEntities()) {
+            CustomMobInstance instance = manager.getCustomMob(entity.getUniqueId());
+            if (instance != null) {
+                hibernate(instance);
+            }
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onEntitiesLoad(EntitiesLoadEvent event) {
+        for (Entity entity : event.getEntities()) {
+            if (entity instanceof LivingEntity livingEntity) {
+                queue(livingEntity);
+            }
+        }
+    }
+
+    private void queue(LivingEntity entity) {
+        PersistentDataContainer data = entity.getPersistentDataContainer();
+        String templateId = data.get(templateKey, PersistentDataType.STRING);
+        if (templateId == null || manager.getCustomMob(entity.getUniqueId()) != null) {
+            return;
+        }
+        CustomMobTemplate template = manager.getTemplate(templateId);
+        if (template == null) {
+            AsgAI.getInstance().getLogger().warning("Cannot restore custom mob " + entity.getUniqueId()
+                    + ", unknown template: " + templateId);
+            return;
+        }
+
+        Integer savedSession = data.get(sessionKey, PersistentDataType.INTEGER);
+        boolean counted = savedSession != null && savedSession == session;
+        // Resolved now and held while queued, so the version is not forgotten before the mob's turn
+        TemplatePlan plan = resolvePlan(data, template, counted);
+        template.retainPlan(plan);
+        // Vanilla goals come back with the entity, keep them from running until the custom AI is rebuilt
+        RemoveVanillaAI.clearVanillaAI(entity);
+        pendingRehydration.add(new PendingMob(entity, template, plan, counted));
+    }
+
+    private TemplatePlan resolvePlan(PersistentDataContainer data, CustomMobTemplate template, boolean sameSession) {
+        Integer version = data.get(planVersionKey, PersistentDataType.INTEGER);
+        TemplatePlan plan = sameSession && version != null ? template.getPlan(version) : null;
+        // Hibernated before a restart, or no mob holds its version any more
+        return plan != null ? plan : template.compile();
+    }
+
+    private void uncount(PendingMob pending) {
+        // Only mobs hibernated by this run were counted
+        if (pending.counted() && hibernatedByTemplate.addTo(pending.template().getId(), -1) <= 1) {
+            hibernatedByTemplate.removeInt(pending.template().getId());
+        }
+    }
+
+    private void rehydrate(PendingMob pending) {
+        LivingEntity entity = pending.entity();
+        TemplatePlan plan = pending.plan();
+        PersistentDataContainer data = entity.getPersistentDataContainer();
+        manager.restoreCustomMob(entity, pending.template(), plan);
+        String squadId = data.get(squadKey, PersistentDataType.STRING);
+        if (squadId != null && entity instanceof CraftLivingEntity craftEntity && craftEntity.getHandle() instanceof Mob mob) {
+            manager.getSquads().join(mob, squadId);
+        }
+
+        PersistentDataContainer state = data.get(stateKey, PersistentDataType.TAG_CONTAINER);
+        if (state == null || !(entity instanceof CraftLivingEntity craftEntity)
+                || !(craftEntity.getHandle() instanceof Mob mob)) {
+            return;
+        }
+
+        loadGoals(mob.goalSelector, "goal_", state);
+        loadGoals(mob.targetSelector, "target_", state);
+        for (CustomSensor sensor : plan.getSensors()) {
+            PersistentDataContainer sensorState = state.get(sensorKey(sensor), PersistentDataType.TAG_CONTAINER);
+            if (sensorState != null) {
+                sensor.loadState(mob, sensorState);
+            }
+        }
+        // Consumed, the next hibernation writes a fresh copy
+        data.remove(stateKey);
+    }
+
+    private void saveGoals(GoalSelector selector, String prefix, PersistentDataContainer state) {
+        for (WrappedGoal wrapped : selector.getAvailableGoals()) {
+            if (ForwardingGoal.unwrap(wrapped.getGoal()) instanceof StatefulGoal goal) {
+                PersistentDataContainer goalState = state.getAdapterContext().newPersistentDataContainer();
+                goal.saveState(goalState);
+                state.set(goalKey(prefix, wrapped.getPriority()), PersistentDataType.TAG_CONTAINER, goalState);
+            }
+        }
+    }
+
+    private void loadGoals(GoalSelector selector, String prefix, PersistentDataContainer state) {
+        // Copy first, a goal restoring its state must not disturb the selector's set
+        for (WrappedGoal wrapped : new ArrayList<>(selector.getAvailableGoals())) {
+            if (ForwardingGoal.unwrap(wrapped.getGoal()) instanceof StatefulGoal goal) {
+                PersistentDataContainer goalState = state.get(goalKey(prefix, wrapped.getPriority()), PersistentDataType.TAG_CONTAINER);
+                if (goalState != null) {
+                    goal.loadState(goalState);
+                }
+            }
+        }
+    }
+
+    private NamespacedKey goalKey(String prefix, int priority) {
+        // Goals are keyed by selector and priority, which the template keeps unique
+        return new NamespacedKey(templateKey.getNamespace(), prefix + priority);
+    }
+
+    private NamespacedKey sensorKey(CustomSensor sensor) {
+        String name = sensor.getName().toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9._-]", "_");
+        return new NamespacedKey(templateKey.getNamespace(), "sensor_" + name);
+    }
+
+    private record PendingMob(LivingEntity entity, CustomMobTemplate template, TemplatePlan plan, boolean counted) {
+    }
+}
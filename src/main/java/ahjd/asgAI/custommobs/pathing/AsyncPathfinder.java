@@ -0,0 +1,238 @@
+package ahjd.asgAI.custommobs.pathing;
+
+import ahjd.asgAI.custommobs.MobPriority;
+import ahjd.asgAI.custommobs.async.AIWorkerPool;
+import net.minecraft.core.BlockPos;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.util.Mth;
+import net.minecraft.world.entity.Mob;
+import net.minecraft.world.level.pathfinder.Path;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+
+/**
+ * Computes paths for custom goals on the {@link AIWorkerPool} instead of the server thread.
+ * Requests wait in a bounded queue ordered by the {@link MobPriority} of their mob. Every tick a few
+ * of them leave the queue, the blocks between the mob and its destination are copied into a
+ * {@link CollisionSnapshot} and the search runs on a worker thread. The path is delivered on the main
+ * thread on a later tick. When the queue is full a new request only gets in by evicting a queued request
+ * of lower priority, otherwise it is refused and the goal keeps its current path and retries later.
+ * Trips too long to snapshot are computed by the mob's own navigation on the main thread, at most
+ * {@link #MAX_LONG_TRIPS_PER_TICK} per tick, and wait their turn in a queue of their own.
+ */
+public class AsyncPathfinder {
+    private static final int HORIZONTAL_MARGIN = 16; // Room to path around obstacles beside the straight line
+    private static final int VERTICAL_MARGIN = 8;
+    private static final int MAX_SPAN = 160; // Widest snapshot, in blocks per horizontal axis
+    private static final int MAX_NODES = 4096;
+    private static final int MAX_LONG_TRIPS_PER_TICK = 2;
+
+    private final AIWorkerPool workerPool;
+    private final int capacity;
+    private final int maxInFlight;
+    private final PriorityQueue<PathRequest> queue;
+    private final PriorityQueue<PathRequest> longTrips;
+    private int inFlight;
+    private long sequence;
+    private long submitted;
+    private long refused;
+    private long evicted;
+    private long completed;
+
+    /**
+     * @param workerPool The pool searches run on
+     * @param capacity Most requests waiting in the queue
+     * @param maxInFlight Most searches running at once, or 0 or less for twice the worker threads
+     */
+    public AsyncPathfinder(AIWorkerPool workerPool, int capacity, int maxInFlight) {
+        this.workerPool = workerPool;
+        this.capacity = Math.max(1, capacity);
+        this.maxInFlight = maxInFlight > 0 ? maxInFlight : workerPool.getParallelism() * 2;
+        this.queue = new PriorityQueue<>(Comparator.comparing(PathRequest::getPriority).thenComparingLong(PathRequest::getSequence));
+        this.longTrips = new PriorityQueue<>(queue.comparator());
+    }
+
+    /**
+     * Queues a path request.
+     * @param mob The mob that will follow the path
+     * @param destination Where it wants to go
+     * @param priority Requests of higher priority leave the queue first
+     * @param delivery Called on the main thread with the path, or null if none was found
+     * @return The request, or null if the queue is full
+     */
+    @Nullable
+    public PathRequest submit(Mob mob, BlockPos destination, MobPriority priority, Consumer<Path> delivery) {
+        if (getQueued() >= capacity) {
+            // Requests cancelled by their goals still hold a slot until they are polled
+            queue.removeIf(PathRequest::isCancelled);
+            longTrips.removeIf(PathRequest::isCancelled);
+        }
+        if (getQueued() >= capacity && !evictBelow(priority)) {
+            refused++;
+            return null;
+        }
+        PathRequest request = new PathRequest(mob, destination.immutable(), priority, sequence++, delivery);
+        queue.add(request);
+        submitted++;
+        return request;
+    }
+
+    /**
+     * Starts searches for the requests at the head of the queue, and computes a few of the trips too
+     * long to snapshot. Main thread only.
+     */
+    public void tick() {
+        while (inFlight < maxInFlight && !queue.isEmpty()) {
+            PathRequest request = queue.poll();
+            Mob mob = request.getMob();
+            if (!isLive(request, mob) || !(mob.level() instanceof ServerLevel level)) {
+                continue;
+            }
+            if (isLongTrip(mob.blockPosition(), request.getDestination())) {
+                longTrips.add(request);
+                continue;
+            }
+            dispatch(request, mob, level);
+        }
+
+        for (int computed = 0; computed < MAX_LONG_TRIPS_PER_TICK && !longTrips.isEmpty(); ) {
+            PathRequest request = longTrips.poll();
+            Mob mob = request.getMob();
+            if (!isLive(request, mob)) {
+                continue;
+            }
+            request.setStart(mob.blockPosition());
+            finish(request, mob.getNavigation().createPath(request.getDestination(), 1));
+            computed++;
+        }
+    }
+
+    public int getQueued() {
+        return queue.size() + longTrips.size();
+    }
+
+    public int getInFlight() {
+        return inFlight;
+    }
+
+    public long getSubmitted() {
+        return submitted;
+    }
+
+    public long getRefused() {
+        return refused;
+    }
+
+    public long getEvicted() {
+        return evicted;
+    }
+
+    public long getCompleted() {
+        return completed;
+    }
+
+    public void resetStats() {
+        submitted = 0;
+        refused = 0;
+        evicted = 0;
+        completed = 0;
+    }
+
+    /**
+     * Cancels every queued request. Searches already running finish but deliver nothing.
+     */
+    public void clear() {
+        for (PathRequest request : queue) {
+            request.cancel();
+        }
+        for (PathRequest request : longTrips) {
+            request.cancel();
+        }
+        queue.clear();
+        longTrips.clear();
+    }
+
+    /**
+     * Checks whether the request still wants a path, cancelling it if its mob is gone.
+     */
+    private static boolean isLive(PathRequest request, Mob mob) {
+        if (request.isCancelled()) {
+            return false;
+        }
+        if (mob.isRemoved() || !(mob.level() instanceof ServerLevel)) {
+            request.cancel();
+            return false;
+        }
+        return true;
+    }
+
+    private static boolean isLongTrip(BlockPos start, BlockPos destination) {
+        return Math.abs(start.getX() - destination.getX()) + 2 * HORIZONTAL_MARGIN > MAX_SPAN
+            || Math.abs(start.getZ() - destination.getZ()) + 2 * HORIZONTAL_MARGIN > MAX_SPAN;
+    }
+
+    private void dispatch(PathRequest request, Mob mob, ServerLevel level) {
+        BlockPos start = mob.blockPosition();
+        BlockPos destination = request.getDestination();
+        request.setStart(start);
+
+        int minX = Math.min(start.getX(), destination.getX()) - HORIZONTAL_MARGIN;
+        int maxX = Math.max(start.getX(), destination.getX()) + HORIZONTAL_MARGIN;
+        int minZ = Math.min(start.getZ(), destination.getZ()) - HORIZONTAL_MARGIN;
+        int maxZ = Math.max(start.getZ(), destination.getZ()) + HORIZONTAL_MARGIN;
+        int minY = Math.min(start.getY(), destination.getY()) - VERTICAL_MARGIN;
+        int maxY = Math.max(start.getY(), destination.getY()) + VERTICAL_MARGIN;
+
+        CollisionSnapshot snapshot = CollisionSnapshot.capture(level, minX, minY, minZ, maxX, maxY, maxZ);
+        int width = Mth.ceil(mob.getBbWidth());
+        int height = Mth.ceil(mob.getBbHeight());
+        inFlight++;
+        workerPool.submit(
+            () -> request.isCancelled() ? null : new GridPathfinder(snapshot, width, height, MAX_NODES).find(start, destination, request::isCancelled),
+            path -> {
+                inFlight--;
+                finish(request, path);
+            });
+    }
+
+    private void finish(PathRequest request, @Nullable Path path) {
+        if (request.getMob().isRemoved()) {
+            request.cancel();
+        }
+        if (request.complete(path)) {
+            completed++;
+        }
+    }
+
+    /**
+     * Makes room by cancelling the newest queued request of the lowest priority below the given one.
+     * @return True if a request was evicted
+     */
+    private boolean evictBelow(MobPriority priority) {
+        PathRequest victim = null;
+        for (PathRequest request : queue) {
+            if (request.getPriority().compareTo(priority) > 0
+                    && (victim == null || queue.comparator().compare(request, victim) > 0)) {
+                victim = request;
+            }
+        }
+        for (PathRequest request : longTrips) {
+            if (request.getPriority().compareTo(priority) > 0
+                    && (victim == null || queue.comparator().compare(request, victim) > 0)) {
+                victim = request;
+            }
+        }
+        if (victim == null) {
+            return false;
+        }
+        if (!queue.remove(victim)) {
+            longTrips.remove(victim);
+        }
+        victim.cancel();
+        evicted++;
+        return true;
+    }
+}
@@ -0,0 +1,180 @@
+package ahjd.asgAI.custommobs.pathing;
+
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.world.level.Level;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+import org.bukkit.block.BlockState;
+import org.bukkit.block.data.Openable;
+import org.bukkit.craftbukkit.CraftWorld;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.block.Action;
+import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockBurnEvent;
+import org.bukkit.event.block.BlockExplodeEvent;
+import org.bukkit.event.block.BlockFadeEvent;
+import org.bukkit.event.block.BlockFormEvent;
+import org.bukkit.event.block.BlockFromToEvent;
+import org.bukkit.event.block.BlockPistonExtendEvent;
+import org.bukkit.event.block.BlockPistonRetractEvent;
+import org.bukkit.event.block.BlockPlaceEvent;
+import org.bukkit.event.block.BlockRedstoneEvent;
+import org.bukkit.event.entity.EntityChangeBlockEvent;
+import org.bukkit.event.entity.EntityExplodeEvent;
+import org.bukkit.event.player.PlayerBucketEmptyEvent;
+import org.bukkit.event.player.PlayerBucketFillEvent;
+import org.bukkit.event.player.PlayerInteractEvent;
+import org.bukkit.event.world.StructureGrowEvent;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Turns block changes that affect where mobs can walk into per-chunk notifications for the pathing
+ * caches. Changes are reported after the event went through uncancelled. Blocks set without an event,
+ * by other plugins or commands such as {@code /fill}, and changes that rarely block a path, such as
+ * leaves decaying, crops growing or grass spreading, are not seen. A cached path a mob gets stuck on
+ * is evicted by {@link PathLifecycle}, which covers those.
+ */
+public class BlockChangeTracker implements Listener {
+    private final List<ChunkChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+    public void addListener(ChunkChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(ChunkChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    private void changed(Block block) {
+        changed(block.getWorld(), block.getX(), block.getZ());
+    }
+
+    private void changed(World world, int x, int z) {
+        ResourceKey<Level> dimension = ((CraftWorld) world).getHandle().dimension();
+        int chunkX = x >> 4;
+        int chunkZ = z >> 4;
+        for (ChunkChangeListener listener : listeners) {
+            listener.onChunkChanged(dimension, chunkX, chunkZ);
+        }
+    }
+
+    private void changedAll(List<Block> blocks) {
+        for (Block block : blocks) {
+            changed(block);
+        }
+    }
+
+    /**
+     * Reports blocks a piston moves and, where a block crosses into another chunk, its destination.
+     */
+    private void changedMoved(List<Block> blocks, BlockFace direction) {
+        for (Block block : blocks) {
+            changed(block);
+            int toX = block.getX() + direction.getModX();
+            int toZ = block.getZ() + direction.getModZ();
+            if (toX >> 4 != block.getX() >> 4 || toZ >> 4 != block.getZ() >> 4) {
+                changed(block.getWorld(), toX, toZ);
+            }
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockBreak(BlockBreakEvent event) {
+        changed(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockPlace(BlockPlaceEvent event) {
+        changed(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockBurn(BlockBurnEvent event) {
+        changed(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockExplode(BlockExplodeEvent event) {
+        changedAll(event.blockList());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onEntityExplode(EntityExplodeEvent event) {
+        changedAll(event.blockList());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPistonExtend(BlockPistonExtendEvent event) {
+        // The head appears on the side the blocks move to
+        changedMoved(List.of(event.getBlock()), event.getDirection());
+        changedMoved(event.getBlocks(), event.getDirection());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPistonRetract(BlockPistonRetractEvent event) {
+        // Blocks are pulled towards the piston, the head disappears on the side they come from
+        changedMoved(List.of(event.getBlock()), event.getDirection().getOppositeFace());
+        changedMoved(event.getBlocks(), event.getDirection());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlayerInteract(PlayerInteractEvent event) {
+        // Doors, trapdoors and fence gates opened by hand
+        Block block = event.getClickedBlock();
+        if (event.getAction() == Action.RIGHT_CLICK_BLOCK && block != null && block.getBlockData() instanceof Openable) {
+            changed(block);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onBlockRedstone(BlockRedstoneEvent event) {
+        // Fires for every powered block, only an openable block switching between on and off moves
+        if ((event.getOldCurrent() > 0) != (event.getNewCurrent() > 0)
+                && event.getBlock().getBlockData() instanceof Openable) {
+            changed(event.getBlock());
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBucketEmpty(PlayerBucketEmptyEvent event) {
+        changed(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBucketFill(PlayerBucketFillEvent event) {
+        changed(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockFromTo(BlockFromToEvent event) {
+        // Flowing liquids and teleporting dragon eggs
+        changed(event.getToBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockForm(BlockFormEvent event) {
+        changed(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockFade(BlockFadeEvent event) {
+        changed(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onStructureGrow(StructureGrowEvent event) {
+        for (BlockState state : event.getBlocks()) {
+            changed(state.getWorld(), state.getX(), state.getZ());
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onEntityChangeBlock(EntityChangeBlockEvent event) {
+        changed(event.getBlock());
+    }
+}
@@ -0,0 +1,17 @@
+package ahjd.asgAI.custommobs.pathing;
+
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.world.level.Level;
+
+/**
+ * Notified by the {@link BlockChangeTracker} when a block changes in a chunk.
+ */
+public interface ChunkChangeListener {
+    /**
+     * Called on the main thread after a block in the chunk changed.
+     * @param dimension The dimension of the chunk
+     * @param chunkX Chunk X
+     * @param chunkZ Chunk Z
+     */
+    void onChunkChanged(ResourceKey<Level> dimension, int chunkX, int chunkZ);
+}
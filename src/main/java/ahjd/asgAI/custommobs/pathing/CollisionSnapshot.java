@@ -0,0 +1,249 @@
+package ahjd.asgAI.custommobs.pathing;
+
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.tags.BlockTags;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.FenceGateBlock;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.LevelChunk;
+import net.minecraft.world.level.chunk.LevelChunkSection;
+import net.minecraft.world.level.chunk.PalettedContainer;
+import net.minecraft.world.level.material.FluidState;
+import net.minecraft.world.level.material.Fluids;
+
+/**
+ * Immutable copy of the blocks in a box of the world, safe to read from any thread.
+ * Capturing copies the block palettes of the chunk sections overlapping the box, which is a handful
+ * of array copies per section. Blocks in chunks that were not loaded and blocks outside the box
+ * read as {@link #BLOCKED}. Fences, walls and closed fence gates are taller than a block and can neither
+ * be walked through nor stepped onto, and doors and trapdoors depend on who opens them, so all of them
+ * read as {@link #BLOCKED} too and such paths are left to the vanilla navigation.
+ */
+public final class CollisionSnapshot {
+    public static final byte OPEN = 0;
+    public static final byte SOLID = 1;
+    public static final byte WATER = 2;
+    public static final byte BLOCKED = 3; // Dangerous or unknown, never entered
+    public static final int NO_STEP = Integer.MIN_VALUE;
+    public static final int MAX_DROP = 3;
+
+    private final int requestedMinY;
+    private final int requestedMaxY;
+    private final int minX;
+    private final int minY;
+    private final int minZ;
+    private final int maxX;
+    private final int maxY;
+    private final int maxZ;
+    private final int minChunkX;
+    private final int minChunkZ;
+    private final int chunksX;
+    private final int minSectionY;
+    private final int sectionsY;
+    private final PalettedContainer<BlockState>[] sections;
+    private final boolean[] loaded;
+
+    @SuppressWarnings("unchecked")
+    private CollisionSnapshot(int requestedMinY, int requestedMaxY, int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        this.requestedMinY = requestedMinY;
+        this.requestedMaxY = requestedMaxY;
+        this.minX = minX;
+        this.minY = minY;
+        this.minZ = minZ;
+        this.maxX = maxX;
+        this.maxY = maxY;
+        this.maxZ = maxZ;
+        this.minChunkX = minX >> 4;
+        this.minChunkZ = minZ >> 4;
+        this.chunksX = (maxX >> 4) - minChunkX + 1;
+        int chunksZ = (maxZ >> 4) - minChunkZ + 1;
+        this.minSectionY = minY >> 4;
+        this.sectionsY = (maxY >> 4) - minSectionY + 1;
+        this.sections = new PalettedContainer[chunksX * chunksZ * sectionsY];
+        this.loaded = new boolean[chunksX * chunksZ];
+    }
+
+    /**
+     * Copies the blocks in the box. Main thread only, chunks that are not loaded are not loaded for it.
+     * @return The snapshot
+     */
+    public static CollisionSnapshot capture(ServerLevel level, int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        CollisionSnapshot snapshot = new CollisionSnapshot(minY, maxY, minX, Math.max(minY, level.getMinY()), minZ, maxX, Math.min(maxY, level.getMaxY()), maxZ);
+
+        for (int chunkX = minX >> 4; chunkX <= maxX >> 4; chunkX++) {
+            for (int chunkZ = minZ >> 4; chunkZ <= maxZ >> 4; chunkZ++) {
+                LevelChunk chunk = level.getChunkIfLoaded(chunkX, chunkZ);
+                if (chunk == null) {
+                    continue;
+                }
+                int column = snapshot.columnIndex(chunkX, chunkZ);
+                snapshot.loaded[column] = true;
+                LevelChunkSection[] chunkSections = chunk.getSections();
+                for (int sectionY = snapshot.minSectionY; sectionY < snapshot.minSectionY + snapshot.sectionsY; sectionY++) {
+                    int index = level.getSectionIndexFromSectionY(sectionY);
+                    if (index < 0 || index >= chunkSections.length) {
+                        continue;
+                    }
+                    LevelChunkSection section = chunkSections[index];
+                    if (section != null && !section.hasOnlyAir()) {
+                        // Air sections stay null
+                        snapshot.sections[column * snapshot.sectionsY + sectionY - snapshot.minSectionY] = section.getStates().copy();
+                    }
+                }
+            }
+        }
+        return snapshot;
+    }
+
+    public boolean contains(int x, int y, int z) {
+        return x >= minX && x <= maxX && y >= minY && y <= maxY && z >= minZ && z <= maxZ;
+    }
+
+    /**
+     * Checks whether the box was part of the captured area. Parts of the box above or below the world
+     * count as covered, they are known to be unwalkable.
+     */
+    public boolean covers(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        return minX >= this.minX && maxX <= this.maxX && minZ >= this.minZ && maxZ <= this.maxZ
+            && minY >= requestedMinY && maxY <= requestedMaxY;
+    }
+
+    /**
+     * Classifies the block at the position for walking.
+     * @return {@link #OPEN}, {@link #SOLID}, {@link #WATER} or {@link #BLOCKED}
+     */
+    public byte classify(int x, int y, int z) {
+        if (!contains(x, y, z)) {
+            return BLOCKED;
+        }
+        int column = columnIndex(x >> 4, z >> 4);
+        if (!loaded[column]) {
+            return BLOCKED;
+        }
+        PalettedContainer<BlockState> states = sections[column * sectionsY + (y >> 4) - minSectionY];
+        if (states == null) {
+            return OPEN;
+        }
+        return classify(states.get(x & 15, y & 15, z & 15));
+    }
+
+    /**
+     * Checks whether a mob can move through the block, either air-like or water.
+     */
+    public boolean isPassable(int x, int y, int z) {
+        byte type = classify(x, y, z);
+        return type == OPEN || type == WATER;
+    }
+
+    /**
+     * Checks whether the column of blocks a mob of the given height occupies is free, starting at its feet.
+     */
+    public boolean hasHeadroom(int x, int y, int z, int height) {
+        for (int dy = 0; dy < height; dy++) {
+            if (!isPassable(x, y + dy, z)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether every column of the square a mob of the given width occupies is free. The square
+     * starts at the block and grows towards positive X and Z, like the vanilla node evaluator places wide mobs.
+     * @param width Blocks the mob covers along each horizontal axis
+     */
+    public boolean hasHeadroom(int x, int y, int z, int width, int height) {
+        for (int dx = 0; dx < width; dx++) {
+            for (int dz = 0; dz < width; dz++) {
+                if (!hasHeadroom(x + dx, y, z + dz, height)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether a mob of the given height can stand with its feet in the block, on solid ground or swimming.
+     */
+    public boolean isStandable(int x, int y, int z, int height) {
+        return isStandable(x, y, z, 1, height);
+    }
+
+    /**
+     * Checks whether a mob of the given size can stand with its feet in the block, on solid ground or swimming.
+     * @param width Blocks the mob covers along each horizontal axis
+     */
+    public boolean isStandable(int x, int y, int z, int width, int height) {
+        if (!hasHeadroom(x, y, z, width, height)) {
+            return false;
+        }
+        return classify(x, y - 1, z) == SOLID || classify(x, y, z) == WATER;
+    }
+
+    /**
+     * Finds where a walking mob standing in a block ends up after moving one block sideways. The mob
+     * walks on at the same height, steps up one block if it has the headroom, or drops up to
+     * {@link #MAX_DROP} blocks.
+     * @param dx X offset of the move, -1, 0 or 1
+     * @param dz Z offset of the move, -1, 0 or 1
+     * @return The Y of the block the mob lands in, or {@link #NO_STEP} if it cannot move that way
+     */
+    public int step(int x, int y, int z, int dx, int dz, int height) {
+        return step(x, y, z, dx, dz, 1, height);
+    }
+
+    /**
+     * Finds where a walking mob of the given size ends up after moving one block sideways, see
+     * {@link #step(int, int, int, int, int, int)}.
+     * @param width Blocks the mob covers along each horizontal axis
+     * @return The Y of the block the mob lands in, or {@link #NO_STEP} if it cannot move that way
+     */
+    public int step(int x, int y, int z, int dx, int dz, int width, int height) {
+        int nx = x + dx;
+        int nz = z + dz;
+        if (isStandable(nx, y, nz, width, height)) {
+            return y;
+        }
+        if (hasHeadroom(x, y + height, z, width, 1) && isStandable(nx, y + 1, nz, width, height)) {
+            return y + 1;
+        }
+        if (hasHeadroom(nx, y, nz, width, height)) {
+            for (int drop = 1; drop <= MAX_DROP; drop++) {
+                if (isStandable(nx, y - drop, nz, width, height)) {
+                    return y - drop;
+                }
+                if (!hasHeadroom(nx, y - drop, nz, width, 1)) {
+                    break;
+                }
+            }
+        }
+        return NO_STEP;
+    }
+
+    private static byte classify(BlockState state) {
+        if (state.isAir()) {
+            return OPEN;
+        }
+        FluidState fluid = state.getFluidState();
+        if (fluid.is(Fluids.LAVA) || fluid.is(Fluids.FLOWING_LAVA) || state.is(BlockTags.FIRE)
+                || state.is(Blocks.CACTUS) || state.is(Blocks.SWEET_BERRY_BUSH) || state.is(Blocks.POWDER_SNOW)) {
+            return BLOCKED;
+        }
+        if (state.is(BlockTags.DOORS) || state.is(BlockTags.TRAPDOORS) || state.is(BlockTags.FENCES) || state.is(BlockTags.WALLS)
+                || (state.is(BlockTags.FENCE_GATES) && !state.getValue(FenceGateBlock.OPEN))) {
+            return BLOCKED;
+        }
+        if (state.blocksMotion()) {
+            return SOLID;
+        }
+        if (!fluid.isEmpty()) {
+            return WATER;
+        }
+        return OPEN;
+    }
+
+    private int columnIndex(int chunkX, int chunkZ) {
+        return (chunkZ - minChunkZ) * chunksX + (chunkX - minChunkX);
+    }
+}
@@ -0,0 +1,196 @@
+package ahjd.asgAI.custommobs.pathing;
+
+import net.minecraft.core.BlockPos;
+import net.minecraft.world.level.Level;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * Walking distance from every block column around a target to the target, computed once and followed
+ * by any number of chasers. Each column holds one floor height, the one the search reached first, so
+ * a chaser on another floor of a multi-storey building is off the field and paths on its own.
+ * Immutable once computed, built on worker threads from a {@link CollisionSnapshot}.
+ */
+public final class FlowField {
+    public static final int UNREACHABLE = -1;
+    private static final int MAX_DROP = 3;
+    private static final int FLOOR_TOLERANCE = 1; // How far a chaser's feet may be off its column's floor
+    private static final int[] DIRECTION_X = {1, -1, 0, 0, 1, 1, -1, -1};
+    private static final int[] DIRECTION_Z = {0, 0, 1, -1, 1, -1, 1, -1};
+
+    private final Level level;
+    private final BlockPos origin;
+    private final int minX;
+    private final int minZ;
+    private final int size;
+    private final int[] distance;
+    private final int[] floor;
+
+    private FlowField(Level level, BlockPos origin, int minX, int minZ, int size, int[] distance, int[] floor) {
+        this.level = level;
+        this.origin = origin;
+        this.minX = minX;
+        this.minZ = minZ;
+        this.size = size;
+        this.distance = distance;
+        this.floor = floor;
+    }
+
+    /**
+     * Runs a breadth-first search outwards from the target over the snapshot.
+     * @param level The level the snapshot was taken in
+     * @param snapshot The blocks around the target
+     * @param origin The block the target stands in
+     * @param radius Columns covered in each direction from the target
+     * @param height Blocks of headroom the chasers need
+     * @return The field
+     */
+    public static FlowField compute(Level level, CollisionSnapshot snapshot, BlockPos origin, int radius, int height) {
+        int size = radius * 2 + 1;
+        int minX = origin.getX() - radius;
+        int minZ = origin.getZ() - radius;
+        int[] distance = new int[size * size];
+        int[] floor = new int[size * size];
+        int[] queue = new int[size * size];
+        Arrays.fill(distance, UNREACHABLE);
+
+        // Targets in mid-jump are traced down to the ground they will land on
+        int startY = origin.getY();
+        for (int drop = 0; drop <= MAX_DROP; drop++) {
+            if (snapshot.isStandable(origin.getX(), origin.getY() - drop, origin.getZ(), height)) {
+                startY = origin.getY() - drop;
+                break;
+            }
+        }
+        int start = radius * size + radius;
+        distance[start] = 0;
+        floor[start] = startY;
+        queue[0] = start;
+        int head = 0;
+        int tail = 1;
+
+        while (head < tail) {
+            int cell = queue[head++];
+            int cellX = cell % size;
+            int cellZ = cell / size;
+            int x = minX + cellX;
+            int z = minZ + cellZ;
+            int y = floor[cell];
+            for (int direction = 0; direction < 4; direction++) {
+                int neighbourX = cellX + DIRECTION_X[direction];
+                int neighbourZ = cellZ + DIRECTION_Z[direction];
+                if (neighbourX < 0 || neighbourX >= size || neighbourZ < 0 || neighbourZ >= size) {
+                    continue;
+                }
+                int neighbour = neighbourZ * size + neighbourX;
+                if (distance[neighbour] != UNREACHABLE) {
+                    continue;
+                }
+                int neighbourY = approachFloor(snapshot, x, y, z, minX + neighbourX, minZ + neighbourZ, height);
+                if (neighbourY == Integer.MIN_VALUE) {
+                    continue;
+                }
+                distance[neighbour] = distance[cell] + 1;
+                floor[neighbour] = neighbourY;
+                queue[tail++] = neighbour;
+            }
+        }
+        return new FlowField(level, origin, minX, minZ, size, distance, floor);
+    }
+
+    /**
+     * Finds the floor in the neighbouring column from which a chaser can move onto the cell, the search
+     * runs from the target outwards so every move is checked in the direction the chasers walk.
+     * @return The floor height, or {@link Integer#MIN_VALUE} if no chaser in that column can reach the cell
+     */
+    private static int approachFloor(CollisionSnapshot snapshot, int x, int y, int z, int fromX, int fromZ, int height) {
+        if (snapshot.isStandable(fromX, y, fromZ, height)) {
+            return y;
+        }
+        // Stepping up onto the cell needs a block of headroom above the chaser
+        if (snapshot.isStandable(fromX, y - 1, fromZ, height) && snapshot.isPassable(fromX, y - 1 + height, fromZ)) {
+            return y - 1;
+        }
+        // Dropping onto the cell needs the air above it clear
+        for (int drop = 1; drop <= MAX_DROP; drop++) {
+            if (!snapshot.isPassable(x, y + height + drop - 1, z)) {
+                break;
+            }
+            if (snapshot.isStandable(fromX, y + drop, fromZ, height)) {
+                return y + drop;
+            }
+        }
+        return Integer.MIN_VALUE;
+    }
+
+    public Level getLevel() {
+        return level;
+    }
+
+    /**
+     * Gets the block the target stood in when the field was computed.
+     */
+    public BlockPos getOrigin() {
+        return origin;
+    }
+
+    /**
+     * Gets the walking distance from a block to the target.
+     * @return Distance in blocks, or {@link #UNREACHABLE} if the block is off the field
+     */
+    public int distanceAt(int x, int y, int z) {
+        int cell = cellOf(x, z);
+        if (cell == -1 || distance[cell] == UNREACHABLE || Math.abs(floor[cell] - y) > FLOOR_TOLERANCE) {
+            return UNREACHABLE;
+        }
+        return distance[cell];
+    }
+
+    /**
+     * Picks the neighbouring block that brings a chaser closest to the target. Diagonal steps are only
+     * taken when both blocks beside them are on the field, so chasers do not cut corners.
+     * @param position The block the chaser stands in
+     * @return The feet position to walk to, or null if the chaser is off the field or already at the target
+     */
+    @Nullable
+    public BlockPos nextStep(BlockPos position) {
+        int x = position.getX();
+        int y = position.getY();
+        int z = position.getZ();
+        int current = distanceAt(x, y, z);
+        if (current == UNREACHABLE || current == 0) {
+            return null;
+        }
+
+        int best = -1;
+        int bestDistance = current;
+        for (int direction = 0; direction < DIRECTION_X.length; direction++) {
+            int nx = x + DIRECTION_X[direction];
+            int nz = z + DIRECTION_Z[direction];
+            int cell = cellOf(nx, nz);
+            if (cell == -1 || distance[cell] == UNREACHABLE || distance[cell] >= bestDistance || floor[cell] - y > 1) {
+                continue; // Off the field, no closer, or too high to step up to
+            }
+            if (direction >= 4 && (cellOf(nx, z) == -1 || distance[cellOf(nx, z)] == UNREACHABLE
+                    || cellOf(x, nz) == -1 || distance[cellOf(x, nz)] == UNREACHABLE)) {
+                continue;
+            }
+            best = cell;
+            bestDistance = distance[cell];
+        }
+        if (best == -1) {
+            return null;
+        }
+        return new BlockPos(minX + best % size, floor[best], minZ + best / size);
+    }
+
+    private int cellOf(int x, int z) {
+        int cellX = x - minX;
+        int cellZ = z - minZ;
+        if (cellX < 0 || cellX >= size || cellZ < 0 || cellZ >= size) {
+            return -1;
+        }
+        return cellZ * size + cellX;
+    }
+}
@@ -0,0 +1,186 @@
+package ahjd.asgAI.custommobs.pathing;
+
+import ahjd.asgAI.custommobs.async.AIWorkerPool;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.entity.LivingEntity;
+import net.minecraft.world.level.Level;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Keeps one {@link FlowField} per entity that custom mobs are chasing and per chaser height, so the
+ * cost of pursuit grows with the number of targets instead of the number of chasers. A field is tracked
+ * from the first tick a chaser asks for it and dropped once nobody asked for {@link #IDLE_TICKS} ticks.
+ * The fields of one target share its block snapshot. While the target
+ * moves, its field is recomputed on the worker pool at most every {@link #REBUILD_INTERVAL} ticks and
+ * chasers keep following the previous field until the new one is committed. The block snapshot behind
+ * a field is reused between recomputes as long as the target stays near its middle, it is younger
+ * than {@link #SNAPSHOT_MAX_AGE} ticks and no block changed in a chunk it covers, so most updates only
+ * repeat the distance pass. A block change also recomputes the fields of a target that stands still.
+ * Main thread only.
+ */
+public class FlowFieldManager implements ChunkChangeListener {
+    public static final int RADIUS = 32;
+    private static final int SNAPSHOT_MARGIN = 8; // How far the target may move before the snapshot is retaken
+    private static final int VERTICAL_RANGE = 12;
+    private static final int REBUILD_INTERVAL = 10;
+    private static final int SNAPSHOT_MAX_AGE = 100;
+    private static final int IDLE_TICKS = 100;
+
+    private final AIWorkerPool workerPool;
+    private final Map<LivingEntity, TrackedTarget> targets = new IdentityHashMap<>();
+    private int tick;
+    private long builds;
+
+    public FlowFieldManager(AIWorkerPool workerPool) {
+        this.workerPool = workerPool;
+    }
+
+    /**
+     * Gets the field leading to the target and keeps it tracked.
+     * @param target The entity being chased
+     * @param height Blocks of headroom the chaser needs
+     * @return The latest field, or null until the first one has been computed
+     */
+    @Nullable
+    public FlowField getField(LivingEntity target, int height) {
+        TrackedTarget tracked = targets.computeIfAbsent(target, key -> new TrackedTarget());
+        TrackedField layer = tracked.fields.computeIfAbsent(Math.max(1, height), key -> new TrackedField(key));
+        layer.lastRequestTick = tick;
+        FlowField field = layer.field;
+        return field != null && field.getLevel() == target.level() ? field : null;
+    }
+
+    /**
+     * Drops idle targets and recomputes the fields of targets that moved.
+     */
+    public void tick() {
+        tick++;
+        Iterator<Map.Entry<LivingEntity, TrackedTarget>> iterator = targets.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<LivingEntity, TrackedTarget> entry = iterator.next();
+            LivingEntity target = entry.getKey();
+            TrackedTarget tracked = entry.getValue();
+            tracked.fields.values().removeIf(layer -> tick - layer.lastRequestTick > IDLE_TICKS);
+            if (target.isRemoved() || !target.isAlive() || tracked.fields.isEmpty()) {
+                iterator.remove();
+                continue;
+            }
+            if (!(target.level() instanceof ServerLevel level)) {
+                continue;
+            }
+            for (TrackedField layer : tracked.fields.values()) {
+                if (!layer.building && tick - layer.lastBuildTick >= REBUILD_INTERVAL) {
+                    rebuild(target, level, tracked, layer);
+                }
+            }
+        }
+    }
+
+    public int getTrackedCount() {
+        return targets.size();
+    }
+
+    public long getBuilds() {
+        return builds;
+    }
+
+    public void resetStats() {
+        builds = 0;
+    }
+
+    public void clear() {
+        targets.clear();
+    }
+
+    /**
+     * Drops the snapshots that cover the chunk, the fields built from them are recomputed on their next rebuild.
+     */
+    @Override
+    public void onChunkChanged(ResourceKey<Level> dimension, int chunkX, int chunkZ) {
+        int reach = RADIUS + SNAPSHOT_MARGIN;
+        for (TrackedTarget tracked : targets.values()) {
+            if (tracked.snapshot == null || tracked.snapshotLevel.dimension() != dimension) {
+                continue;
+            }
+            BlockPos center = tracked.snapshotCenter;
+            if (chunkX < SectionPos.blockToSectionCoord(center.getX() - reach)
+                    || chunkX > SectionPos.blockToSectionCoord(center.getX() + reach)
+                    || chunkZ < SectionPos.blockToSectionCoord(center.getZ() - reach)
+                    || chunkZ > SectionPos.blockToSectionCoord(center.getZ() + reach)) {
+                continue;
+            }
+            tracked.snapshot = null;
+            for (TrackedField layer : tracked.fields.values()) {
+                layer.dirty = true;
+            }
+        }
+    }
+
+    private void rebuild(LivingEntity target, ServerLevel level, TrackedTarget tracked, TrackedField layer) {
+        BlockPos origin = target.blockPosition();
+        FlowField current = layer.field;
+        if (!layer.dirty && current != null && current.getLevel() == level && current.getOrigin().equals(origin)) {
+            return; // Target has not moved and no block changed
+        }
+
+        if (tracked.snapshot == null || tracked.snapshotLevel != level || tick - tracked.snapshotTick > SNAPSHOT_MAX_AGE
+                || Math.abs(origin.getX() - tracked.snapshotCenter.getX()) > SNAPSHOT_MARGIN
+                || Math.abs(origin.getY() - tracked.snapshotCenter.getY()) > SNAPSHOT_MARGIN
+                || Math.abs(origin.getZ() - tracked.snapshotCenter.getZ()) > SNAPSHOT_MARGIN) {
+            int reach = RADIUS + SNAPSHOT_MARGIN;
+            tracked.snapshot = CollisionSnapshot.capture(level,
+                origin.getX() - reach, origin.getY() - VERTICAL_RANGE - SNAPSHOT_MARGIN, origin.getZ() - reach,
+                origin.getX() + reach, origin.getY() + VERTICAL_RANGE + SNAPSHOT_MARGIN, origin.getZ() + reach);
+            tracked.snapshotLevel = level;
+            tracked.snapshotCenter = origin;
+            tracked.snapshotTick = tick;
+        }
+
+        CollisionSnapshot snapshot = tracked.snapshot;
+        int height = layer.height;
+        layer.dirty = false;
+        layer.building = true;
+        layer.lastBuildTick = tick;
+        builds++;
+        workerPool.submit(
+            () -> FlowField.compute(level, snapshot, origin, RADIUS, height),
+            field -> {
+                layer.building = false;
+                if (field != null) {
+                    layer.field = field;
+                }
+            });
+    }
+
+    private static final class TrackedTarget {
+        private final Int2ObjectOpenHashMap<TrackedField> fields = new Int2ObjectOpenHashMap<>(2);
+        private CollisionSnapshot snapshot;
+        private ServerLevel snapshotLevel;
+        private BlockPos snapshotCenter;
+        private int snapshotTick;
+    }
+
+    /**
+     * The field of one target for chasers of one height.
+     */
+    private static final class TrackedField {
+        private final int height;
+        private FlowField field;
+        private int lastBuildTick = Integer.MIN_VALUE / 2;
+        private int lastRequestTick;
+        private boolean building;
+        private boolean dirty; // A block changed since the field's snapshot was taken
+
+        private TrackedField(int height) {
+            this.height = height;
+        }
+    }
+}
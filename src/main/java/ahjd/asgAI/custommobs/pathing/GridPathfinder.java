@@ -0,0 +1,189 @@
+package ahjd.asgAI.custommobs.pathing;
+
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import net.minecraft.core.BlockPos;
+import net.minecraft.world.level.pathfinder.Node;
+import net.minecraft.world.level.pathfinder.Path;
+import net.minecraft.world.level.pathfinder.PathType;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.BooleanSupplier;
+
+/**
+ * A* over the blocks of a {@link CollisionSnapshot} for walking mobs. Mobs move between the four
+ * horizontal neighbours of a block as {@link CollisionSnapshot#step} allows, and swim through water
+ * at a higher cost. The search only reads the snapshot, so it runs on worker threads.
+ * A search that runs out of nodes returns a partial path to the node closest to the destination, like
+ * the vanilla navigation does.
+ */
+final class GridPathfinder {
+    private static final int CANCEL_CHECK_INTERVAL = 256;
+    private static final float STEP_COST = 1.0f;
+    private static final float CLIMB_COST = 0.5f;
+    private static final float DROP_COST = 0.5f; // Per block fallen
+    private static final float WATER_COST = 2.0f;
+    private static final int[] DIRECTION_X = {1, -1, 0, 0};
+    private static final int[] DIRECTION_Z = {0, 0, 1, -1};
+
+    private final CollisionSnapshot snapshot;
+    private final int width;
+    private final int height;
+    private final int maxNodes;
+    private final int[] xs;
+    private final int[] ys;
+    private final int[] zs;
+    private final int[] parents;
+    private final float[] costs;
+    private final boolean[] closed;
+    private final Long2IntOpenHashMap indexByPos;
+    private int count;
+
+    /**
+     * @param snapshot The blocks to search
+     * @param width Blocks the mob covers along each horizontal axis
+     * @param height Blocks of headroom the mob needs
+     * @param maxNodes Most nodes visited before the search gives up
+     */
+    GridPathfinder(CollisionSnapshot snapshot, int width, int height, int maxNodes) {
+        this.snapshot = snapshot;
+        this.width = Math.max(1, width);
+        this.height = Math.max(1, height);
+        this.maxNodes = maxNodes;
+        this.xs = new int[maxNodes];
+        this.ys = new int[maxNodes];
+        this.zs = new int[maxNodes];
+        this.parents = new int[maxNodes];
+        this.costs = new float[maxNodes];
+        this.closed = new boolean[maxNodes];
+        this.indexByPos = new Long2IntOpenHashMap();
+        this.indexByPos.defaultReturnValue(-1);
+    }
+
+    /**
+     * Searches a path from the start to within one block of the destination.
+     * @param start Block the mob stands in
+     * @param destination Block to reach
+     * @param cancelled Checked periodically, the search stops once it returns true
+     * @return The path, partial if the destination was not reached, or null if cancelled or the mob cannot move at all
+     */
+    @Nullable
+    Path find(BlockPos start, BlockPos destination, BooleanSupplier cancelled) {
+        int targetX = destination.getX();
+        int targetY = destination.getY();
+        int targetZ = destination.getZ();
+        PriorityQueue<OpenNode> open = new PriorityQueue<>();
+
+        add(start.getX(), start.getY(), start.getZ(), -1, 0.0f);
+        open.add(new OpenNode(0, heuristic(0, targetX, targetY, targetZ)));
+        int closest = 0;
+        float closestDistance = heuristic(0, targetX, targetY, targetZ);
+        int expanded = 0;
+
+        while (!open.isEmpty()) {
+            int node = open.poll().node;
+            if (closed[node]) {
+                continue; // Stale entry, the node was reached more cheaply since
+            }
+            closed[node] = true;
+
+            if (++expanded % CANCEL_CHECK_INTERVAL == 0 && cancelled.getAsBoolean()) {
+                return null;
+            }
+            float distance = heuristic(node, targetX, targetY, targetZ);
+            if (distance < closestDistance) {
+                closest = node;
+                closestDistance = distance;
+            }
+            if (Math.abs(xs[node] - targetX) + Math.abs(ys[node] - targetY) + Math.abs(zs[node] - targetZ) <= 1) {
+                return build(node, destination, true);
+            }
+            if (!expand(node, open, targetX, targetY, targetZ)) {
+                break; // Out of nodes
+            }
+        }
+        return closest == 0 ? null : build(closest, destination, false);
+    }
+
+    private boolean expand(int node, PriorityQueue<OpenNode> open, int targetX, int targetY, int targetZ) {
+        int x = xs[node];
+        int y = ys[node];
+        int z = zs[node];
+        for (int direction = 0; direction < DIRECTION_X.length; direction++) {
+            int nx = x + DIRECTION_X[direction];
+            int nz = z + DIRECTION_Z[direction];
+            int ny = snapshot.step(x, y, z, DIRECTION_X[direction], DIRECTION_Z[direction], width, height);
+            if (ny == CollisionSnapshot.NO_STEP) {
+                continue;
+            }
+            float cost = moveCost(nx, ny, nz) + (ny > y ? CLIMB_COST : DROP_COST * (y - ny));
+            if (!visit(node, nx, ny, nz, cost, open, targetX, targetY, targetZ)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Records the neighbour if it is new or reached more cheaply than before.
+     * @return False once the node limit is reached
+     */
+    private boolean visit(int from, int x, int y, int z, float stepCost, PriorityQueue<OpenNode> open, int targetX, int targetY, int targetZ) {
+        float cost = costs[from] + stepCost;
+        int node = indexByPos.get(BlockPos.asLong(x, y, z));
+        if (node == -1) {
+            if (count == maxNodes) {
+                return false;
+            }
+            node = add(x, y, z, from, cost);
+        } else if (closed[node] || cost >= costs[node]) {
+            return true;
+        } else {
+            parents[node] = from;
+            costs[node] = cost;
+        }
+        open.add(new OpenNode(node, cost + heuristic(node, targetX, targetY, targetZ)));
+        return true;
+    }
+
+    private int add(int x, int y, int z, int parent, float cost) {
+        int node = count++;
+        xs[node] = x;
+        ys[node] = y;
+        zs[node] = z;
+        parents[node] = parent;
+        costs[node] = cost;
+        indexByPos.put(BlockPos.asLong(x, y, z), node);
+        return node;
+    }
+
+    private float moveCost(int x, int y, int z) {
+        return snapshot.classify(x, y, z) == CollisionSnapshot.WATER ? STEP_COST + WATER_COST : STEP_COST;
+    }
+
+    private float heuristic(int node, int targetX, int targetY, int targetZ) {
+        // Never overestimates, every move covers one horizontal block and vertical moves cost at most half a step per block
+        return Math.abs(xs[node] - targetX) + Math.abs(zs[node] - targetZ) + Math.abs(ys[node] - targetY) * 0.5f;
+    }
+
+    private Path build(int node, BlockPos destination, boolean reached) {
+        List<Node> nodes = new ArrayList<>();
+        for (int current = node; current != -1; current = parents[current]) {
+            Node step = new Node(xs[current], ys[current], zs[current]);
+            step.type = snapshot.classify(xs[current], ys[current], zs[current]) == CollisionSnapshot.WATER ? PathType.WATER : PathType.WALKABLE;
+            nodes.add(step);
+        }
+        Collections.reverse(nodes);
+        return new Path(nodes, destination, reached);
+    }
+
+    private record OpenNode(int node, float score) implements Comparable<OpenNode> {
+        @Override
+        public int compareTo(OpenNode other) {
+            return Float.compare(score, other.score);
+        }
+    }
+}
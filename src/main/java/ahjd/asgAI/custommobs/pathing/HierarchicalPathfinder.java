@@ -0,0 +1,424 @@
+package ahjd.asgAI.custommobs.pathing;
+
+import ahjd.asgAI.custommobs.async.AIWorkerPool;
+import it.unimi.dsi.fastutil.longs.Long2FloatOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.entity.Mob;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.Level;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+
+/**
+ * Routes long trips over an abstract graph of chunk sections instead of individual blocks. Each
+ * section is summarised once as a {@link SectionCluster} of portal nodes and cached until a block
+ * changes in or next to its chunk, so a route across a patrol loop only searches a few dozen nodes
+ * once the sections along it are known. Route searches run on the worker pool against a
+ * {@link CollisionSnapshot}, and sections built during a search are cached when it is committed.
+ * Sections are summarised for mobs two blocks tall, taller mobs rely on their segment paths to find a
+ * way around low ceilings. Each dimension keeps at most a configured number of sections, the least
+ * recently used are dropped first. Main thread only.
+ */
+public class HierarchicalPathfinder implements ChunkChangeListener {
+    /**
+     * Trips shorter than this, in blocks along the ground, are left to the regular pathfinders.
+     */
+    public static final int MIN_DISTANCE = 32;
+    private static final int MAX_SPAN = 256;
+    private static final int SEARCH_MARGIN = 16; // Sections beside the straight line a route may pass through
+    private static final int VERTICAL_MARGIN = 16;
+    private static final int MOB_HEIGHT = 2;
+    private static final int MAX_EXPANSIONS = 20000;
+    private static final int[][] NEIGHBOURS = { {0, 0}, {1, 0}, {-1, 0}, {0, 1}, {0, -1} };
+
+    private final AIWorkerPool workerPool;
+    private final int maxInFlight;
+    private final int capacity;
+    private final Map<ResourceKey<Level>, DimensionGraph> graphs = new HashMap<>();
+    private final LongArrayList inFlightCaptures = new LongArrayList();
+    private long clock;
+    private int inFlight;
+    private long routes;
+    private long failures;
+    private long invalidations;
+
+    /**
+     * @param workerPool The pool route searches run on
+     * @param maxInFlight Most route searches running at once
+     * @param capacity Most sections cached per dimension
+     */
+    public HierarchicalPathfinder(AIWorkerPool workerPool, int maxInFlight, int capacity) {
+        this.workerPool = workerPool;
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.capacity = Math.max(1, capacity);
+    }
+
+    /**
+     * Starts a route search from the mob to the destination.
+     * @param mob The mob that will follow the route
+     * @param destination Where it wants to go
+     * @param delivery Called on the main thread on a later tick with the route, or null if none was found
+     * @return False if the search was refused because too many are running or the trip is too long
+     */
+    public boolean requestRoute(Mob mob, BlockPos destination, Consumer<Route> delivery) {
+        if (inFlight >= maxInFlight || !(mob.level() instanceof ServerLevel level)) {
+            return false;
+        }
+        BlockPos start = mob.blockPosition();
+        BlockPos target = destination.immutable();
+        int minSectionX = SectionPos.blockToSectionCoord(Math.min(start.getX(), target.getX()) - SEARCH_MARGIN);
+        int maxSectionX = SectionPos.blockToSectionCoord(Math.max(start.getX(), target.getX()) + SEARCH_MARGIN);
+        int minSectionZ = SectionPos.blockToSectionCoord(Math.min(start.getZ(), target.getZ()) - SEARCH_MARGIN);
+        int maxSectionZ = SectionPos.blockToSectionCoord(Math.max(start.getZ(), target.getZ()) + SEARCH_MARGIN);
+        int minSectionY = SectionPos.blockToSectionCoord(Math.max(level.getMinY(), Math.min(start.getY(), target.getY()) - VERTICAL_MARGIN));
+        int maxSectionY = SectionPos.blockToSectionCoord(Math.min(level.getMaxY(), Math.max(start.getY(), target.getY()) + VERTICAL_MARGIN));
+        if ((maxSectionX - minSectionX + 1) * 16 > MAX_SPAN || (maxSectionZ - minSectionZ + 1) * 16 > MAX_SPAN) {
+            return false;
+        }
+
+        // Hand the worker its own view of the cached sections in the search area
+        Long2ObjectLinkedOpenHashMap<SectionCluster> cached = graph(level.dimension()).sections;
+        Long2ObjectOpenHashMap<SectionCluster> known = new Long2ObjectOpenHashMap<>();
+        boolean complete = true;
+        for (int x = minSectionX; x <= maxSectionX; x++) {
+            for (int z = minSectionZ; z <= maxSectionZ; z++) {
+                for (int y = minSectionY; y <= maxSectionY; y++) {
+                    long section = SectionPos.asLong(x, y, z);
+                    SectionCluster cluster = cached.getAndMoveToLast(section);
+                    if (cluster != null) {
+                        known.put(section, cluster);
+                    } else {
+                        complete = false;
+                    }
+                }
+            }
+        }
+
+        // With every section known only the start section needs blocks, for the walk to its portals
+        CollisionSnapshot snapshot;
+        SearchBounds bounds = new SearchBounds(minSectionX, minSectionY, minSectionZ, maxSectionX, maxSectionY, maxSectionZ);
+        if (complete) {
+            SectionPos startSection = SectionPos.of(start);
+            snapshot = capture(level, startSection.x(), startSection.y(), startSection.z(), startSection.x(), startSection.y(), startSection.z());
+        } else {
+            snapshot = capture(level, minSectionX, minSectionY, minSectionZ, maxSectionX, maxSectionY, maxSectionZ);
+        }
+
+        ResourceKey<Level> dimension = level.dimension();
+        long capturedAt = ++clock;
+        inFlight++;
+        inFlightCaptures.add(capturedAt);
+        workerPool.submit(
+            () -> new RouteSearch(snapshot, known, bounds).find(start, target),
+            result -> {
+                inFlight--;
+                inFlightCaptures.rem(capturedAt);
+                commit(dimension, capturedAt, result);
+                pruneChanges();
+                if (result == null || result.route() == null) {
+                    failures++;
+                    delivery.accept(null);
+                } else {
+                    routes++;
+                    delivery.accept(result.route());
+                }
+            });
+        return true;
+    }
+
+    /**
+     * Drops the sections of the chunk and of the chunks beside it, whose portals depend on its border blocks.
+     */
+    @Override
+    public void onChunkChanged(ResourceKey<Level> dimension, int chunkX, int chunkZ) {
+        long now = ++clock;
+        // Change times only matter to searches whose snapshot is older, with none running there is nothing to record
+        boolean record = !inFlightCaptures.isEmpty();
+        DimensionGraph graph = graph(dimension);
+        for (int[] offset : NEIGHBOURS) {
+            long chunk = ChunkPos.asLong(chunkX + offset[0], chunkZ + offset[1]);
+            if (record) {
+                graph.lastChange.put(chunk, now);
+            }
+            LongArrayList sections = graph.sectionsByChunk.remove(chunk);
+            if (sections != null) {
+                for (int i = 0; i < sections.size(); i++) {
+                    if (graph.sections.remove(sections.getLong(i)) != null) {
+                        invalidations++;
+                    }
+                }
+            }
+        }
+    }
+
+    public int getCachedSections() {
+        int count = 0;
+        for (DimensionGraph graph : graphs.values()) {
+            count += graph.sections.size();
+        }
+        return count;
+    }
+
+    public long getRoutes() {
+        return routes;
+    }
+
+    public long getFailures() {
+        return failures;
+    }
+
+    public long getInvalidations() {
+        return invalidations;
+    }
+
+    public void resetStats() {
+        routes = 0;
+        failures = 0;
+        invalidations = 0;
+    }
+
+    public void clear() {
+        graphs.clear();
+    }
+
+    /**
+     * Forgets change times older than the snapshot of every search still running, they can no longer
+     * keep a section from being cached.
+     */
+    private void pruneChanges() {
+        if (inFlightCaptures.isEmpty()) {
+            for (DimensionGraph graph : graphs.values()) {
+                graph.lastChange.clear();
+            }
+            return;
+        }
+        long oldest = Long.MAX_VALUE;
+        for (int i = 0; i < inFlightCaptures.size(); i++) {
+            oldest = Math.min(oldest, inFlightCaptures.getLong(i));
+        }
+        for (DimensionGraph graph : graphs.values()) {
+            long cutoff = oldest;
+            graph.lastChange.long2LongEntrySet().removeIf(entry -> entry.getLongValue() < cutoff);
+        }
+    }
+
+    private DimensionGraph graph(ResourceKey<Level> dimension) {
+        return graphs.computeIfAbsent(dimension, key -> new DimensionGraph());
+    }
+
+    /**
+     * Caches the sections a search built, unless a block changed near them after the snapshot was taken.
+     */
+    private void commit(ResourceKey<Level> dimension, long capturedAt, @Nullable RouteResult result) {
+        if (result == null) {
+            return;
+        }
+        DimensionGraph graph = graph(dimension);
+        for (Long2ObjectMap.Entry<SectionCluster> entry : result.built().long2ObjectEntrySet()) {
+            long section = entry.getLongKey();
+            long chunk = ChunkPos.asLong(SectionPos.x(section), SectionPos.z(section));
+            if (graph.lastChange.get(chunk) < capturedAt && graph.sections.putAndMoveToLast(section, entry.getValue()) == null) {
+                graph.sectionsByChunk.computeIfAbsent(chunk, key -> new LongArrayList(4)).add(section);
+            }
+        }
+        while (graph.sections.size() > capacity) {
+            graph.evictEldest();
+        }
+    }
+
+    private static CollisionSnapshot capture(ServerLevel level, int minSectionX, int minSectionY, int minSectionZ, int maxSectionX, int maxSectionY, int maxSectionZ) {
+        int margin = SectionCluster.BUILD_MARGIN;
+        return CollisionSnapshot.capture(level,
+            SectionPos.sectionToBlockCoord(minSectionX) - margin,
+            SectionPos.sectionToBlockCoord(minSectionY) - margin,
+            SectionPos.sectionToBlockCoord(minSectionZ) - margin,
+            SectionPos.sectionToBlockCoord(maxSectionX) + 15 + margin,
+            SectionPos.sectionToBlockCoord(maxSectionY) + 15 + margin,
+            SectionPos.sectionToBlockCoord(maxSectionZ) + 15 + margin);
+    }
+
+    /**
+     * Cached sections of one dimension in least recently used order, indexed by chunk for invalidation.
+     */
+    private static final class DimensionGraph {
+        private final Long2ObjectLinkedOpenHashMap<SectionCluster> sections = new Long2ObjectLinkedOpenHashMap<>();
+        private final Long2ObjectOpenHashMap<LongArrayList> sectionsByChunk = new Long2ObjectOpenHashMap<>();
+        private final Long2LongOpenHashMap lastChange = new Long2LongOpenHashMap();
+
+        private void evictEldest() {
+            long section = sections.firstLongKey();
+            sections.removeFirst();
+            long chunk = ChunkPos.asLong(SectionPos.x(section), SectionPos.z(section));
+            LongArrayList chunkSections = sectionsByChunk.get(chunk);
+            if (chunkSections != null) {
+                chunkSections.rem(section);
+                if (chunkSections.isEmpty()) {
+                    sectionsByChunk.remove(chunk);
+                }
+            }
+        }
+    }
+
+    private record SearchBounds(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        boolean contains(long section) {
+            int x = SectionPos.x(section);
+            int y = SectionPos.y(section);
+            int z = SectionPos.z(section);
+            return x >= minX && x <= maxX && y >= minY && y <= maxY && z >= minZ && z <= maxZ;
+        }
+    }
+
+    private record RouteResult(@Nullable Route route, Long2ObjectOpenHashMap<SectionCluster> built) {
+    }
+
+    /**
+     * A* over the portal nodes of the sections in the search area, building sections it has not seen
+     * before from the snapshot. Runs on a worker thread.
+     */
+    private static final class RouteSearch {
+        private static final long NO_PARENT = Long.MIN_VALUE;
+
+        private final CollisionSnapshot snapshot;
+        private final Long2ObjectOpenHashMap<SectionCluster> known;
+        private final Long2ObjectOpenHashMap<SectionCluster> built = new Long2ObjectOpenHashMap<>();
+        private final SearchBounds bounds;
+
+        private RouteSearch(CollisionSnapshot snapshot, Long2ObjectOpenHashMap<SectionCluster> known, SearchBounds bounds) {
+            this.snapshot = snapshot;
+            this.known = known;
+            this.bounds = bounds;
+        }
+
+        private RouteResult find(BlockPos start, BlockPos destination) {
+            long startSection = SectionPos.asLong(start);
+            long goalSection = SectionPos.asLong(destination);
+            if (startSection == goalSection) {
+                return new RouteResult(new Route(start, destination, List.of(destination)), built);
+            }
+            SectionCluster first = cluster(startSection);
+            if (first == null) {
+                return new RouteResult(null, built);
+            }
+
+            Long2FloatOpenHashMap costs = new Long2FloatOpenHashMap();
+            costs.defaultReturnValue(Float.MAX_VALUE);
+            Long2LongOpenHashMap parents = new Long2LongOpenHashMap();
+            parents.defaultReturnValue(NO_PARENT);
+            LongOpenHashSet closed = new LongOpenHashSet();
+            PriorityQueue<OpenNode> open = new PriorityQueue<>();
+            int[] startCosts = first.distancesFrom(snapshot, start, MOB_HEIGHT);
+            for (int i = 0; i < startCosts.length; i++) {
+                if (startCosts[i] >= 0) {
+                    long cell = first.getNode(i);
+                    costs.put(cell, startCosts[i]);
+                    parents.put(cell, NO_PARENT);
+                    open.add(new OpenNode(cell, startCosts[i] + heuristic(cell, destination)));
+                }
+            }
+
+            int expansions = 0;
+            while (!open.isEmpty() && expansions++ < MAX_EXPANSIONS) {
+                long cell = open.poll().cell();
+                if (!closed.add(cell)) {
+                    continue;
+                }
+                long section = SectionPos.blockToSection(cell);
+                if (section == goalSection) {
+                    return new RouteResult(new Route(start, destination, waypoints(cell, parents, destination)), built);
+                }
+                SectionCluster cluster = cluster(section);
+                int node = cluster == null ? -1 : cluster.indexOf(cell);
+                if (node == -1) {
+                    continue;
+                }
+
+                float cost = costs.get(cell);
+                int[] targets = cluster.getEdgeTargets(node);
+                int[] edgeCosts = cluster.getEdgeCosts(node);
+                for (int i = 0; i < targets.length; i++) {
+                    relax(cell, cluster.getNode(targets[i]), cost + edgeCosts[i], costs, parents, open, destination);
+                }
+                for (long exit : cluster.getExits(node)) {
+                    SectionCluster next = cluster(SectionPos.blockToSection(exit));
+                    if (next != null && next.indexOf(exit) != -1) {
+                        relax(cell, exit, cost + 1, costs, parents, open, destination);
+                    }
+                }
+            }
+            return new RouteResult(null, built);
+        }
+
+        private void relax(long from, long to, float cost, Long2FloatOpenHashMap costs, Long2LongOpenHashMap parents, PriorityQueue<OpenNode> open, BlockPos destination) {
+            if (cost < costs.get(to)) {
+                costs.put(to, cost);
+                parents.put(to, from);
+                open.add(new OpenNode(to, cost + heuristic(to, destination)));
+            }
+        }
+
+        /**
+         * Keeps the first block of every section the route passes through, the rest are on the segment paths.
+         */
+        private static List<BlockPos> waypoints(long end, Long2LongOpenHashMap parents, BlockPos destination) {
+            List<BlockPos> waypoints = new ArrayList<>();
+            waypoints.add(destination);
+            for (long cell = end; cell != NO_PARENT; cell = parents.get(cell)) {
+                long parent = parents.get(cell);
+                if (parent != NO_PARENT && SectionPos.blockToSection(parent) != SectionPos.blockToSection(cell)) {
+                    waypoints.add(BlockPos.of(cell));
+                }
+            }
+            Collections.reverse(waypoints);
+            return waypoints;
+        }
+
+        @Nullable
+        private SectionCluster cluster(long section) {
+            SectionCluster cluster = known.get(section);
+            if (cluster == null) {
+                cluster = built.get(section);
+            }
+            if (cluster == null && bounds.contains(section) && covers(section)) {
+                cluster = SectionCluster.build(snapshot, section, MOB_HEIGHT);
+                built.put(section, cluster);
+            }
+            return cluster;
+        }
+
+        private boolean covers(long section) {
+            int margin = SectionCluster.BUILD_MARGIN;
+            int x = SectionPos.sectionToBlockCoord(SectionPos.x(section));
+            int y = SectionPos.sectionToBlockCoord(SectionPos.y(section));
+            int z = SectionPos.sectionToBlockCoord(SectionPos.z(section));
+            return snapshot.covers(x - margin, y - margin, z - margin, x + 15 + margin, y + 15 + margin, z + 15 + margin);
+        }
+
+        private static float heuristic(long cell, BlockPos destination) {
+            // Every move covers one block along the ground
+            return Math.abs(BlockPos.getX(cell) - destination.getX()) + Math.abs(BlockPos.getZ(cell) - destination.getZ());
+        }
+    }
+
+    private record OpenNode(long cell, float score) implements Comparable<OpenNode> {
+        @Override
+        public int compareTo(OpenNode other) {
+            return Float.compare(score, other.score);
+        }
+    }
+}
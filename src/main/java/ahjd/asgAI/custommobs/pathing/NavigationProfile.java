@@ -0,0 +1,37 @@
+package ahjd.asgAI.custommobs.pathing;
+
+import net.minecraft.world.entity.EntityType;
+import net.minecraft.world.entity.Mob;
+import net.minecraft.world.level.pathfinder.NodeEvaluator;
+
+/**
+ * Everything about a mob that changes which path it finds between two points.
+ * Mobs with equal profiles can follow each other's paths.
+ * @param type The entity type, which decides the pathfinding malus of each block type
+ * @param width Bounding box width
+ * @param height Bounding box height
+ * @param canOpenDoors Whether the mob can open wooden doors
+ * @param canPassDoors Whether the mob walks through open doors
+ * @param canFloat Whether the mob can swim
+ */
+public record NavigationProfile(
+    EntityType<?> type,
+    float width,
+    float height,
+    boolean canOpenDoors,
+    boolean canPassDoors,
+    boolean canFloat
+) {
+
+    public static NavigationProfile of(Mob mob) {
+        NodeEvaluator evaluator = mob.getNavigation().getNodeEvaluator();
+        return new NavigationProfile(
+            mob.getType(),
+            mob.getBbWidth(),
+            mob.getBbHeight(),
+            evaluator.canOpenDoors(),
+            evaluator.canPassDoors(),
+            evaluator.canFloat()
+        );
+    }
+}
@@ -0,0 +1,262 @@
+package ahjd.asgAI.custommobs.pathing;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.minecraft.core.BlockPos;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.world.entity.Mob;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.pathfinder.Node;
+import net.minecraft.world.level.pathfinder.Path;
+import net.minecraft.world.level.pathfinder.PathType;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Least recently used cache of complete paths between fixed positions, shared by every custom mob.
+ * Paths are keyed by the 2 block cell the mob starts in, the exact destination and the mob's
+ * {@link NavigationProfile}, so mobs of one template walking between the same patrol points compute
+ * the route once. Paths found by the {@link AsyncPathfinder} grid search model blocks more coarsely
+ * than the vanilla navigation, so they are kept under keys of their own and only handed to
+ * asynchronous lifecycles. Every cached path is indexed under the chunks it crosses and dropped as soon as a
+ * block changes in one of them. Only paths that reach their destination are cached, and a cached path
+ * is dropped again once a mob following it stops short of the destination. Main thread only.
+ */
+public class PathCache implements ChunkChangeListener {
+    private static final int START_CELL_SHIFT = 1; // 2 block start cells
+
+    private final int capacity;
+    private final LinkedHashMap<PathKey, CachedPath> paths;
+    private final Map<ResourceKey<Level>, Long2ObjectOpenHashMap<Set<PathKey>>> keysByChunk;
+    private long hits;
+    private long misses;
+    private long invalidations;
+
+    /**
+     * @param capacity Maximum number of cached paths
+     */
+    public PathCache(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        this.paths = new LinkedHashMap<>(16, 0.75f, true);
+        this.keysByChunk = new HashMap<>();
+    }
+
+    /**
+     * Gets a fresh copy of a cached path from the mob's position to the destination.
+     * @param mob The mob about to move
+     * @param destination Where it wants to go
+     * @return A path the mob can follow, or null if none is cached
+     */
+    @Nullable
+    public Path get(Mob mob, BlockPos destination) {
+        return get(mob, destination, false);
+    }
+
+    /**
+     * Gets a fresh copy of a cached path from the mob's position to the destination.
+     * @param mob The mob about to move
+     * @param destination Where it wants to go
+     * @param grid Whether to look among the paths of the grid search instead of the vanilla navigation
+     * @return A path the mob can follow, or null if none is cached
+     */
+    @Nullable
+    public Path get(Mob mob, BlockPos destination, boolean grid) {
+        CachedPath cached = paths.get(keyOf(mob, mob.blockPosition(), destination, grid));
+        if (cached == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return cached.toPath();
+    }
+
+    /**
+     * Caches a path computed from the mob's position, if it reaches the destination.
+     * @param mob The mob the path was computed for
+     * @param destination The destination it was computed for
+     * @param path The computed path, not yet followed
+     */
+    public void put(Mob mob, BlockPos destination, Path path) {
+        put(mob, mob.blockPosition(), destination, path, false);
+    }
+
+    /**
+     * Caches a path computed from an earlier position of the mob, if it reaches the destination.
+     * @param mob The mob the path was computed for
+     * @param start The block the path was computed from
+     * @param destination The destination it was computed for
+     * @param path The computed path, not yet followed
+     * @param grid Whether the path was found by the grid search instead of the vanilla navigation
+     */
+    public void put(Mob mob, BlockPos start, BlockPos destination, Path path, boolean grid) {
+        PathKey key = keyOf(mob, start, destination, grid);
+        if (!path.canReach() || path.getNodeCount() == 0) {
+            // The destination became unreachable, an older path to it is stale
+            remove(key);
+            return;
+        }
+
+        CachedPath cached = CachedPath.of(path);
+        CachedPath previous = paths.put(key, cached);
+        if (previous != null) {
+            unindex(key, previous);
+        }
+        Long2ObjectOpenHashMap<Set<PathKey>> chunks = keysByChunk.computeIfAbsent(key.dimension(), k -> new Long2ObjectOpenHashMap<>());
+        for (long chunk : cached.chunks) {
+            chunks.computeIfAbsent(chunk, k -> new HashSet<>()).add(key);
+        }
+
+        if (paths.size() > capacity) {
+            Iterator<Map.Entry<PathKey, CachedPath>> eldest = paths.entrySet().iterator();
+            Map.Entry<PathKey, CachedPath> entry = eldest.next();
+            eldest.remove();
+            unindex(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Drops the cached path a mob followed from the start to the destination, because it got stuck or
+     * ended short of the destination.
+     * @param mob The mob that followed the path
+     * @param start The block the path was taken from the cache at
+     * @param destination The destination it was cached for
+     * @param grid Whether it was cached as a path of the grid search
+     */
+    public void evict(Mob mob, BlockPos start, BlockPos destination, boolean grid) {
+        if (remove(keyOf(mob, start, destination, grid))) {
+            invalidations++;
+        }
+    }
+
+    /**
+     * Drops every cached path that crosses the chunk.
+     */
+    @Override
+    public void onChunkChanged(ResourceKey<Level> dimension, int chunkX, int chunkZ) {
+        Long2ObjectOpenHashMap<Set<PathKey>> chunks = keysByChunk.get(dimension);
+        if (chunks == null) {
+            return;
+        }
+        Set<PathKey> keys = chunks.remove(ChunkPos.asLong(chunkX, chunkZ));
+        if (keys == null) {
+            return;
+        }
+        for (PathKey key : keys) {
+            CachedPath cached = paths.remove(key);
+            if (cached != null) {
+                invalidations++;
+                unindex(key, cached);
+            }
+        }
+    }
+
+    public int size() {
+        return paths.size();
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getInvalidations() {
+        return invalidations;
+    }
+
+    public void clear() {
+        paths.clear();
+        keysByChunk.clear();
+    }
+
+    private boolean remove(PathKey key) {
+        CachedPath cached = paths.remove(key);
+        if (cached == null) {
+            return false;
+        }
+        unindex(key, cached);
+        return true;
+    }
+
+    private void unindex(PathKey key, CachedPath cached) {
+        Long2ObjectOpenHashMap<Set<PathKey>> chunks = keysByChunk.get(key.dimension());
+        if (chunks == null) {
+            return;
+        }
+        for (long chunk : cached.chunks) {
+            Set<PathKey> keys = chunks.get(chunk);
+            if (keys != null && keys.remove(key) && keys.isEmpty()) {
+                chunks.remove(chunk);
+            }
+        }
+    }
+
+    private static PathKey keyOf(Mob mob, BlockPos start, BlockPos destination, boolean grid) {
+        long startCell = BlockPos.asLong(start.getX() >> START_CELL_SHIFT, start.getY() >> START_CELL_SHIFT, start.getZ() >> START_CELL_SHIFT);
+        return new PathKey(mob.level().dimension(), startCell, destination.asLong(), NavigationProfile.of(mob), grid);
+    }
+
+    private record PathKey(ResourceKey<Level> dimension, long startCell, long destination, NavigationProfile profile, boolean grid) {
+    }
+
+    /**
+     * Node positions of a path, detached from the mutable path object the navigation advances. The
+     * path type and malus of every node are kept too, the navigation reads them to open doors and to
+     * avoid shortcuts through dangerous blocks.
+     */
+    private static final class CachedPath {
+        private final int[] nodes;
+        private final PathType[] types;
+        private final float[] costMaluses;
+        private final BlockPos target;
+        private final long[] chunks;
+
+        private CachedPath(int[] nodes, PathType[] types, float[] costMaluses, BlockPos target, long[] chunks) {
+            this.nodes = nodes;
+            this.types = types;
+            this.costMaluses = costMaluses;
+            this.target = target;
+            this.chunks = chunks;
+        }
+
+        private static CachedPath of(Path path) {
+            int count = path.getNodeCount();
+            int[] nodes = new int[count * 3];
+            PathType[] types = new PathType[count];
+            float[] costMaluses = new float[count];
+            LongOpenHashSet chunks = new LongOpenHashSet();
+            for (int i = 0; i < count; i++) {
+                Node node = path.getNode(i);
+                nodes[i * 3] = node.x;
+                nodes[i * 3 + 1] = node.y;
+                nodes[i * 3 + 2] = node.z;
+                types[i] = node.type;
+                costMaluses[i] = node.costMalus;
+                chunks.add(ChunkPos.asLong(node.x >> 4, node.z >> 4));
+            }
+            return new CachedPath(nodes, types, costMaluses, path.getTarget(), chunks.toLongArray());
+        }
+
+        private Path toPath() {
+            List<Node> copy = new ArrayList<>(types.length);
+            for (int i = 0; i < types.length; i++) {
+                Node node = new Node(nodes[i * 3], nodes[i * 3 + 1], nodes[i * 3 + 2]);
+                node.type = types[i];
+                node.costMalus = costMaluses[i];
+                copy.add(node);
+            }
+            return new Path(copy, target, true);
+        }
+    }
+}
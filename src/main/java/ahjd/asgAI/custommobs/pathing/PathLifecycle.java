@@ -0,0 +1,282 @@
+package ahjd.asgAI.custommobs.pathing;
+
+import ahjd.asgAI.custommobs.CustomMobInstance;
+import ahjd.asgAI.custommobs.CustomMobManager;
+import ahjd.asgAI.custommobs.MobPriority;
+import net.minecraft.core.BlockPos;
+import net.minecraft.world.entity.Entity;
+import net.minecraft.world.entity.Mob;
+import net.minecraft.world.entity.ai.navigation.PathNavigation;
+import net.minecraft.world.level.pathfinder.Path;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Keeps the path of one goal alive across ticks instead of rebuilding it every tick.
+ * Goals call one of the {@code moveTo} methods every tick with their current destination, and a
+ * new path is only computed when the {@link RepathPolicy} says the current one is no longer good.
+ * Paths to fixed positions are looked up in the shared {@link PathCache} before they are computed.
+ * An asynchronous lifecycle computes those paths on the {@link AsyncPathfinder} instead, and the mob
+ * keeps following its previous path, or stands still, until the new one arrives. A hierarchical
+ * lifecycle first asks the {@link HierarchicalPathfinder} for a {@link Route} to far destinations and
+ * then only paths to the next stretch of it.
+ */
+public class PathLifecycle {
+    private static final double ARRIVAL_DISTANCE = 2.0; // Paths are built to within one block of the destination
+    private final Mob mob;
+    private final RepathPolicy policy;
+    private final PathStats stats;
+    private final PathCache cache;
+    private final AsyncPathfinder pathfinder;
+    private final HierarchicalPathfinder hierarchy;
+    private final boolean async;
+    private final boolean hierarchical;
+    private PathRequest pending;
+    private Route route;
+    private BlockPos routeDestination;
+    private Object routeToken;
+    private boolean routePending;
+    private int routeRetryTick;
+    private BlockPos cachedStart;
+    private BlockPos cachedDestination;
+    private double destinationX;
+    private double destinationY;
+    private double destinationZ;
+    private boolean hasPath;
+    private int lastRepathTick;
+
+    public PathLifecycle(Mob mob, RepathPolicy policy) {
+        this(mob, policy, false);
+    }
+
+    /**
+     * @param mob The mob that follows the paths
+     * @param policy When to replace the current path
+     * @param async Whether paths to fixed positions are computed off the main thread
+     */
+    public PathLifecycle(Mob mob, RepathPolicy policy, boolean async) {
+        this(mob, policy, async, false);
+    }
+
+    /**
+     * @param mob The mob that follows the paths
+     * @param policy When to replace the current path
+     * @param async Whether paths to fixed positions are computed off the main thread
+     * @param hierarchical Whether far fixed positions are reached along a high level route
+     */
+    public PathLifecycle(Mob mob, RepathPolicy policy, boolean async, boolean hierarchical) {
+        this.mob = mob;
+        this.policy = policy;
+        this.async = async;
+        this.hierarchical = hierarchical;
+        this.stats = CustomMobManager.getInstance().getPathStats();
+        this.cache = CustomMobManager.getInstance().getPathCache();
+        this.pathfinder = CustomMobManager.getInstance().getPathfinder();
+        this.hierarchy = CustomMobManager.getInstance().getHierarchicalPathfinder();
+    }
+
+    /**
+     * Moves towards a fixed position.
+     * @param destination The position to reach
+     * @param speedModifier Speed multiplier passed to the navigation
+     */
+    public void moveTo(BlockPos destination, double speedModifier) {
+        if (hierarchical && isFar(destination)) {
+            BlockPos waypoint = routeWaypoint(destination);
+            if (waypoint == null) {
+                return; // Keeps its current path until the route arrives
+            }
+            destination = waypoint;
+        }
+        if (pending != null) {
+            if (pending.isPending() && pending.getDestination().equals(destination)) {
+                return; // Still on its way
+            }
+            pending.cancel();
+            pending = null;
+        }
+        if (!shouldRepath(destination.getX(), destination.getY(), destination.getZ())) {
+            return;
+        }
+
+        Path path = cache.get(mob, destination, async);
+        boolean fromCache = path != null;
+        if (fromCache) {
+            stats.recordCached();
+        } else if (async) {
+            request(destination, speedModifier);
+            return;
+        } else {
+            path = mob.getNavigation().createPath(destination, 1);
+            if (path != null) {
+                stats.recordComputed();
+                cache.put(mob, destination, path);
+            }
+        }
+        follow(path, destination.getX(), destination.getY(), destination.getZ(), speedModifier);
+        if (fromCache) {
+            // Checked once the navigation is done with it
+            cachedStart = mob.blockPosition();
+            cachedDestination = destination.immutable();
+        }
+    }
+
+    /**
+     * Moves towards an entity, following it as it moves.
+     * @param target The entity to reach
+     * @param speedModifier Speed multiplier passed to the navigation
+     */
+    public void moveTo(Entity target, double speedModifier) {
+        if (pending != null) {
+            pending.cancel();
+            pending = null;
+        }
+        if (!shouldRepath(target.getX(), target.getY(), target.getZ())) {
+            return;
+        }
+
+        Path path = mob.getNavigation().createPath(target, 0);
+        if (path != null) {
+            stats.recordComputed();
+        }
+        follow(path, target.getX(), target.getY(), target.getZ(), speedModifier);
+    }
+
+    /**
+     * Forgets the current path, the next {@code moveTo} computes a new one right away.
+     */
+    public void reset() {
+        hasPath = false;
+        cachedDestination = null;
+        if (pending != null) {
+            pending.cancel();
+            pending = null;
+        }
+    }
+
+    private boolean isFar(BlockPos destination) {
+        return Math.abs(mob.getBlockX() - destination.getX()) + Math.abs(mob.getBlockZ() - destination.getZ())
+            >= HierarchicalPathfinder.MIN_DISTANCE;
+    }
+
+    /**
+     * Gets the end of the next segment of the route to the destination, requesting the route first if needed.
+     * @return The position to path to, or null while the route is being searched
+     */
+    @Nullable
+    private BlockPos routeWaypoint(BlockPos destination) {
+        if (!destination.equals(routeDestination)) {
+            route = null;
+            routeDestination = destination.immutable();
+            requestRoute();
+        } else if (route == null && !routePending && mob.tickCount >= routeRetryTick) {
+            requestRoute();
+        } else if (route != null && route.isOffRoute(mob)) {
+            // Knocked or lured away, the rest of the route may no longer be the way to go
+            route = null;
+            requestRoute();
+        }
+
+        if (route != null) {
+            return route.nextWaypoint(mob);
+        }
+        // Without a route the regular pathfinders head straight for the destination
+        return routePending ? null : destination;
+    }
+
+    private void requestRoute() {
+        Object token = new Object();
+        routeToken = token;
+        routePending = hierarchy.requestRoute(mob, routeDestination, found -> {
+            if (routeToken != token) {
+                return; // Destination changed since
+            }
+            routePending = false;
+            route = found;
+            if (found == null) {
+                routeRetryTick = mob.tickCount + policy.timeoutTicks();
+            }
+        });
+        if (!routePending) {
+            routeRetryTick = mob.tickCount + policy.cooldownTicks();
+        }
+    }
+
+    private void request(BlockPos destination, double speedModifier) {
+        // Counts as a repath right away, a refused request is retried once the cooldown has passed
+        lastRepathTick = mob.tickCount;
+        destinationX = destination.getX();
+        destinationY = destination.getY();
+        destinationZ = destination.getZ();
+        hasPath = true;
+        pending = pathfinder.submit(mob, destination, priorityOf(mob), path -> deliver(path, speedModifier));
+    }
+
+    private void deliver(Path path, double speedModifier) {
+        PathRequest request = pending;
+        pending = null;
+        if (path == null) {
+            // Keeps whatever path the mob still had
+            stats.recordFailed();
+            return;
+        }
+        stats.recordComputed();
+        cache.put(mob, request.getStart(), request.getDestination(), path, true);
+        follow(path, destinationX, destinationY, destinationZ, speedModifier);
+    }
+
+    private static MobPriority priorityOf(Mob mob) {
+        CustomMobInstance instance = CustomMobManager.getInstance().getCustomMob(mob.getUUID());
+        return instance != null ? instance.getPlan().getPriority() : MobPriority.NORMAL;
+    }
+
+    private boolean shouldRepath(double x, double y, double z) {
+        if (!hasPath) {
+            return true;
+        }
+
+        PathNavigation navigation = mob.getNavigation();
+        if (cachedDestination != null && navigation.isDone()) {
+            // The navigation drops a path it got stuck on, and a cached path that ends short is stale,
+            // this also catches block changes the BlockChangeTracker has no event for
+            if (!mob.blockPosition().closerThan(cachedDestination, ARRIVAL_DISTANCE)) {
+                cache.evict(mob, cachedStart, cachedDestination, async);
+            }
+            cachedDestination = null;
+        }
+        int sinceRepath = mob.tickCount - lastRepathTick;
+        if (sinceRepath >= policy.cooldownTicks()) {
+            double dx = x - destinationX;
+            double dy = y - destinationY;
+            double dz = z - destinationZ;
+            boolean destinationMoved = dx * dx + dy * dy + dz * dz > policy.moveThreshold() * policy.moveThreshold();
+            // The navigation drops its path once it finishes or gets stuck
+            boolean pathEnded = navigation.isDone();
+            if (destinationMoved || pathEnded || sinceRepath >= policy.timeoutTicks()) {
+                return true;
+            }
+        }
+
+        if (!navigation.isDone()) {
+            // Only counts while the mob actually follows the kept path, not while it waits out a cooldown
+            stats.recordReused();
+        }
+        return false;
+    }
+
+    private void follow(Path path, double x, double y, double z, double speedModifier) {
+        cachedDestination = null;
+        lastRepathTick = mob.tickCount;
+        destinationX = x;
+        destinationY = y;
+        destinationZ = z;
+        hasPath = true;
+
+        if (path == null) {
+            // Retried once the cooldown has passed
+            stats.recordFailed();
+            mob.getNavigation().stop();
+            return;
+        }
+        mob.getNavigation().moveTo(path, speedModifier);
+    }
+}
@@ -0,0 +1,94 @@
+package ahjd.asgAI.custommobs.pathing;
+
+import ahjd.asgAI.custommobs.MobPriority;
+import net.minecraft.core.BlockPos;
+import net.minecraft.world.entity.Mob;
+import net.minecraft.world.level.pathfinder.Path;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.function.Consumer;
+
+/**
+ * A path submitted to the {@link AsyncPathfinder}, from the queue until its path is delivered.
+ * Cancelling is safe at any point, a cancelled request is skipped if it is still queued, its search
+ * stops early if it is running, and its result is dropped if it already finished.
+ */
+public final class PathRequest {
+    private final Mob mob;
+    private final BlockPos destination;
+    private final MobPriority priority;
+    private final long sequence;
+    private final Consumer<Path> delivery;
+    private BlockPos start;
+    private volatile boolean cancelled;
+    private boolean done;
+
+    PathRequest(Mob mob, BlockPos destination, MobPriority priority, long sequence, Consumer<Path> delivery) {
+        this.mob = mob;
+        this.destination = destination;
+        this.priority = priority;
+        this.sequence = sequence;
+        this.delivery = delivery;
+    }
+
+    public Mob getMob() {
+        return mob;
+    }
+
+    public BlockPos getDestination() {
+        return destination;
+    }
+
+    public MobPriority getPriority() {
+        return priority;
+    }
+
+    /**
+     * Gets the block the search started from, captured when the request left the queue.
+     * @return The start, or null while the request is still queued
+     */
+    @Nullable
+    public BlockPos getStart() {
+        return start;
+    }
+
+    /**
+     * Stops the request, its delivery callback will not be called.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Checks whether the request may still deliver a path.
+     * @return True while the request is queued or searching
+     */
+    public boolean isPending() {
+        return !done && !cancelled;
+    }
+
+    long getSequence() {
+        return sequence;
+    }
+
+    void setStart(BlockPos start) {
+        this.start = start;
+    }
+
+    /**
+     * Hands the result to the requester unless the request was cancelled. Main thread only.
+     * @return True if the result was delivered
+     */
+    boolean complete(@Nullable Path path) {
+        if (done || cancelled) {
+            return false;
+        }
+        done = true;
+        delivery.accept(path);
+        return true;
+    }
+}
@@ -0,0 +1,75 @@
+package ahjd.asgAI.custommobs.pathing;
+
+/**
+ * Counts how navigation requests of custom goals were served. Main thread only.
+ */
+public class PathStats {
+    private long computed;
+    private long reused;
+    private long cached;
+    private long failed;
+
+    void recordComputed() {
+        computed++;
+    }
+
+    void recordReused() {
+        reused++;
+    }
+
+    void recordCached() {
+        cached++;
+    }
+
+    void recordFailed() {
+        failed++;
+    }
+
+    /**
+     * Gets the number of paths that were computed.
+     * @return Paths computed since the last reset
+     */
+    public long getComputed() {
+        return computed;
+    }
+
+    /**
+     * Gets the number of ticks a goal kept following its current, unfinished path instead of computing a new one.
+     * @return Path reuses since the last reset
+     */
+    public long getReused() {
+        return reused;
+    }
+
+    /**
+     * Gets the number of paths taken from the path cache instead of being computed.
+     * @return Cache hits since the last reset
+     */
+    public long getCached() {
+        return cached;
+    }
+
+    /**
+     * Gets the number of path computations that found no path.
+     * @return Failed computations since the last reset
+     */
+    public long getFailed() {
+        return failed;
+    }
+
+    /**
+     * Gets the share of navigation requests served by an existing or cached path.
+     * @return The reuse ratio between 0 and 1
+     */
+    public double getReuseRatio() {
+        long total = computed + reused + cached;
+        return total == 0 ? 0.0 : (double) (reused + cached) / total;
+    }
+
+    public void reset() {
+        computed = 0;
+        reused = 0;
+        cached = 0;
+        failed = 0;
+    }
+}
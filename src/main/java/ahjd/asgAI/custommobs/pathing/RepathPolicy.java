@@ -0,0 +1,27 @@
+package ahjd.asgAI.custommobs.pathing;
+
+/**
+ * When a {@link PathLifecycle} throws its current path away and computes a new one.
+ * A path is kept until the destination moved farther than the threshold, the path ended or got
+ * blocked before arriving, or the timeout passed. Repaths are never closer together than the cooldown.
+ * @param moveThreshold Blocks the destination may move before the path is rebuilt
+ * @param cooldownTicks Minimum ticks between two repaths
+ * @param timeoutTicks Ticks after which a path is rebuilt even if nothing changed
+ */
+public record RepathPolicy(double moveThreshold, int cooldownTicks, int timeoutTicks) {
+    /**
+     * For fixed destinations such as patrol points
+     */
+    public static final RepathPolicy STATIC_TARGET = new RepathPolicy(1.0, 20, 200);
+
+    /**
+     * For destinations that move, such as entities being chased
+     */
+    public static final RepathPolicy MOVING_TARGET = new RepathPolicy(2.0, 10, 60);
+
+    public RepathPolicy {
+        if (moveThreshold < 0.0 || cooldownTicks < 0 || timeoutTicks < cooldownTicks) {
+            throw new IllegalArgumentException("Repath policy needs threshold >= 0 and 0 <= cooldown <= timeout");
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package ahjd.asgAI.custommobs.pathing;
+
+import net.minecraft.core.BlockPos;
+import net.minecraft.world.entity.Mob;
+
+import java.util.List;
+
+/**
+ * High level route from the {@link HierarchicalPathfinder}: the blocks where the mob crosses into
+ * another chunk section, ending with the destination. The mob paths to one segment at a time, so
+ * only the next stretch of the trip is ever refined into a block-level path. A mob that was pushed
+ * or led more than {@link #OFF_ROUTE_DISTANCE} blocks away from its current segment is off the route
+ * and needs a new one. Main thread only.
+ */
+public class Route {
+    private static final double REACHED_DISTANCE_SQR = 9.0;
+    private static final int SEGMENT_LENGTH = 24; // Farthest waypoint the mob paths to at once
+    private static final double OFF_ROUTE_DISTANCE = 16.0; // A section's width, detours inside a section stay closer
+
+    private final BlockPos start;
+    private final BlockPos destination;
+    private final List<BlockPos> waypoints;
+    private int index;
+
+    Route(BlockPos start, BlockPos destination, List<BlockPos> waypoints) {
+        this.start = start;
+        this.destination = destination;
+        this.waypoints = waypoints;
+    }
+
+    public BlockPos getDestination() {
+        return destination;
+    }
+
+    public int getWaypointCount() {
+        return waypoints.size();
+    }
+
+    /**
+     * Gets where the mob should path to next. Waypoints the mob has reached are skipped, and so are
+     * waypoints close enough that the next segment can cover them too.
+     * @param mob The mob following the route
+     * @return The end of the next segment
+     */
+    public BlockPos nextWaypoint(Mob mob) {
+        int last = waypoints.size() - 1;
+        while (index < last && mob.distanceToSqr(waypoints.get(index).getCenter()) < REACHED_DISTANCE_SQR) {
+            index++;
+        }
+        int segmentEnd = index;
+        while (segmentEnd < last && horizontalDistance(mob, waypoints.get(segmentEnd + 1)) <= SEGMENT_LENGTH) {
+            segmentEnd++;
+        }
+        return waypoints.get(segmentEnd);
+    }
+
+    /**
+     * Checks whether the mob strayed too far from the segment between the last waypoint it passed and
+     * the one it is heading for.
+     * @param mob The mob following the route
+     * @return True if the route should be searched again from where the mob is
+     */
+    public boolean isOffRoute(Mob mob) {
+        BlockPos from = index == 0 ? start : waypoints.get(index - 1);
+        BlockPos to = waypoints.get(index);
+        double segmentX = to.getX() - from.getX();
+        double segmentZ = to.getZ() - from.getZ();
+        double offsetX = mob.getBlockX() - from.getX();
+        double offsetZ = mob.getBlockZ() - from.getZ();
+        double lengthSqr = segmentX * segmentX + segmentZ * segmentZ;
+        // Closest point of the segment, as a fraction of its length
+        double t = lengthSqr == 0.0 ? 0.0 : Math.clamp((offsetX * segmentX + offsetZ * segmentZ) / lengthSqr, 0.0, 1.0);
+        double dx = offsetX - t * segmentX;
+        double dz = offsetZ - t * segmentZ;
+        return dx * dx + dz * dz > OFF_ROUTE_DISTANCE * OFF_ROUTE_DISTANCE;
+    }
+
+    private static int horizontalDistance(Mob mob, BlockPos pos) {
+        return Math.abs(mob.getBlockX() - pos.getX()) + Math.abs(mob.getBlockZ() - pos.getZ());
+    }
+}
@@ -0,0 +1,314 @@
+package ahjd.asgAI.custommobs.pathing;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The abstract graph of one chunk section for the {@link HierarchicalPathfinder}. Every move a walking
+ * mob can make between this section and another one is found, moves between the same two sections in
+ * the same direction are grouped into portals of touching blocks, and the middle move of each portal
+ * becomes a node. Nodes in the same section are linked with their walking distance inside the section.
+ * Both sections on either side of a portal group its moves the same way, so the exit node of one lines
+ * up with the entry node of the other. Immutable once built, so it is shared with worker threads.
+ */
+final class SectionCluster {
+    /**
+     * Blocks around the section a snapshot must cover to build it: the neighbouring column and enough
+     * height for mobs stepping up into it or dropping into it.
+     */
+    static final int BUILD_MARGIN = CollisionSnapshot.MAX_DROP + 4;
+    private static final int[] DIRECTION_X = {1, -1, 0, 0};
+    private static final int[] DIRECTION_Z = {0, 0, 1, -1};
+    private static final Comparator<Move> MOVE_ORDER = Comparator
+        .comparingLong((Move move) -> move.fromSection)
+        .thenComparingLong(move -> move.toSection)
+        .thenComparingInt(move -> move.direction)
+        .thenComparingInt(move -> move.fromX)
+        .thenComparingInt(move -> move.fromZ)
+        .thenComparingInt(move -> move.fromY);
+
+    private final long section;
+    private final long[] nodes;
+    private final Long2IntOpenHashMap indexByCell;
+    private final int[][] edgeTargets;
+    private final int[][] edgeCosts;
+    private final long[][] exits; // Cells in other sections each node leads to, one move away
+
+    private SectionCluster(long section, long[] nodes, Long2IntOpenHashMap indexByCell, int[][] edgeTargets, int[][] edgeCosts, long[][] exits) {
+        this.section = section;
+        this.nodes = nodes;
+        this.indexByCell = indexByCell;
+        this.edgeTargets = edgeTargets;
+        this.edgeCosts = edgeCosts;
+        this.exits = exits;
+    }
+
+    /**
+     * Builds the section's graph from a snapshot covering it and its {@link #BUILD_MARGIN}.
+     * @param snapshot The blocks
+     * @param section The section, as {@link SectionPos#asLong}
+     * @param height Blocks of headroom mobs need
+     */
+    static SectionCluster build(CollisionSnapshot snapshot, long section, int height) {
+        int baseX = SectionPos.sectionToBlockCoord(SectionPos.x(section));
+        int baseY = SectionPos.sectionToBlockCoord(SectionPos.y(section));
+        int baseZ = SectionPos.sectionToBlockCoord(SectionPos.z(section));
+        List<Move> exitMoves = new ArrayList<>();
+        List<Move> entryMoves = new ArrayList<>();
+
+        // Moves out of the section
+        for (int x = baseX; x < baseX + 16; x++) {
+            for (int z = baseZ; z < baseZ + 16; z++) {
+                for (int y = baseY; y < baseY + 16; y++) {
+                    if (snapshot.isStandable(x, y, z, height)) {
+                        collectMoves(snapshot, x, y, z, height, section, false, exitMoves);
+                    }
+                }
+            }
+        }
+        // Moves into the section, from the ring of columns around it and from just above and below it
+        for (int x = baseX - 1; x <= baseX + 16; x++) {
+            for (int z = baseZ - 1; z <= baseZ + 16; z++) {
+                for (int y = baseY - 1; y <= baseY + 15 + CollisionSnapshot.MAX_DROP; y++) {
+                    if (SectionPos.asLong(SectionPos.blockToSectionCoord(x), SectionPos.blockToSectionCoord(y), SectionPos.blockToSectionCoord(z)) != section
+                            && snapshot.isStandable(x, y, z, height)) {
+                        collectMoves(snapshot, x, y, z, height, section, true, entryMoves);
+                    }
+                }
+            }
+        }
+
+        List<Move> exitPortals = portals(exitMoves);
+        List<Move> entryPortals = portals(entryMoves);
+        Long2IntOpenHashMap indexByCell = new Long2IntOpenHashMap();
+        indexByCell.defaultReturnValue(-1);
+        List<Long> cells = new ArrayList<>();
+        List<List<Long>> exitTargets = new ArrayList<>();
+        for (Move portal : entryPortals) {
+            nodeIndex(portal.to(), indexByCell, cells, exitTargets);
+        }
+        for (Move portal : exitPortals) {
+            int node = nodeIndex(portal.from(), indexByCell, cells, exitTargets);
+            exitTargets.get(node).add(portal.to());
+        }
+
+        long[] nodes = new long[cells.size()];
+        long[][] exits = new long[cells.size()][];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = cells.get(i);
+            exits[i] = exitTargets.get(i).stream().mapToLong(Long::longValue).toArray();
+        }
+        int[][] edgeTargets = new int[nodes.length][];
+        int[][] edgeCosts = new int[nodes.length][];
+        int[] distances = new int[16 * 16 * 16];
+        int[] queue = new int[16 * 16 * 16];
+        for (int i = 0; i < nodes.length; i++) {
+            walk(snapshot, baseX, baseY, baseZ, nodes[i], height, distances, queue);
+            IntArrayList targets = new IntArrayList();
+            IntArrayList costs = new IntArrayList();
+            for (int j = 0; j < nodes.length; j++) {
+                int distance = distances[localIndex(nodes[j], baseX, baseY, baseZ)];
+                if (j != i && distance > 0) {
+                    targets.add(j);
+                    costs.add(distance);
+                }
+            }
+            edgeTargets[i] = targets.toIntArray();
+            edgeCosts[i] = costs.toIntArray();
+        }
+        return new SectionCluster(section, nodes, indexByCell, edgeTargets, edgeCosts, exits);
+    }
+
+    long getSection() {
+        return section;
+    }
+
+    int getNodeCount() {
+        return nodes.length;
+    }
+
+    long getNode(int index) {
+        return nodes[index];
+    }
+
+    /**
+     * @return The index of the node in the block, or -1 if the block is not a node
+     */
+    int indexOf(long cell) {
+        return indexByCell.get(cell);
+    }
+
+    int[] getEdgeTargets(int node) {
+        return edgeTargets[node];
+    }
+
+    int[] getEdgeCosts(int node) {
+        return edgeCosts[node];
+    }
+
+    long[] getExits(int node) {
+        return exits[node];
+    }
+
+    /**
+     * Measures the walking distance inside the section from a block to every node.
+     * @return Distance per node, -1 for nodes that cannot be reached
+     */
+    int[] distancesFrom(CollisionSnapshot snapshot, BlockPos start, int height) {
+        int baseX = SectionPos.sectionToBlockCoord(SectionPos.x(section));
+        int baseY = SectionPos.sectionToBlockCoord(SectionPos.y(section));
+        int baseZ = SectionPos.sectionToBlockCoord(SectionPos.z(section));
+        int[] distances = new int[16 * 16 * 16];
+        walk(snapshot, baseX, baseY, baseZ, start.asLong(), height, distances, new int[16 * 16 * 16]);
+
+        int[] result = new int[nodes.length];
+        for (int i = 0; i < nodes.length; i++) {
+            int distance = distances[localIndex(nodes[i], baseX, baseY, baseZ)];
+            result[i] = nodes[i] == start.asLong() ? 0 : distance > 0 ? distance : -1;
+        }
+        return result;
+    }
+
+    /**
+     * Breadth-first walk inside the section. Distances are 0 for blocks that were not reached.
+     */
+    private static void walk(CollisionSnapshot snapshot, int baseX, int baseY, int baseZ, long start, int height, int[] distances, int[] queue) {
+        Arrays.fill(distances, 0);
+        int first = localIndex(start, baseX, baseY, baseZ);
+        queue[0] = first;
+        int head = 0;
+        int tail = 1;
+        while (head < tail) {
+            int cell = queue[head++];
+            int x = baseX + (cell & 15);
+            int z = baseZ + ((cell >> 4) & 15);
+            int y = baseY + (cell >> 8);
+            for (int direction = 0; direction < DIRECTION_X.length; direction++) {
+                int ny = snapshot.step(x, y, z, DIRECTION_X[direction], DIRECTION_Z[direction], height);
+                int nx = x + DIRECTION_X[direction];
+                int nz = z + DIRECTION_Z[direction];
+                if (ny == CollisionSnapshot.NO_STEP || nx < baseX || nx >= baseX + 16 || nz < baseZ || nz >= baseZ + 16
+                        || ny < baseY || ny >= baseY + 16) {
+                    continue;
+                }
+                int next = (nx - baseX) | (nz - baseZ) << 4 | (ny - baseY) << 8;
+                if (next != first && distances[next] == 0) {
+                    distances[next] = distances[cell] + 1;
+                    queue[tail++] = next;
+                }
+            }
+        }
+    }
+
+    private static int localIndex(long cell, int baseX, int baseY, int baseZ) {
+        return (BlockPos.getX(cell) - baseX) | (BlockPos.getZ(cell) - baseZ) << 4 | (BlockPos.getY(cell) - baseY) << 8;
+    }
+
+    private static void collectMoves(CollisionSnapshot snapshot, int x, int y, int z, int height, long section, boolean entering, List<Move> moves) {
+        long fromSection = SectionPos.asLong(SectionPos.blockToSectionCoord(x), SectionPos.blockToSectionCoord(y), SectionPos.blockToSectionCoord(z));
+        for (int direction = 0; direction < DIRECTION_X.length; direction++) {
+            int ny = snapshot.step(x, y, z, DIRECTION_X[direction], DIRECTION_Z[direction], height);
+            if (ny == CollisionSnapshot.NO_STEP) {
+                continue;
+            }
+            int nx = x + DIRECTION_X[direction];
+            int nz = z + DIRECTION_Z[direction];
+            long toSection = SectionPos.asLong(SectionPos.blockToSectionCoord(nx), SectionPos.blockToSectionCoord(ny), SectionPos.blockToSectionCoord(nz));
+            if (entering ? toSection == section : toSection != section) {
+                moves.add(new Move(fromSection, toSection, direction, x, y, z, nx, ny, nz));
+            }
+        }
+    }
+
+    /**
+     * Groups moves between the same two sections in the same direction whose starting blocks touch,
+     * and keeps the middle move of every group.
+     */
+    private static List<Move> portals(List<Move> moves) {
+        moves.sort(MOVE_ORDER);
+        List<Move> portals = new ArrayList<>();
+        int[] parent = new int[moves.size()];
+        for (int i = 0; i < parent.length; i++) {
+            parent[i] = i;
+        }
+        for (int i = 0; i < moves.size(); i++) {
+            Move move = moves.get(i);
+            for (int j = i + 1; j < moves.size(); j++) {
+                Move other = moves.get(j);
+                if (other.fromSection != move.fromSection || other.toSection != move.toSection || other.direction != move.direction) {
+                    break;
+                }
+                if (other.fromX > move.fromX + 1) {
+                    break; // Sorted by X first, no later move can touch this one
+                }
+                if (Math.abs(other.fromZ - move.fromZ) > 1) {
+                    continue;
+                }
+                if (Math.abs(other.fromY - move.fromY) <= 1) {
+                    union(parent, i, j);
+                }
+            }
+        }
+
+        List<List<Move>> groups = new ArrayList<>();
+        int[] groupOf = new int[moves.size()];
+        Arrays.fill(groupOf, -1);
+        for (int i = 0; i < moves.size(); i++) {
+            int root = find(parent, i);
+            if (groupOf[root] == -1) {
+                groupOf[root] = groups.size();
+                groups.add(new ArrayList<>());
+            }
+            groups.get(groupOf[root]).add(moves.get(i));
+        }
+        for (List<Move> group : groups) {
+            portals.add(group.get(group.size() / 2));
+        }
+        return portals;
+    }
+
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    private static void union(int[] parent, int a, int b) {
+        int rootA = find(parent, a);
+        int rootB = find(parent, b);
+        if (rootA != rootB) {
+            // The smaller index wins so grouping does not depend on the order of unions
+            parent[Math.max(rootA, rootB)] = Math.min(rootA, rootB);
+        }
+    }
+
+    private static int nodeIndex(long cell, Long2IntOpenHashMap indexByCell, List<Long> cells, List<List<Long>> exitTargets) {
+        int index = indexByCell.get(cell);
+        if (index == -1) {
+            index = cells.size();
+            indexByCell.put(cell, index);
+            cells.add(cell);
+            exitTargets.add(new ArrayList<>(1));
+        }
+        return index;
+    }
+
+    private record Move(long fromSection, long toSection, int direction, int fromX, int fromY, int fromZ, int toX, int toY, int toZ) {
+        long from() {
+            return BlockPos.asLong(fromX, fromY, fromZ);
+        }
+
+        long to() {
+            return BlockPos.asLong(toX, toY, toZ);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package ahjd.asgAI.custommobs.perception;
+
+import net.minecraft.world.entity.Mob;
+import org.bukkit.Bukkit;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Shares one neighbourhood query per mob per tick between all of its sensors.
+ * The sensor scheduler declares the widest range any attached sensor needs, the first sensor to
+ * run on a tick captures a {@link PerceptionSnapshot} with that radius, and every other sensor on
+ * the same tick filters the cached result. Sensors of one mob are phase aligned by the scheduler,
+ * so with stacked sensors this is one world query per mob no matter how many sensors it runs.
+ * Main thread only.
+ */
+public class PerceptionCache {
+    private final Map<Mob, Entry> entries = new WeakHashMap<>();
+
+    /**
+     * Sets the radius snapshots for this mob are captured with.
+     * @param mob The mob
+     * @param radius The widest range of the mob's sensors
+     */
+    public void setRadius(Mob mob, double radius) {
+        if (radius <= 0.0) {
+            entries.remove(mob);
+            return;
+        }
+        entries.computeIfAbsent(mob, key -> new Entry()).radius = radius;
+    }
+
+    /**
+     * Gets this tick's snapshot for the mob, capturing it on the first call of the tick.
+     * @param mob The mob doing the perceiving
+     * @param minRadius The range the caller needs, this tick's snapshot is widened if it is smaller
+     * @return The snapshot, valid until the end of the current tick
+     */
+    public PerceptionSnapshot get(Mob mob, double minRadius) {
+        Entry entry = entries.computeIfAbsent(mob, key -> new Entry());
+        // Only this tick's snapshot is widened, later ticks go back to the radius the scheduler set
+        double radius = Math.max(entry.radius, minRadius);
+
+        int tick = Bukkit.getCurrentTick();
+        PerceptionSnapshot snapshot = entry.snapshot;
+        if (snapshot.getTick() != tick || snapshot.getRadius() < radius) {
+            snapshot.capture(mob, radius, tick);
+        }
+        return snapshot;
+    }
+
+    public void remove(Mob mob) {
+        Entry entry = entries.remove(mob);
+        if (entry != null) {
+            entry.snapshot.clear();
+        }
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    private static final class Entry {
+        private final PerceptionSnapshot snapshot = new PerceptionSnapshot();
+        private double radius;
+    }
+}
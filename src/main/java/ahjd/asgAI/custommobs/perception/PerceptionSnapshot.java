@@ -0,0 +1,84 @@
+package ahjd.asgAI.custommobs.perception;
+
+import net.minecraft.world.entity.LivingEntity;
+import net.minecraft.world.entity.Mob;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The living entities around one mob as seen on one tick, ordered from nearest to farthest.
+ * Sensors read this instead of querying the level themselves and filter it by their own range and type.
+ * Instances are reused from tick to tick, so sensors must not keep a reference past their update.
+ */
+public class PerceptionSnapshot {
+    private final List<LivingEntity> entities = new ArrayList<>();
+    private double[] distancesSqr = new double[16];
+    private double radius;
+    private int tick = -1;
+
+    /**
+     * Gets the radius this snapshot was taken with. Entities farther away are not included.
+     * @return The snapshot radius in blocks
+     */
+    public double getRadius() {
+        return radius;
+    }
+
+    public int getTick() {
+        return tick;
+    }
+
+    public int size() {
+        return entities.size();
+    }
+
+    public LivingEntity get(int index) {
+        return entities.get(index);
+    }
+
+    public double distanceSqr(int index) {
+        return distancesSqr[index];
+    }
+
+    /**
+     * Counts the entities within the given range. Entities are sorted by distance, so
+     * indices below the returned value are exactly the ones in range.
+     * @param range Maximum distance from the mob
+     * @return The number of entities within range
+     */
+    public int countWithin(double range) {
+        double rangeSqr = range * range;
+        int count = 0;
+        while (count < entities.size() && distancesSqr[count] <= rangeSqr) {
+            count++;
+        }
+        return count;
+    }
+
+    void capture(Mob mob, double radius, int tick) {
+        entities.clear();
+        entities.addAll(mob.level().getEntitiesOfClass(
+            LivingEntity.class,
+            mob.getBoundingBox().inflate(radius),
+            entity -> entity != mob && entity.isAlive()
+        ));
+        entities.sort(Comparator.comparingDouble(mob::distanceToSqr));
+
+        if (distancesSqr.length < entities.size()) {
+            distancesSqr = new double[Math.max(entities.size(), distancesSqr.length * 2)];
+        }
+        for (int i = 0; i < entities.size(); i++) {
+            distancesSqr[i] = mob.distanceToSqr(entities.get(i));
+        }
+
+        this.radius = radius;
+        this.tick = tick;
+    }
+
+    void clear() {
+        entities.clear();
+        tick = -1;
+    }
+}
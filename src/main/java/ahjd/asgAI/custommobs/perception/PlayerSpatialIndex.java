@@ -0,0 +1,219 @@
+package ahjd.asgAI.custommobs.perception;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.world.entity.player.Player;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.Level;
+import org.bukkit.Bukkit;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Per-world grid of players that custom mobs may target (alive, not spectating, not in creative).
+ * Each world's grid is rebuilt at most once per tick, on the first query of that tick, and every
+ * AsgAI sensor and goal shares it instead of searching the level's entity lookup on its own.
+ * Creative players are kept in the grid as observers, they keep nearby AI active but are
+ * never returned by the targeting queries.
+ * Main thread only.
+ */
+public class PlayerSpatialIndex {
+    private static final int CELL_SHIFT = 4; // 16 block cells
+
+    private final Map<Level, Grid> grids = new WeakHashMap<>();
+
+    /**
+     * Finds the nearest eligible player within the given radius.
+     * @param level The level to search
+     * @param x Search center X
+     * @param y Search center Y
+     * @param z Search center Z
+     * @param radius Maximum distance to the player
+     * @return The nearest player, or null if none is in range
+     */
+    @Nullable
+    public Player getNearest(Level level, double x, double y, double z, double radius) {
+        return findNearest(level, x, y, z, radius, true);
+    }
+
+    /**
+     * Finds the nearest player that can see AI happen, including creative players.
+     * @param level The level to search
+     * @param x Search center X
+     * @param y Search center Y
+     * @param z Search center Z
+     * @param radius Maximum distance to the player
+     * @return The nearest observing player, or null if none is in range
+     */
+    @Nullable
+    public Player getNearestObserver(Level level, double x, double y, double z, double radius) {
+        return findNearest(level, x, y, z, radius, false);
+    }
+
+    @Nullable
+    private Player findNearest(Level level, double x, double y, double z, double radius, boolean targetableOnly) {
+        Grid grid = grid(level);
+        if (grid.players.isEmpty()) {
+            return null;
+        }
+
+        double radiusSqr = radius * radius;
+        Player nearest = null;
+        double nearestDistance = Double.MAX_VALUE;
+
+        if (grid.shouldScan(x, z, radius)) {
+            for (Player player : grid.players) {
+                if (targetableOnly && player.isCreative()) {
+                    continue;
+                }
+                double distance = player.distanceToSqr(x, y, z);
+                if (distance <= radiusSqr && distance < nearestDistance) {
+                    nearest = player;
+                    nearestDistance = distance;
+                }
+            }
+            return nearest;
+        }
+
+        int minX = floorCell(x - radius);
+        int maxX = floorCell(x + radius);
+        int minZ = floorCell(z - radius);
+        int maxZ = floorCell(z + radius);
+        for (int cellX = minX; cellX <= maxX; cellX++) {
+            for (int cellZ = minZ; cellZ <= maxZ; cellZ++) {
+                List<Player> cell = grid.cells.get(ChunkPos.asLong(cellX, cellZ));
+                if (cell == null) {
+                    continue;
+                }
+                for (int i = 0, size = cell.size(); i < size; i++) {
+                    Player player = cell.get(i);
+                    if (targetableOnly && player.isCreative()) {
+                        continue;
+                    }
+                    double distance = player.distanceToSqr(x, y, z);
+                    if (distance <= radiusSqr && distance < nearestDistance) {
+                        nearest = player;
+                        nearestDistance = distance;
+                    }
+                }
+            }
+        }
+        return nearest;
+    }
+
+    /**
+     * Visits every eligible player within the given radius, in no particular order.
+     * @param level The level to search
+     * @param x Search center X
+     * @param y Search center Y
+     * @param z Search center Z
+     * @param radius Maximum distance to the player
+     * @param consumer Called once per player in range
+     */
+    public void forEachInRange(Level level, double x, double y, double z, double radius, Consumer<Player> consumer) {
+        Grid grid = grid(level);
+        if (grid.players.isEmpty()) {
+            return;
+        }
+
+        double radiusSqr = radius * radius;
+        if (grid.shouldScan(x, z, radius)) {
+            for (Player player : grid.players) {
+                if (!player.isCreative() && player.distanceToSqr(x, y, z) <= radiusSqr) {
+                    consumer.accept(player);
+                }
+            }
+            return;
+        }
+
+        int minX = floorCell(x - radius);
+        int maxX = floorCell(x + radius);
+        int minZ = floorCell(z - radius);
+        int maxZ = floorCell(z + radius);
+        for (int cellX = minX; cellX <= maxX; cellX++) {
+            for (int cellZ = minZ; cellZ <= maxZ; cellZ++) {
+                List<Player> cell = grid.cells.get(ChunkPos.asLong(cellX, cellZ));
+                if (cell == null) {
+                    continue;
+                }
+                for (int i = 0, size = cell.size(); i < size; i++) {
+                    Player player = cell.get(i);
+                    if (!player.isCreative() && player.distanceToSqr(x, y, z) <= radiusSqr) {
+                        consumer.accept(player);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks whether any eligible player is within the given radius.
+     */
+    public boolean hasAnyInRange(Level level, double x, double y, double z, double radius) {
+        return getNearest(level, x, y, z, radius) != null;
+    }
+
+    /**
+     * Checks if the player can be perceived and targeted by custom mobs.
+     * @param player The player to check
+     * @return true if the player is alive, not spectating and not in creative mode
+     */
+    public static boolean isEligible(Player player) {
+        return player.isAlive() && !player.isSpectator() && !player.isCreative();
+    }
+
+    private Grid grid(Level level) {
+        Grid grid = grids.computeIfAbsent(level, key -> new Grid());
+        int tick = Bukkit.getCurrentTick();
+        if (grid.builtTick != tick) {
+            grid.rebuild(level, tick);
+        }
+        return grid;
+    }
+
+    private static int floorCell(double coordinate) {
+        return ((int) Math.floor(coordinate)) >> CELL_SHIFT;
+    }
+
+    private static final class Grid {
+        private final Long2ObjectOpenHashMap<ArrayList<Player>> cells = new Long2ObjectOpenHashMap<>();
+        private final List<ArrayList<Player>> pool = new ArrayList<>();
+        private final List<Player> players = new ArrayList<>();
+        private int builtTick = -1;
+
+        private void rebuild(Level level, int tick) {
+            // Keep the cell lists around, most players stay in the same cell tick to tick
+            for (ArrayList<Player> cell : cells.values()) {
+                cell.clear();
+                pool.add(cell);
+            }
+            cells.clear();
+            players.clear();
+
+            for (Player player : level.players()) {
+                if (!player.isAlive() || player.isSpectator()) {
+                    continue;
+                }
+                long key = ChunkPos.asLong(player.getBlockX() >> CELL_SHIFT, player.getBlockZ() >> CELL_SHIFT);
+                ArrayList<Player> cell = cells.get(key);
+                if (cell == null) {
+                    cell = pool.isEmpty() ? new ArrayList<>(4) : pool.remove(pool.size() - 1);
+                    cells.put(key, cell);
+                }
+                cell.add(player);
+                players.add(player);
+            }
+            builtTick = tick;
+        }
+
+        private boolean shouldScan(double x, double z, double radius) {
+            // Walking the cells only pays off when there are more players than cells to visit
+            long span = (floorCell(x + radius) - floorCell(x - radius) + 1L);
+            return span * span >= players.size();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package ahjd.asgAI.custommobs.profiler;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Optional instrumentation of the goals and sensors created from templates. Each goal call and
+ * sensor update is charged to a {@link ProfileTimer} keyed by what ran and the template of the mob,
+ * which keeps call counts and a latency histogram. Off by default, while off recording costs one
+ * volatile read per call.
+ */
+public class AIProfiler {
+    public static final String GOAL = "goal";
+    public static final String SENSOR = "sensor";
+
+    private final Map<String, ProfileTimer> timers = new ConcurrentHashMap<>();
+    private volatile boolean enabled;
+
+    public AIProfiler(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Gets the timer for a goal call or sensor, creating it on first use. Look it up once and keep it.
+     * @param category {@link #GOAL} or {@link #SENSOR}
+     * @param name The goal call or sensor name
+     * @param templateId The template of the mob, or null
+     * @return The timer
+     */
+    public ProfileTimer timer(String category, String name, String templateId) {
+        String template = templateId != null ? templateId : "-";
+        return timers.computeIfAbsent(category + '/' + name + '/' + template,
+            key -> new ProfileTimer(this, category, name, template));
+    }
+
+    /**
+     * Gets the timers that spent the most time in total.
+     * @param limit The maximum number of entries
+     * @return Snapshots of the timers that recorded calls, most total time first
+     */
+    public List<ProfileTimer.Snapshot> getTop(int limit) {
+        List<ProfileTimer.Snapshot> snapshots = new ArrayList<>();
+        for (ProfileTimer timer : timers.values()) {
+            ProfileTimer.Snapshot snapshot = timer.snapshot();
+            if (snapshot.calls() > 0) {
+                snapshots.add(snapshot);
+            }
+        }
+        snapshots.sort(Comparator.comparingLong(ProfileTimer.Snapshot::totalNanos).reversed());
+        return snapshots.size() > limit ? snapshots.subList(0, limit) : snapshots;
+    }
+
+    public void reset() {
+        for (ProfileTimer timer : timers.values()) {
+            timer.reset();
+        }
+    }
+}
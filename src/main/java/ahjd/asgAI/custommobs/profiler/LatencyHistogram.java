@@ -0,0 +1,58 @@
+package ahjd.asgAI.custommobs.profiler;
+
+import java.util.Arrays;
+
+/**
+ * Log-linear histogram of call latencies. Every power of two is split into four buckets, so a
+ * percentile read from it is within 25% of the real value. Written by a single thread.
+ */
+final class LatencyHistogram {
+    static final int SUB_BITS = 2;
+    static final int BUCKETS = 64 << SUB_BITS;
+
+    final long[] buckets = new long[BUCKETS];
+    long count;
+    long totalNanos;
+    long maxNanos;
+
+    void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        buckets[bucketOf(nanos)]++;
+        count++;
+        totalNanos += nanos;
+        if (nanos > maxNanos) {
+            maxNanos = nanos;
+        }
+    }
+
+    void reset() {
+        Arrays.fill(buckets, 0);
+        count = 0;
+        totalNanos = 0;
+        maxNanos = 0;
+    }
+
+    static int bucketOf(long nanos) {
+        if (nanos < (1 << SUB_BITS)) {
+            return (int) nanos;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int sub = (int) (nanos >>> (exponent - SUB_BITS)) & ((1 << SUB_BITS) - 1);
+        return ((exponent - SUB_BITS + 1) << SUB_BITS) + sub;
+    }
+
+    /**
+     * Gets the largest value that falls into the bucket.
+     */
+    static long upperBoundOf(int bucket) {
+        if (bucket < (1 << SUB_BITS)) {
+            return bucket;
+        }
+        int exponent = (bucket >> SUB_BITS) + SUB_BITS - 1;
+        long sub = bucket & ((1 << SUB_BITS) - 1);
+        long lower = ((1L << SUB_BITS) | sub) << (exponent - SUB_BITS);
+        return lower + (1L << (exponent - SUB_BITS)) - 1;
+    }
+}
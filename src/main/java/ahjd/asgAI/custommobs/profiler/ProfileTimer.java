@@ -0,0 +1,99 @@
+package ahjd.asgAI.custommobs.profiler;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Latency counters for one goal or sensor of one template. Callers look the timer up once and keep
+ * it, recording is then a flag check plus an update of a histogram owned by the calling thread.
+ */
+public final class ProfileTimer {
+    private final AIProfiler profiler;
+    private final String category;
+    private final String name;
+    private final String templateId;
+    private final List<LatencyHistogram> shards = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<LatencyHistogram> local = ThreadLocal.withInitial(this::newShard);
+
+    ProfileTimer(AIProfiler profiler, String category, String name, String templateId) {
+        this.profiler = profiler;
+        this.category = category;
+        this.name = name;
+        this.templateId = templateId;
+    }
+
+    private LatencyHistogram newShard() {
+        LatencyHistogram shard = new LatencyHistogram();
+        shards.add(shard);
+        return shard;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getTemplateId() {
+        return templateId;
+    }
+
+    /**
+     * Records one call. Does nothing while the profiler is off.
+     * @param nanos How long the call took
+     */
+    public void record(long nanos) {
+        if (profiler.isEnabled()) {
+            local.get().record(nanos);
+        }
+    }
+
+    /**
+     * Merges the counters of every thread. Counts being written at the same time may be slightly off.
+     * @return The merged counters
+     */
+    public Snapshot snapshot() {
+        long[] buckets = new long[LatencyHistogram.BUCKETS];
+        long count = 0;
+        long total = 0;
+        long max = 0;
+        for (LatencyHistogram shard : shards) {
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] += shard.buckets[i];
+            }
+            count += shard.count;
+            total += shard.totalNanos;
+            max = Math.max(max, shard.maxNanos);
+        }
+        return new Snapshot(this, count, total, percentile(buckets, count, 0.50), percentile(buckets, count, 0.99), max);
+    }
+
+    void reset() {
+        for (LatencyHistogram shard : shards) {
+            shard.reset();
+        }
+    }
+
+    private static long percentile(long[] buckets, long count, double fraction) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(count * fraction);
+        long seen = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            seen += buckets[i];
+            if (seen >= rank) {
+                return LatencyHistogram.upperBoundOf(i);
+            }
+        }
+        return LatencyHistogram.upperBoundOf(buckets.length - 1);
+    }
+
+    /**
+     * Counters of a timer at one point in time, latencies in nanoseconds.
+     */
+    public record Snapshot(ProfileTimer timer, long calls, long totalNanos, long p50Nanos, long p99Nanos, long maxNanos) {
+    }
+}
@@ -0,0 +1,84 @@
+package ahjd.asgAI.custommobs.sensors;
+
+import ahjd.asgAI.custommobs.ActivationLevel;
+import ahjd.asgAI.custommobs.CustomMobInstance;
+import ahjd.asgAI.custommobs.CustomMobManager;
+import ahjd.asgAI.custommobs.TemplatePlan;
+import net.minecraft.world.entity.Mob;
+import net.minecraft.world.entity.ai.goal.GoalSelector;
+import net.minecraft.world.entity.ai.goal.WrappedGoal;
+import net.minecraft.world.entity.player.Player;
+
+/**
+ * Internal sensor that moves a custom mob between {@link ActivationLevel}s as players come and go.
+ * It is attached by the manager to every mob whose template uses activation ranges and is exempt
+ * from both the governor and freezing, so it keeps running while the rest of the mob's AI is parked.
+ * Freezing stops running goals and navigation and marks the mob unaware, which makes the server
+ * skip its goal selectors entirely. Waking marks it aware again and resumes its parked sensors,
+ * so every goal starts over from a fresh canUse check.
+ */
+public class ActivationSensor implements CustomSensor {
+
+    @Override
+    public void attachToMob(Mob mob) {
+        CustomMobManager.getInstance().getSensorScheduler().scheduleExempt(mob, this);
+    }
+
+    @Override
+    public void update(Mob mob) {
+        CustomMobManager manager = CustomMobManager.getInstance();
+        CustomMobInstance instance = manager.getCustomMob(mob.getUUID());
+        if (instance == null) {
+            return;
+        }
+
+        ActivationLevel previous = instance.getActivationLevel();
+        ActivationLevel level = classify(mob, instance.getPlan());
+        if (level == previous) {
+            return;
+        }
+
+        instance.setActivationLevel(level);
+        if (level == ActivationLevel.FROZEN) {
+            freeze(mob);
+        } else if (previous == ActivationLevel.FROZEN) {
+            mob.aware = true;
+            manager.getSensorScheduler().resume(mob);
+        }
+    }
+
+    private ActivationLevel classify(Mob mob, TemplatePlan plan) {
+        Player nearest = CustomMobManager.getInstance().getPlayerIndex().getNearestObserver(
+            mob.level(), mob.getX(), mob.getY(), mob.getZ(), plan.getReducedActivationRange());
+        if (nearest == null) {
+            return ActivationLevel.FROZEN;
+        }
+        double fullRange = plan.getFullActivationRange();
+        return mob.distanceToSqr(nearest) <= fullRange * fullRange ? ActivationLevel.FULL : ActivationLevel.REDUCED;
+    }
+
+    private void freeze(Mob mob) {
+        stopRunningGoals(mob.goalSelector);
+        stopRunningGoals(mob.targetSelector);
+        mob.getNavigation().stop();
+        mob.aware = false;
+    }
+
+    private void stopRunningGoals(GoalSelector selector) {
+        for (WrappedGoal goal : selector.getAvailableGoals()) {
+            if (goal.isRunning()) {
+                goal.stop();
+            }
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "activation_sensor";
+    }
+
+    @Override
+    public String getDescription() {
+        return "Switches the mob's AI level of detail based on the distance to the nearest player";
+    }
+}
@@ -1,17 +1,20 @@
 package ahjd.asgAI.custommobs.sensors;
 
+import ahjd.asgAI.custommobs.CustomMobManager;
+import ahjd.asgAI.custommobs.perception.PerceptionSnapshot;
+import net.minecraft.world.entity.LivingEntity;
 import net.minecraft.world.entity.Mob;
 import net.minecraft.world.entity.monster.Enemy;
-import org.bukkit.Bukkit;
-import org.bukkit.scheduler.BukkitTask;
 
 import java.util.List;
-import java.util.WeakHashMap;
 
+/**
+ * Targets the closest, or optionally the strongest, hostile mob in range.
+ * In a cluster the leader captures one widened perception snapshot and every member picks its target from it.
+ */
 public class CustomHostileSensor implements CustomSensor {
     private final double detectionRange;
     private final boolean targetStrongestEnemy;
-    private static final WeakHashMap<Mob, BukkitTask> activeTasks = new WeakHashMap<>();
     
     public CustomHostileSensor() {
         this(12.0, false);
@@ -22,53 +25,87 @@ public class CustomHostileSensor implements CustomSensor {
         this.targetStrongestEnemy = targetStrongestEnemy;
     }
     
-    @Override
-    public void attachToMob(Mob mob) {
-        BukkitTask task = Bukkit.getScheduler().runTaskTimer(
-            ahjd.asgAI.AsgAI.getInstance(),
-            () -> update(mob),
-            0L,
-            getUpdateInterval()
-        );
-        activeTasks.put(mob, task);
-    }
-    
     @Override
     public void update(Mob mob) {
         if (mob == null || !mob.isAlive()) {
             return;
         }
         
-        // Find nearby hostile entities
-        List<Mob> nearbyHostiles = mob.level().getEntitiesOfClass(
-            Mob.class,
-            mob.getBoundingBox().inflate(detectionRange),
-            target -> target instanceof Enemy && 
-                     target != mob && 
-                     target.isAlive() &&
-                     !isSameType(mob, target)
-        );
+        // Filter the shared perception snapshot, it is sorted nearest first
+        PerceptionSnapshot snapshot = CustomMobManager.getInstance().getPerception().get(mob, detectionRange);
+        Mob targetEnemy = selectTarget(mob, snapshot);
         
-        if (!nearbyHostiles.isEmpty()) {
-            Mob targetEnemy = selectTarget(nearbyHostiles);
+        if (targetEnemy != null) {
             onHostileDetected(mob, targetEnemy);
         }
     }
     
+    @Override
+    public boolean supportsClusterSharing() {
+        return true;
+    }
+    
+    @Override
+    public void updateCluster(Mob leader, List<Mob> members, double margin) {
+        PerceptionSnapshot snapshot = CustomMobManager.getInstance().getPerception().get(leader, detectionRange + margin);
+        for (Mob member : members) {
+            if (!member.isAlive()) {
+                continue;
+            }
+            Mob targetEnemy = selectTargetFor(member, snapshot);
+            if (targetEnemy != null) {
+                onHostileDetected(member, targetEnemy);
+            }
+        }
+    }
+    
+    /**
+     * Picks the target of a member from the leader's snapshot, measuring distances from the member.
+     */
+    private Mob selectTargetFor(Mob member, PerceptionSnapshot snapshot) {
+        double rangeSqr = detectionRange * detectionRange;
+        Mob selected = null;
+        double selectedDistance = Double.MAX_VALUE;
+        for (int i = 0, size = snapshot.size(); i < size; i++) {
+            LivingEntity entity = snapshot.get(i);
+            if (!(entity instanceof Mob target) || !(target instanceof Enemy) || isSameType(member, target)) {
+                continue;
+            }
+            double distance = member.distanceToSqr(target);
+            if (distance > rangeSqr) {
+                continue;
+            }
+            if (targetStrongestEnemy
+                    ? selected == null || target.getHealth() > selected.getHealth()
+                    : distance < selectedDistance) {
+                selected = target;
+                selectedDistance = distance;
+            }
+        }
+        return selected;
+    }
+    
     private boolean isSameType(Mob mob1, Mob mob2) {
         return mob1.getClass().equals(mob2.getClass());
     }
     
-    private Mob selectTarget(List<Mob> hostiles) {
-        if (targetStrongestEnemy) {
+    private Mob selectTarget(Mob mob, PerceptionSnapshot snapshot) {
+        Mob selected = null;
+        for (int i = 0, count = snapshot.countWithin(detectionRange); i < count; i++) {
+            LivingEntity entity = snapshot.get(i);
+            if (!(entity instanceof Mob target) || !(target instanceof Enemy) || isSameType(mob, target)) {
+                continue;
+            }
+            if (!targetStrongestEnemy) {
+                // Target the closest enemy
+                return target;
+            }
             // Target the enemy with highest health
-            return hostiles.stream()
-                .max((a, b) -> Float.compare(a.getHealth(), b.getHealth()))
-                .orElse(hostiles.get(0));
-        } else {
-            // Target the closest enemy
-            return hostiles.get(0);
+            if (selected == null || target.getHealth() > selected.getHealth()) {
+                selected = target;
+            }
         }
+        return selected;
     }
     
     private void onHostileDetected(Mob mob, Mob hostile) {
@@ -79,11 +116,8 @@ public class CustomHostileSensor implements CustomSensor {
     }
     
     @Override
-    public void detachFromMob(Mob mob) {
-        BukkitTask task = activeTasks.remove(mob);
-        if (task != null) {
-            task.cancel();
-        }
+    public double getDetectionRange() {
+        return detectionRange;
     }
     
     @Override
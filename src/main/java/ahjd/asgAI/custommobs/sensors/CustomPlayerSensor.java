@@ -1,17 +1,23 @@
 package ahjd.asgAI.custommobs.sensors;
 
+import ahjd.asgAI.custommobs.CustomMobManager;
+import ahjd.asgAI.custommobs.squads.Squad;
 import net.minecraft.world.entity.Mob;
 import net.minecraft.world.entity.player.Player;
-import org.bukkit.Bukkit;
-import org.bukkit.scheduler.BukkitTask;
 
+import java.util.ArrayList;
 import java.util.List;
-import java.util.WeakHashMap;
 
+/**
+ * Targets the nearest player in range. With alerting enabled, a detection is broadcast
+ * to the mob's squad, which informs every idle member and ignores repeats. Mobs outside a
+ * squad alert the idle mobs of the same type around them instead.
+ * In a cluster the leader looks up the players in range of any member once, and every member
+ * reacts to the nearest of them.
+ */
 public class CustomPlayerSensor implements CustomSensor {
     private final double detectionRange;
     private final boolean alertOnDetection;
-    private static final WeakHashMap<Mob, BukkitTask> activeTasks = new WeakHashMap<>();
     
     public CustomPlayerSensor() {
         this(16.0, false);
@@ -22,33 +28,56 @@ public class CustomPlayerSensor implements CustomSensor {
         this.alertOnDetection = alertOnDetection;
     }
     
-    @Override
-    public void attachToMob(Mob mob) {
-        // Create a repeating task to check for players
-        BukkitTask task = Bukkit.getScheduler().runTaskTimer(
-            ahjd.asgAI.AsgAI.getInstance(),
-            () -> update(mob),
-            0L,
-            getUpdateInterval()
-        );
-        activeTasks.put(mob, task);
-    }
-    
     @Override
     public void update(Mob mob) {
         if (mob == null || !mob.isAlive()) {
             return;
         }
         
-        // Find nearby players
-        List<Player> nearbyPlayers = mob.level().getEntitiesOfClass(
-            Player.class,
-            mob.getBoundingBox().inflate(detectionRange),
-            player -> !player.isSpectator() && !player.isCreative()
+        // Find the closest player through the shared per-world index
+        Player nearestPlayer = CustomMobManager.getInstance().getPlayerIndex().getNearest(
+            mob.level(), mob.getX(), mob.getY(), mob.getZ(), detectionRange
         );
 
-        if (!nearbyPlayers.isEmpty()) {
-            onPlayerDetected(mob, nearbyPlayers.get(0)); // Target closest player
+        if (nearestPlayer != null) {
+            onPlayerDetected(mob, nearestPlayer);
+        }
+    }
+    
+    @Override
+    public boolean supportsClusterSharing() {
+        return true;
+    }
+    
+    @Override
+    public void updateCluster(Mob leader, List<Mob> members, double margin) {
+        // One lookup covers the range of every member, each member then picks its own nearest candidate
+        List<Player> candidates = new ArrayList<>(4);
+        CustomMobManager.getInstance().getPlayerIndex().forEachInRange(
+            leader.level(), leader.getX(), leader.getY(), leader.getZ(), detectionRange + margin, candidates::add
+        );
+        if (candidates.isEmpty()) {
+            return;
+        }
+        
+        double rangeSqr = detectionRange * detectionRange;
+        for (Mob member : members) {
+            if (!member.isAlive()) {
+                continue;
+            }
+            Player nearestPlayer = null;
+            double nearestDistance = rangeSqr;
+            for (int i = 0, size = candidates.size(); i < size; i++) {
+                Player candidate = candidates.get(i);
+                double distance = member.distanceToSqr(candidate);
+                if (distance <= nearestDistance) {
+                    nearestPlayer = candidate;
+                    nearestDistance = distance;
+                }
+            }
+            if (nearestPlayer != null) {
+                onPlayerDetected(member, nearestPlayer);
+            }
         }
     }
     
@@ -59,7 +88,12 @@ public class CustomPlayerSensor implements CustomSensor {
         }
 
         if (alertOnDetection) {
-            // Alert nearby mobs of the same type
+            Squad squad = CustomMobManager.getInstance().getSquads().getSquad(mob);
+            if (squad != null) {
+                squad.alert(mob, player);
+                return;
+            }
+            // Mobs outside a squad alert nearby idle mobs of the same type
             List<Mob> nearbyMobs = mob.level().getEntitiesOfClass(
                     Mob.class,
                     mob.getBoundingBox().inflate(detectionRange * 2),
@@ -74,11 +108,9 @@ public class CustomPlayerSensor implements CustomSensor {
     }
     
     @Override
-    public void detachFromMob(Mob mob) {
-        BukkitTask task = activeTasks.remove(mob);
-        if (task != null) {
-            task.cancel();
-        }
+    public double getWakeRange() {
+        // Players come from the player index, so the perception snapshot does not need to cover this range
+        return detectionRange;
     }
     
     @Override
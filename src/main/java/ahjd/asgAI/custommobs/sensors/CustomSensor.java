@@ -1,6 +1,10 @@
 package ahjd.asgAI.custommobs.sensors;
 
+import ahjd.asgAI.custommobs.CustomMobManager;
 import net.minecraft.world.entity.Mob;
+import org.bukkit.persistence.PersistentDataContainer;
+
+import java.util.List;
 
 /**
  * Base interface for custom sensors that can be applied to mobs
@@ -9,10 +13,14 @@ import net.minecraft.world.entity.Mob;
 public interface CustomSensor {
     
     /**
-     * Attaches this sensor to the given mob
+     * Attaches this sensor to the given mob.
+     * By default the sensor is handed to the shared {@link SensorScheduler}, which calls
+     * {@link #update(Mob)} every {@link #getUpdateInterval()} ticks until the mob dies.
      * @param mob The mob to attach the sensor to
      */
-    void attachToMob(Mob mob);
+    default void attachToMob(Mob mob) {
+        CustomMobManager.getInstance().getSensorScheduler().schedule(mob, this);
+    }
     
     /**
      * Updates the sensor logic - called periodically
@@ -20,6 +28,29 @@ public interface CustomSensor {
      */
     void update(Mob mob);
     
+    /**
+     * Checks if this sensor can sense once for a whole cluster of co-located mobs of the same template.
+     * Sensors that return true must implement {@link #updateCluster(Mob, List, double)}.
+     * @return true if followers may reuse what the leader sensed
+     */
+    default boolean supportsClusterSharing() {
+        return false;
+    }
+    
+    /**
+     * Updates the sensor once for a cluster, called on the leader's schedule instead of {@link #update(Mob)}
+     * for every member. The leader has to look {@code margin} blocks farther than usual, which covers
+     * the range of every member.
+     * @param leader The mob sensing for the cluster
+     * @param members Every member of the cluster, the leader included
+     * @param margin Extra range that covers every member
+     */
+    default void updateCluster(Mob leader, List<Mob> members, double margin) {
+        for (Mob member : members) {
+            update(member);
+        }
+    }
+    
     /**
      * Gets the name/identifier of this sensor type
      * @return The sensor name
@@ -42,6 +73,25 @@ public interface CustomSensor {
         return 20; // Default to 1 second
     }
     
+    /**
+     * Gets the range this sensor perceives around the mob, in blocks.
+     * The shared perception snapshot of a mob is captured with the widest range of its sensors.
+     * @return The detection range, or 0 if this sensor does not read the perception snapshot
+     */
+    default double getDetectionRange() {
+        return 0.0;
+    }
+    
+    /**
+     * Gets the range around the mob in which changes wake this sensor when it runs event driven.
+     * Defaults to the detection range, sensors that look up their surroundings without the perception
+     * snapshot return their own range here.
+     * @return The wake range, or 0 if nothing nearby should wake this sensor
+     */
+    default double getWakeRange() {
+        return getDetectionRange();
+    }
+    
     /**
      * Checks if this sensor can be applied to the given mob type
      * @param mob The mob to check
@@ -51,11 +101,28 @@ public interface CustomSensor {
         return true;
     }
     
+    /**
+     * Writes the per-mob state of this sensor before the mob is hibernated with its chunk.
+     * Entity ids are not stable across unloads, refer to other entities by UUID.
+     * @param mob The mob the sensor is attached to
+     * @param state Container owned by this sensor, left empty if there is nothing to keep
+     */
+    default void saveState(Mob mob, PersistentDataContainer state) {
+    }
+    
+    /**
+     * Restores the per-mob state of this sensor after the mob was rehydrated and the sensor attached again.
+     * @param mob The mob the sensor is attached to
+     * @param state Container written by {@link #saveState(Mob, PersistentDataContainer)}
+     */
+    default void loadState(Mob mob, PersistentDataContainer state) {
+    }
+    
     /**
      * Called when the sensor is removed from a mob
      * @param mob The mob the sensor is being removed from
      */
     default void detachFromMob(Mob mob) {
-        // Default implementation does nothing
+        CustomMobManager.getInstance().getSensorScheduler().unschedule(mob, this);
     }
 }
\ No newline at end of file
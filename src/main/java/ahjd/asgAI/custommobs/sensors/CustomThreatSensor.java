@@ -1,42 +1,69 @@
 package ahjd.asgAI.custommobs.sensors;
 
+import ahjd.asgAI.AsgAI;
+import ahjd.asgAI.custommobs.CustomMobManager;
+import ahjd.asgAI.custommobs.perception.PerceptionSnapshot;
+import ahjd.asgAI.custommobs.squads.Squad;
+import net.minecraft.world.entity.Entity;
 import net.minecraft.world.entity.LivingEntity;
+import net.minecraft.server.level.ServerLevel;
 import net.minecraft.world.entity.Mob;
+import net.minecraft.world.entity.ai.attributes.Attributes;
 import net.minecraft.world.entity.player.Player;
 import org.bukkit.Bukkit;
-import org.bukkit.scheduler.BukkitTask;
+import org.bukkit.NamespacedKey;
+import org.bukkit.persistence.PersistentDataContainer;
+import org.bukkit.persistence.PersistentDataType;
 
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.UUID;
 import java.util.WeakHashMap;
 
+/**
+ * Tracks how threatening nearby entities are and targets the most threatening one.
+ * Each update only captures an immutable snapshot of the relevant entity state on the main thread.
+ * Scoring, bookkeeping and target selection run on the AsgAI worker pool, and the resulting target
+ * decision is committed back on the main thread on a later tick. Threat fades lazily along the
+ * sensor's {@link ThreatDecay} curve, independent of how often the sensor runs. Mobs in a squad
+ * report their highest threat to the squad blackboard and alert the squad when they pick a target.
+ */
 public class CustomThreatSensor implements CustomSensor {
+    private static final int TARGET_THRESHOLD = 20; // Minimum threat before a target is picked
+    private static final int NO_TARGET = ThreatTable.NONE;
+    private static final int SAVED_ENTRY_BYTES = 20; // UUID and threat level
+    
     private final double detectionRange;
     private final int maxThreatLevel;
-    private static final WeakHashMap<Mob, BukkitTask> activeTasks = new WeakHashMap<>();
-    private static final WeakHashMap<Mob, Map<LivingEntity, Integer>> threatLevels = new WeakHashMap<>();
+    private final int maxTrackedEntities;
+    private final ThreatDecay decay;
+    private static final WeakHashMap<Mob, ThreatState> threatStates = new WeakHashMap<>();
     
     public CustomThreatSensor() {
         this(20.0, 100);
     }
     
     public CustomThreatSensor(double detectionRange, int maxThreatLevel) {
+        this(detectionRange, maxThreatLevel, 32, ThreatDecay.linear(5, 20));
+    }
+    
+    /**
+     * @param detectionRange Range entities are assessed in
+     * @param maxThreatLevel Upper bound of a single entity's threat level
+     * @param maxTrackedEntities How many entities a mob remembers, the least threatening is forgotten first
+     * @param decay How threat fades while an entity is not re-assessed
+     */
+    public CustomThreatSensor(double detectionRange, int maxThreatLevel, int maxTrackedEntities, ThreatDecay decay) {
         this.detectionRange = detectionRange;
         this.maxThreatLevel = maxThreatLevel;
+        this.maxTrackedEntities = maxTrackedEntities;
+        this.decay = decay;
     }
     
     @Override
     public void attachToMob(Mob mob) {
-        threatLevels.put(mob, new HashMap<>());
-        
-        BukkitTask task = Bukkit.getScheduler().runTaskTimer(
-            ahjd.asgAI.AsgAI.getInstance(),
-            () -> update(mob),
-            0L,
-            getUpdateInterval()
-        );
-        activeTasks.put(mob, task);
+        threatStates.put(mob, new ThreatState(maxTrackedEntities, decay));
+        CustomSensor.super.attachToMob(mob);
     }
     
     @Override
@@ -45,74 +72,142 @@ public class CustomThreatSensor implements CustomSensor {
             return;
         }
         
-        Map<LivingEntity, Integer> mobThreatLevels = threatLevels.get(mob);
-        if (mobThreatLevels == null) {
+        ThreatState state = threatStates.get(mob);
+        if (state == null || state.inFlight) {
+            // The previous assessment has not been committed yet
             return;
         }
         
-        // Find nearby entities
-        List<LivingEntity> nearbyEntities = mob.level().getEntitiesOfClass(
-            LivingEntity.class,
-            mob.getBoundingBox().inflate(detectionRange),
-            entity -> entity != mob && entity.isAlive()
+        ThreatSnapshot snapshot = captureSnapshot(mob);
+        state.inFlight = true;
+        CustomMobManager.getInstance().getWorkerPool().submit(
+            () -> assess(state, snapshot),
+            assessment -> commit(mob, state, snapshot, assessment)
         );
+    }
+    
+    /**
+     * Copies everything the threat assessment needs out of the live entities. Main thread only.
+     */
+    private ThreatSnapshot captureSnapshot(Mob mob) {
+        PerceptionSnapshot perception = CustomMobManager.getInstance().getPerception().get(mob, detectionRange);
+        int nearbyCount = perception.countWithin(detectionRange);
+        ThreatCandidate[] candidates = new ThreatCandidate[nearbyCount];
         
-        // Update threat levels
-        for (LivingEntity entity : nearbyEntities) {
-            int currentThreat = mobThreatLevels.getOrDefault(entity, 0);
-            int newThreat = calculateThreatLevel(mob, entity);
+        for (int i = 0; i < nearbyCount; i++) {
+            LivingEntity entity = perception.get(i);
+            boolean isPlayer = entity instanceof Player;
+            boolean armed = false;
+            boolean passive = false;
+            double attackDamage = 0.0;
+            boolean targetingMob = false;
+            
+            if (entity instanceof Player player) {
+                armed = !player.getMainHandItem().isEmpty();
+                passive = player.isCreative() || player.isSpectator();
+            } else if (entity instanceof Mob otherMob) {
+                if (otherMob.getAttribute(Attributes.ATTACK_DAMAGE) != null) {
+                    attackDamage = otherMob.getAttributeValue(Attributes.ATTACK_DAMAGE);
+                }
+                targetingMob = otherMob.getTarget() == mob;
+            }
             
-            mobThreatLevels.put(entity, Math.min(maxThreatLevel, Math.max(0, currentThreat + newThreat)));
+            candidates[i] = new ThreatCandidate(
+                entity.getId(),
+                isPlayer,
+                armed,
+                passive,
+                attackDamage,
+                Math.sqrt(perception.distanceSqr(i)),
+                entity.getHealth() / entity.getMaxHealth(),
+                targetingMob
+            );
         }
         
-        // Decay threat levels for entities not nearby
-        mobThreatLevels.entrySet().removeIf(entry -> {
-            if (!nearbyEntities.contains(entry.getKey())) {
-                entry.setValue(Math.max(0, entry.getValue() - 5)); // Decay by 5 per update
-                return entry.getValue() <= 0;
+        LivingEntity currentTarget = mob.getTarget();
+        return new ThreatSnapshot(Bukkit.getCurrentTick(), currentTarget != null ? currentTarget.getId() : NO_TARGET, candidates);
+    }
+    
+    /**
+     * Updates the threat levels from a snapshot and picks the target. Runs on a worker thread.
+     */
+    private ThreatAssessment assess(ThreatState state, ThreatSnapshot snapshot) {
+        synchronized (state) {
+            ThreatTable table = state.table;
+            long now = snapshot.tick();
+            
+            // Update threat levels, entities out of range simply keep decaying
+            for (ThreatCandidate candidate : snapshot.candidates()) {
+                table.add(candidate.entityId(), calculateThreatLevel(candidate), maxThreatLevel, now);
             }
-            return false;
-        });
+            
+            // Select highest threat target
+            int highestId = table.highest(TARGET_THRESHOLD, now);
+            int highestThreat = highestId != NO_TARGET ? table.get(highestId, now) : 0;
+            if (highestId != NO_TARGET && (snapshot.currentTargetId() == NO_TARGET
+                    || table.get(snapshot.currentTargetId(), now) < highestThreat)) {
+                return new ThreatAssessment(highestId, highestThreat);
+            }
+            return new ThreatAssessment(NO_TARGET, highestThreat);
+        }
+    }
+    
+    /**
+     * Applies the decision of an assessment. Main thread only.
+     */
+    private void commit(Mob mob, ThreatState state, ThreatSnapshot snapshot, ThreatAssessment assessment) {
+        state.inFlight = false;
+        if (assessment == null || !mob.isAlive() || mob.isRemoved()) {
+            return;
+        }
         
-        // Select highest threat target
-        LivingEntity highestThreat = mobThreatLevels.entrySet().stream()
-            .filter(entry -> entry.getValue() > 20) // Minimum threat threshold
-            .max(Map.Entry.comparingByValue())
-            .map(Map.Entry::getKey)
-            .orElse(null);
+        Squad squad = CustomMobManager.getInstance().getSquads().getSquad(mob);
+        if (squad != null) {
+            squad.getBlackboard().reportThreat(mob, assessment.highestThreat());
+        }
+        if (assessment.targetId() == NO_TARGET) {
+            return;
+        }
         
-        if (highestThreat != null && (mob.getTarget() == null || 
-            mobThreatLevels.getOrDefault(mob.getTarget(), 0) < mobThreatLevels.get(highestThreat))) {
-            mob.setTarget(highestThreat);
+        // Someone else changed the target in the meantime, the decision is stale
+        LivingEntity currentTarget = mob.getTarget();
+        int currentTargetId = currentTarget != null ? currentTarget.getId() : NO_TARGET;
+        if (currentTargetId != snapshot.currentTargetId()) {
+            return;
+        }
+        
+        Entity target = mob.level().getEntity(assessment.targetId());
+        if (target instanceof LivingEntity livingTarget && livingTarget.isAlive()) {
+            mob.setTarget(livingTarget);
+            if (squad != null) {
+                squad.alert(mob, livingTarget);
+            }
         }
     }
     
-    private int calculateThreatLevel(Mob mob, LivingEntity entity) {
+    private int calculateThreatLevel(ThreatCandidate candidate) {
         int threat = 0;
         
         // Base threat based on entity type
-        if (entity instanceof Player player) {
+        if (candidate.player()) {
             threat += 15;
             
             // Higher threat for players with weapons
-            if (!player.getMainHandItem().isEmpty()) {
+            if (candidate.armed()) {
                 threat += 10;
             }
             
             // Higher threat for players in creative/spectator
-            if (player.isCreative() || player.isSpectator()) {
+            if (candidate.passive()) {
                 threat -= 20; // Lower threat for non-threatening players
             }
-        } else if (entity instanceof Mob otherMob) {
+        } else {
             // Threat based on other mob's attack damage
-            if (otherMob.getAttribute(net.minecraft.world.entity.ai.attributes.Attributes.ATTACK_DAMAGE) != null) {
-                double attackDamage = otherMob.getAttributeValue(net.minecraft.world.entity.ai.attributes.Attributes.ATTACK_DAMAGE);
-                threat += (int) (attackDamage * 2);
-            }
+            threat += (int) (candidate.attackDamage() * 2);
         }
         
         // Distance factor - closer entities are more threatening
-        double distance = mob.distanceTo(entity);
+        double distance = candidate.distance();
         if (distance < 5.0) {
             threat += 10;
         } else if (distance < 10.0) {
@@ -120,13 +215,12 @@ public class CustomThreatSensor implements CustomSensor {
         }
         
         // Health factor - injured entities are less threatening
-        float healthPercent = entity.getHealth() / entity.getMaxHealth();
-        if (healthPercent < 0.5f) {
+        if (candidate.healthPercent() < 0.5f) {
             threat -= 5;
         }
         
         // If entity is targeting this mob, increase threat
-        if (entity instanceof Mob otherMob && otherMob.getTarget() == mob) {
+        if (candidate.targetingMob()) {
             threat += 20;
         }
         
@@ -134,17 +228,78 @@ public class CustomThreatSensor implements CustomSensor {
     }
     
     public int getThreatLevel(Mob mob, LivingEntity entity) {
-        Map<LivingEntity, Integer> mobThreatLevels = threatLevels.get(mob);
-        return mobThreatLevels != null ? mobThreatLevels.getOrDefault(entity, 0) : 0;
+        ThreatState state = threatStates.get(mob);
+        if (state == null) {
+            return 0;
+        }
+        synchronized (state) {
+            return state.table.get(entity.getId(), Bukkit.getCurrentTick());
+        }
     }
     
+    /**
+     * Saves the remembered threat levels as UUID and decayed level pairs, entities that are gone are dropped.
+     */
     @Override
-    public void detachFromMob(Mob mob) {
-        BukkitTask task = activeTasks.remove(mob);
-        if (task != null) {
-            task.cancel();
+    public void saveState(Mob mob, PersistentDataContainer state) {
+        ThreatState threatState = threatStates.get(mob);
+        if (threatState == null) {
+            return;
         }
-        threatLevels.remove(mob);
+        
+        ByteBuffer buffer;
+        synchronized (threatState) {
+            buffer = ByteBuffer.allocate(threatState.table.size() * SAVED_ENTRY_BYTES);
+            threatState.table.forEach(Bukkit.getCurrentTick(), (entityId, threat) -> {
+                Entity entity = mob.level().getEntity(entityId);
+                if (entity != null) {
+                    UUID uuid = entity.getUUID();
+                    buffer.putLong(uuid.getMostSignificantBits()).putLong(uuid.getLeastSignificantBits()).putInt(threat);
+                }
+            });
+        }
+        if (buffer.position() > 0) {
+            state.set(threatsKey(), PersistentDataType.BYTE_ARRAY, Arrays.copyOf(buffer.array(), buffer.position()));
+        }
+    }
+    
+    /**
+     * Restores saved threat levels for the entities that are loaded again, decay restarts from now.
+     */
+    @Override
+    public void loadState(Mob mob, PersistentDataContainer state) {
+        ThreatState threatState = threatStates.get(mob);
+        byte[] saved = state.get(threatsKey(), PersistentDataType.BYTE_ARRAY);
+        if (threatState == null || saved == null || !(mob.level() instanceof ServerLevel level)) {
+            return;
+        }
+        
+        ByteBuffer buffer = ByteBuffer.wrap(saved);
+        long now = Bukkit.getCurrentTick();
+        synchronized (threatState) {
+            while (buffer.remaining() >= SAVED_ENTRY_BYTES) {
+                Entity entity = level.getEntity(new UUID(buffer.getLong(), buffer.getLong()));
+                int threat = buffer.getInt();
+                if (entity != null) {
+                    threatState.table.add(entity.getId(), threat, maxThreatLevel, now);
+                }
+            }
+        }
+    }
+    
+    private static NamespacedKey threatsKey() {
+        return new NamespacedKey(AsgAI.getInstance(), "threats");
+    }
+    
+    @Override
+    public void detachFromMob(Mob mob) {
+        CustomSensor.super.detachFromMob(mob);
+        threatStates.remove(mob);
+    }
+    
+    @Override
+    public double getDetectionRange() {
+        return detectionRange;
     }
     
     @Override
@@ -161,4 +316,45 @@ public class CustomThreatSensor implements CustomSensor {
     public int getUpdateInterval() {
         return 20; // Update every 1 second
     }
-}
\ No newline at end of file
+    
+    /**
+     * Threat bookkeeping of one mob. The table is written by worker threads, guard access with the state itself.
+     */
+    private static final class ThreatState {
+        private final ThreatTable table;
+        private boolean inFlight; // Main thread only
+        
+        private ThreatState(int capacity, ThreatDecay decay) {
+            this.table = new ThreatTable(capacity, decay);
+        }
+    }
+    
+    /**
+     * Immutable copy of what the assessment needs to know about one nearby entity.
+     */
+    private record ThreatCandidate(
+        int entityId,
+        boolean player,
+        boolean armed,
+        boolean passive,
+        double attackDamage,
+        double distance,
+        float healthPercent,
+        boolean targetingMob
+    ) {
+    }
+    
+    /**
+     * Immutable copy of a mob's surroundings taken on the main thread.
+     */
+    private record ThreatSnapshot(long tick, int currentTargetId, ThreatCandidate[] candidates) {
+    }
+    
+    /**
+     * Outcome of one assessment.
+     * @param targetId The entity id the mob should target, or {@link #NO_TARGET} to keep its current target
+     * @param highestThreat The highest threat level the mob currently perceives
+     */
+    private record ThreatAssessment(int targetId, int highestThreat) {
+    }
+}
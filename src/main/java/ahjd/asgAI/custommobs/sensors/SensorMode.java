@@ -0,0 +1,18 @@
+package ahjd.asgAI.custommobs.sensors;
+
+/**
+ * How the sensors of a template decide when to run.
+ */
+public enum SensorMode {
+    /**
+     * Every sensor runs on its own update interval
+     */
+    POLLING,
+
+    /**
+     * Sensors run when something changes near the mob, such as a player crossing a chunk section,
+     * an entity taking damage, spawning or being removed. A slow fallback poll catches anything the
+     * events miss. Meant for idle mobs like guard posts that mostly wait for something to happen.
+     */
+    EVENT_DRIVEN
+}
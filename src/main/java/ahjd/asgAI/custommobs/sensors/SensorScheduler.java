@@ -0,0 +1,452 @@
+package ahjd.asgAI.custommobs.sensors;
+
+import ahjd.asgAI.AsgAI;
+import ahjd.asgAI.custommobs.ActivationLevel;
+import ahjd.asgAI.custommobs.CustomMobInstance;
+import ahjd.asgAI.custommobs.CustomMobManager;
+import ahjd.asgAI.custommobs.MobPriority;
+import ahjd.asgAI.custommobs.clusters.ClusterManager;
+import ahjd.asgAI.custommobs.clusters.MobCluster;
+import ahjd.asgAI.custommobs.governor.AIGovernor;
+import ahjd.asgAI.custommobs.perception.PerceptionCache;
+import ahjd.asgAI.custommobs.profiler.AIProfiler;
+import ahjd.asgAI.custommobs.profiler.ProfileTimer;
+import net.minecraft.world.entity.Mob;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs every attached sensor from a single tick loop instead of one Bukkit task per sensor per mob.
+ * Registrations are kept in a hashed timing wheel keyed by the tick they are next due on, so a tick
+ * only touches the sensors that actually fire. The first run of each mob is offset by a phase derived
+ * from its entity id, which spreads mobs across the interval while keeping all sensors of one mob
+ * on the same ticks. While the {@link AIGovernor} is throttling, intervals are stretched according
+ * to the priority class of the mob's template, and they are stretched further for mobs in the reduced
+ * {@link ActivationLevel}. Sensors of frozen mobs are parked instead of re-inserted until {@link #resume(Mob)}
+ * is called. Sensors of templates in {@link SensorMode#EVENT_DRIVEN} mode only poll at a fraction of their
+ * rate and are otherwise run by {@link #wake(Mob)}, which the {@link SensorWakeIndex} calls when something
+ * changes near the mob. A woken sensor never runs more often than its own interval. Sensors that support
+ * cluster sharing run once per {@link MobCluster} on the leader's schedule and are skipped for followers.
+ * The scheduler also keeps the {@link PerceptionCache} informed of the widest range among each mob's sensors.
+ */
+public class SensorScheduler {
+    private static final int WHEEL_SIZE = 128; // Must be a power of two
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+
+    private final AIGovernor governor;
+    private final PerceptionCache perception;
+    private final ClusterManager clusters;
+    private final AIProfiler profiler;
+    private final SensorWakeIndex wakeIndex;
+    private final int fallbackMultiplier;
+    private final List<Registration>[] wheel;
+    private final Map<Mob, List<Registration>> registrationsByMob;
+    private List<Registration> spareBucket;
+    private List<Registration> woken;
+    private List<Registration> spareWoken;
+    private long currentTick;
+    private int registrationCount;
+
+    /**
+     * @param governor Governor whose throttling stretches sensor intervals
+     * @param perception Perception cache kept informed of sensor ranges
+     * @param clusters Clusters whose leaders sense for their followers
+     * @param profiler Profiler sensor updates are timed with while it is on
+     * @param fallbackMultiplier How many intervals an event-driven sensor waits between fallback polls
+     */
+    @SuppressWarnings("unchecked")
+    public SensorScheduler(AIGovernor governor, PerceptionCache perception, ClusterManager clusters, AIProfiler profiler,
+                           int fallbackMultiplier) {
+        this.governor = governor;
+        this.perception = perception;
+        this.clusters = clusters;
+        this.profiler = profiler;
+        this.wakeIndex = new SensorWakeIndex(this);
+        this.fallbackMultiplier = Math.max(1, fallbackMultiplier);
+        this.wheel = new List[WHEEL_SIZE];
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            wheel[i] = new ArrayList<>();
+        }
+        this.registrationsByMob = new IdentityHashMap<>();
+        this.spareBucket = new ArrayList<>();
+        this.woken = new ArrayList<>();
+        this.spareWoken = new ArrayList<>();
+    }
+
+    public SensorWakeIndex getWakeIndex() {
+        return wakeIndex;
+    }
+
+    /**
+     * Schedules the sensor to be updated for the given mob every {@link CustomSensor#getUpdateInterval()} ticks.
+     * Scheduling the same sensor twice for one mob has no effect.
+     * @param mob The mob the sensor is attached to
+     * @param sensor The sensor to run
+     */
+    public void schedule(Mob mob, CustomSensor sensor) {
+        schedule(mob, sensor, false);
+    }
+
+    /**
+     * Schedules a sensor that always runs at its own interval, regardless of the governor and of the
+     * mob's activation level. Meant for the sensors that decide those levels.
+     * @param mob The mob the sensor is attached to
+     * @param sensor The sensor to run
+     */
+    public void scheduleExempt(Mob mob, CustomSensor sensor) {
+        schedule(mob, sensor, true);
+    }
+
+    private void schedule(Mob mob, CustomSensor sensor, boolean exempt) {
+        List<Registration> registrations = registrationsByMob.computeIfAbsent(mob, key -> new ArrayList<>(2));
+        for (Registration registration : registrations) {
+            if (registration.sensor == sensor) {
+                return;
+            }
+        }
+
+        int interval = Math.max(1, sensor.getUpdateInterval());
+        CustomMobInstance instance = CustomMobManager.getInstance().getCustomMob(mob.getUUID());
+        MobPriority priority = instance != null ? instance.getPlan().getPriority() : MobPriority.NORMAL;
+        Registration registration = new Registration(mob, sensor, interval, priority, instance, exempt);
+        registration.timer = profiler.timer(AIProfiler.SENSOR, sensor.getName(),
+                instance != null ? instance.getTemplate().getId() : null);
+        registration.eventDriven = !exempt && instance != null
+                && instance.getPlan().getSensorMode() == SensorMode.EVENT_DRIVEN;
+        registration.dueTick = currentTick + 1 + phaseOf(mob, interval);
+        registrations.add(registration);
+        registrationCount++;
+        insert(registration);
+        updatePerceptionRadius(mob, registrations);
+        updateWakeIndex(mob, registrations);
+    }
+
+    /**
+     * Stops updating the sensor for the given mob. Does nothing if it was not scheduled.
+     * @param mob The mob the sensor is attached to
+     * @param sensor The sensor to stop
+     */
+    public void unschedule(Mob mob, CustomSensor sensor) {
+        List<Registration> registrations = registrationsByMob.get(mob);
+        if (registrations == null) {
+            return;
+        }
+
+        for (int i = 0; i < registrations.size(); i++) {
+            Registration registration = registrations.get(i);
+            if (registration.sensor == sensor) {
+                registration.cancelled = true;
+                registrations.remove(i);
+                registrationCount--;
+                break;
+            }
+        }
+
+        if (registrations.isEmpty()) {
+            registrationsByMob.remove(mob);
+            perception.remove(mob);
+            wakeIndex.untrack(mob);
+            clusters.remove(mob);
+        } else {
+            updatePerceptionRadius(mob, registrations);
+            updateWakeIndex(mob, registrations);
+        }
+    }
+
+    /**
+     * Detaches every sensor scheduled for the given mob.
+     * @param mob The mob to detach all sensors from
+     */
+    public void unscheduleAll(Mob mob) {
+        List<Registration> registrations = registrationsByMob.get(mob);
+        if (registrations == null) {
+            return;
+        }
+
+        // Copy first, detachFromMob calls back into unschedule
+        for (Registration registration : new ArrayList<>(registrations)) {
+            registration.sensor.detachFromMob(mob);
+        }
+        // Sensors that override detachFromMob without calling unschedule still have to stop
+        registrations = registrationsByMob.remove(mob);
+        if (registrations != null) {
+            for (Registration registration : registrations) {
+                registration.cancelled = true;
+                registrationCount--;
+            }
+        }
+        perception.remove(mob);
+        wakeIndex.untrack(mob);
+        clusters.remove(mob);
+    }
+
+    /**
+     * Runs the event-driven sensors of the mob as soon as their interval allows, at the latest on the next tick.
+     * Does nothing for polling sensors and for sensors of frozen mobs.
+     * @param mob The mob something changed near
+     */
+    public void wake(Mob mob) {
+        wakeRegistrations(mob);
+        // Shared sensors of a follower only ever run on its leader
+        MobCluster cluster = clusters.getCluster(mob);
+        if (cluster != null && cluster.getLeader() != mob) {
+            wakeRegistrations(cluster.getLeader());
+        }
+    }
+
+    private void wakeRegistrations(Mob mob) {
+        List<Registration> registrations = registrationsByMob.get(mob);
+        if (registrations == null) {
+            return;
+        }
+
+        for (Registration registration : registrations) {
+            if (registration.eventDriven && !registration.woken && !registration.parked) {
+                registration.woken = true;
+                woken.add(registration);
+            }
+        }
+    }
+
+    /**
+     * Puts the parked sensors of a mob that woke up back on the wheel, phase aligned as on attach.
+     * @param mob The mob whose sensors should run again
+     */
+    public void resume(Mob mob) {
+        List<Registration> registrations = registrationsByMob.get(mob);
+        if (registrations == null) {
+            return;
+        }
+
+        for (Registration registration : registrations) {
+            if (registration.parked) {
+                registration.parked = false;
+                registration.dueTick = currentTick + 1 + phaseOf(mob, registration.interval);
+                insert(registration);
+            }
+        }
+    }
+
+    public boolean isScheduled(Mob mob) {
+        return registrationsByMob.containsKey(mob);
+    }
+
+    public int getRegistrationCount() {
+        return registrationCount;
+    }
+
+    /**
+     * Advances the wheel by one tick and updates every sensor that is due.
+     * Must be called exactly once per server tick from the main thread.
+     */
+    public void tick() {
+        long tick = ++currentTick;
+        wakeIndex.tick();
+        runDue(tick);
+        runWoken(tick);
+    }
+
+    private void runDue(long tick) {
+        int slot = (int) (tick & WHEEL_MASK);
+        List<Registration> due = wheel[slot];
+        if (due.isEmpty()) {
+            return;
+        }
+
+        // Swap in the spare bucket so re-inserts into this slot do not disturb the iteration
+        wheel[slot] = spareBucket;
+        spareBucket = due;
+
+        for (int i = 0, size = due.size(); i < size; i++) {
+            Registration registration = due.get(i);
+            if (registration.cancelled) {
+                continue;
+            }
+            if (registration.dueTick > tick) {
+                // Not due yet, the interval is longer than one rotation of the wheel
+                insert(registration);
+                continue;
+            }
+
+            Mob mob = registration.mob;
+            if (mob.isRemoved() || !mob.isAlive()) {
+                // Dead or unloaded mobs drop out on their own, parked sensors included
+                unscheduleAll(mob);
+                continue;
+            }
+
+            ActivationLevel level = registration.activationLevel();
+            if (level == ActivationLevel.FROZEN) {
+                // Stays attached but off the wheel until the mob wakes up
+                registration.parked = true;
+                continue;
+            }
+
+            run(registration, tick);
+            if (!registration.cancelled) {
+                registration.dueTick = tick + pollInterval(registration, level);
+                insert(registration);
+            }
+        }
+
+        due.clear();
+    }
+
+    private void runWoken(long tick) {
+        if (woken.isEmpty()) {
+            return;
+        }
+
+        // Swap so sensors waking other mobs while they run are picked up next tick
+        List<Registration> current = woken;
+        woken = spareWoken;
+        spareWoken = current;
+
+        for (int i = 0, size = current.size(); i < size; i++) {
+            Registration registration = current.get(i);
+            if (registration.cancelled || registration.parked) {
+                registration.woken = false;
+                continue;
+            }
+            ActivationLevel level = registration.activationLevel();
+            if (level == ActivationLevel.FROZEN || registration.mob.isRemoved() || !registration.mob.isAlive()) {
+                // The wheel parks or detaches it on its next fallback poll
+                registration.woken = false;
+                continue;
+            }
+            if (tick - registration.lastRunTick < (long) registration.interval * multiplierOf(registration, level)) {
+                // Ran too recently, stay woken until the interval allows another run
+                woken.add(registration);
+                continue;
+            }
+
+            registration.woken = false;
+            run(registration, tick);
+            if (!registration.cancelled) {
+                // Postpones the fallback poll, the wheel entry moves itself when its old slot comes up
+                registration.dueTick = tick + pollInterval(registration, level);
+            }
+        }
+
+        current.clear();
+    }
+
+    /**
+     * Cancels all registrations without calling back into the sensors.
+     */
+    public void clear() {
+        for (List<Registration> bucket : wheel) {
+            bucket.clear();
+        }
+        woken.clear();
+        registrationsByMob.clear();
+        clusters.clear();
+        registrationCount = 0;
+        perception.clear();
+        wakeIndex.clear();
+    }
+
+    private void run(Registration registration, long tick) {
+        registration.lastRunTick = tick;
+        boolean profiling = profiler.isEnabled();
+        long start = profiling ? System.nanoTime() : 0L;
+        try {
+            MobCluster cluster = registration.sensor.supportsClusterSharing() ? clusters.getCluster(registration.mob) : null;
+            if (cluster == null) {
+                registration.sensor.update(registration.mob);
+            } else if (cluster.getLeader() == registration.mob) {
+                registration.sensor.updateCluster(registration.mob, cluster.getMembers(), cluster.getMargin());
+            }
+            // Followers are covered by their leader
+            if (profiling) {
+                registration.timer.record(System.nanoTime() - start);
+            }
+        } catch (RuntimeException e) {
+            AsgAI.getInstance().getLogger().warning("Sensor " + registration.sensor.getName()
+                    + " failed and was detached: " + e.getMessage());
+            unschedule(registration.mob, registration.sensor);
+            return;
+        }
+        if (registration.eventDriven && !registration.cancelled) {
+            // Follow the mob, it may have moved since it was indexed
+            updateWakeIndex(registration.mob, registrationsByMob.get(registration.mob));
+        }
+    }
+
+    private long pollInterval(Registration registration, ActivationLevel level) {
+        long interval = (long) registration.interval * multiplierOf(registration, level);
+        return registration.eventDriven ? interval * fallbackMultiplier : interval;
+    }
+
+    private int multiplierOf(Registration registration, ActivationLevel level) {
+        if (registration.exempt) {
+            return 1;
+        }
+        return governor.getIntervalMultiplier(registration.priority) * level.getIntervalMultiplier();
+    }
+
+    private void updatePerceptionRadius(Mob mob, List<Registration> registrations) {
+        double radius = 0.0;
+        for (Registration registration : registrations) {
+            radius = Math.max(radius, registration.sensor.getDetectionRange());
+        }
+        perception.setRadius(mob, radius);
+    }
+
+    private void updateWakeIndex(Mob mob, List<Registration> registrations) {
+        double range = 0.0;
+        for (Registration registration : registrations) {
+            if (registration.eventDriven) {
+                range = Math.max(range, registration.sensor.getWakeRange());
+            }
+        }
+        if (range > 0.0) {
+            wakeIndex.track(mob, range);
+        } else {
+            // Event-driven sensors without a range only ever run on their fallback poll
+            wakeIndex.untrack(mob);
+        }
+    }
+
+    private void insert(Registration registration) {
+        wheel[(int) (registration.dueTick & WHEEL_MASK)].add(registration);
+    }
+
+    private static int phaseOf(Mob mob, int interval) {
+        // Fibonacci hashing scatters sequential entity ids evenly over the interval
+        return Math.floorMod(mob.getId() * 0x9E3779B9, interval);
+    }
+
+    private static final class Registration {
+        private final Mob mob;
+        private final CustomSensor sensor;
+        private final int interval;
+        private final MobPriority priority;
+        private final CustomMobInstance instance;
+        private final boolean exempt;
+        private long dueTick;
+        private long lastRunTick = Long.MIN_VALUE / 2;
+        private boolean cancelled;
+        private boolean parked;
+        private boolean eventDriven;
+        private boolean woken;
+        private ProfileTimer timer;
+
+        private Registration(Mob mob, CustomSensor sensor, int interval, MobPriority priority,
+                             CustomMobInstance instance, boolean exempt) {
+            this.mob = mob;
+            this.sensor = sensor;
+            this.interval = interval;
+            this.priority = priority;
+            this.instance = instance;
+            this.exempt = exempt;
+        }
+
+        private ActivationLevel activationLevel() {
+            return exempt || instance == null ? ActivationLevel.FULL : instance.getActivationLevel();
+        }
+    }
+}
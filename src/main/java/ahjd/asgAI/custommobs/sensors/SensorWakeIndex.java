@@ -0,0 +1,291 @@
+package ahjd.asgAI.custommobs.sensors;
+
+import com.destroystokyo.paper.event.entity.EntityRemoveFromWorldEvent;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.world.entity.Mob;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.Level;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.craftbukkit.CraftWorld;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.entity.EntityDamageEvent;
+import org.bukkit.event.entity.EntitySpawnEvent;
+import org.bukkit.event.player.PlayerGameModeChangeEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerMoveEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.player.PlayerRespawnEvent;
+import org.bukkit.event.player.PlayerTeleportEvent;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Maps chunk columns to the event-driven mobs whose sensors cover them, and wakes those sensors
+ * when something happens in a covered column. Each mob is indexed under every column within its
+ * sensor range plus {@link #SECTION_REACH} plus one column of slack, measured from the column it was
+ * in when its sensors last ran.
+ * <p>
+ * Players are only looked at when they cross into another chunk section. Until their next crossing
+ * they stay inside that section, so every point they can reach is within {@link #SECTION_REACH} of
+ * where they crossed. A player who crosses within that reach of a mob's sensor range is watched, and
+ * every tick the mobs whose range covers the player are woken, until the player crosses into a section
+ * out of reach of every mob. A player walking up to a mob is therefore sensed within the sensor's own
+ * interval plus one tick, as with polling. Changes the events below do not report, and mobs that
+ * wandered farther than the slack since their last run, wait for the fallback poll, which runs
+ * {@code sensors.event-fallback-multiplier} times less often than the sensor's interval. Main thread only.
+ */
+public class SensorWakeIndex implements Listener {
+    private static final int CELL_SHIFT = 4; // Chunk columns
+    private static final int SLACK_CELLS = 1;
+    private static final double SECTION_REACH = 16.0 * Math.sqrt(2.0); // Farthest a player gets inside one section
+
+    private final SensorScheduler scheduler;
+    private final Map<Level, Long2ObjectOpenHashMap<List<Mob>>> cellsByLevel = new WeakHashMap<>();
+    private final Map<Mob, Entry> entries = new IdentityHashMap<>();
+    private final Set<Player> watched = new HashSet<>();
+
+    SensorWakeIndex(SensorScheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public int getWatchedCount() {
+        return watched.size();
+    }
+
+    /**
+     * Wakes the event-driven sensors of every mob within sensor range of a position.
+     * @param level The level the change happened in
+     * @param x Position X
+     * @param z Position Z
+     */
+    public void wakeAround(Level level, double x, double z) {
+        List<Mob> mobs = mobsAt(level, x, z);
+        if (mobs == null) {
+            return;
+        }
+
+        for (int i = 0, size = mobs.size(); i < size; i++) {
+            Mob mob = mobs.get(i);
+            double range = entries.get(mob).range;
+            double dx = mob.getX() - x;
+            double dz = mob.getZ() - z;
+            if (dx * dx + dz * dz <= range * range) {
+                scheduler.wake(mob);
+            }
+        }
+    }
+
+    /**
+     * Wakes the mobs around every watched player. Called once per tick by the scheduler.
+     */
+    void tick() {
+        if (watched.isEmpty()) {
+            return;
+        }
+        Iterator<Player> iterator = watched.iterator();
+        while (iterator.hasNext()) {
+            Player player = iterator.next();
+            if (!player.isOnline()) {
+                iterator.remove();
+                continue;
+            }
+            wakeAround(player.getLocation());
+        }
+    }
+
+    /**
+     * Checks whether a player at the position can get within sensor range of any mob before leaving its section.
+     */
+    private boolean isWithinReach(Level level, double x, double z) {
+        List<Mob> mobs = mobsAt(level, x, z);
+        if (mobs == null) {
+            return false;
+        }
+        for (int i = 0, size = mobs.size(); i < size; i++) {
+            Mob mob = mobs.get(i);
+            double reach = entries.get(mob).range + SECTION_REACH;
+            double dx = mob.getX() - x;
+            double dz = mob.getZ() - z;
+            if (dx * dx + dz * dz <= reach * reach) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Nullable
+    private List<Mob> mobsAt(Level level, double x, double z) {
+        Long2ObjectOpenHashMap<List<Mob>> cells = cellsByLevel.get(level);
+        if (cells == null) {
+            return null;
+        }
+        return cells.get(ChunkPos.asLong(((int) Math.floor(x)) >> CELL_SHIFT, ((int) Math.floor(z)) >> CELL_SHIFT));
+    }
+
+    /**
+     * Indexes the mob around its current column, or moves it there if it changed columns since.
+     * @param mob The mob
+     * @param range The widest range of its event-driven sensors
+     */
+    void track(Mob mob, double range) {
+        int cellX = mob.getBlockX() >> CELL_SHIFT;
+        int cellZ = mob.getBlockZ() >> CELL_SHIFT;
+        int radius = (int) Math.ceil((range + SECTION_REACH) / 16.0) + SLACK_CELLS;
+
+        Entry entry = entries.get(mob);
+        if (entry != null) {
+            if (entry.level == mob.level() && entry.cellX == cellX && entry.cellZ == cellZ && entry.radius == radius) {
+                entry.range = range;
+                return;
+            }
+            unlink(mob, entry);
+        }
+
+        entry = new Entry(mob.level(), cellX, cellZ, radius, range);
+        entries.put(mob, entry);
+        Long2ObjectOpenHashMap<List<Mob>> cells = cellsByLevel.computeIfAbsent(entry.level, key -> new Long2ObjectOpenHashMap<>());
+        for (int cx = cellX - radius; cx <= cellX + radius; cx++) {
+            for (int cz = cellZ - radius; cz <= cellZ + radius; cz++) {
+                cells.computeIfAbsent(ChunkPos.asLong(cx, cz), key -> new ArrayList<>(4)).add(mob);
+            }
+        }
+    }
+
+    void untrack(Mob mob) {
+        Entry entry = entries.remove(mob);
+        if (entry != null) {
+            unlink(mob, entry);
+        }
+    }
+
+    void clear() {
+        cellsByLevel.clear();
+        entries.clear();
+        watched.clear();
+    }
+
+    private void unlink(Mob mob, Entry entry) {
+        Long2ObjectOpenHashMap<List<Mob>> cells = cellsByLevel.get(entry.level);
+        if (cells == null) {
+            return;
+        }
+        for (int cx = entry.cellX - entry.radius; cx <= entry.cellX + entry.radius; cx++) {
+            for (int cz = entry.cellZ - entry.radius; cz <= entry.cellZ + entry.radius; cz++) {
+                long key = ChunkPos.asLong(cx, cz);
+                List<Mob> mobs = cells.get(key);
+                if (mobs != null) {
+                    mobs.remove(mob);
+                    if (mobs.isEmpty()) {
+                        cells.remove(key);
+                    }
+                }
+            }
+        }
+    }
+
+    private void wakeAround(Location location) {
+        World world = location.getWorld();
+        if (world != null) {
+            wakeAround(((CraftWorld) world).getHandle(), location.getX(), location.getZ());
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlayerMove(PlayerMoveEvent event) {
+        Location from = event.getFrom();
+        Location to = event.getTo();
+        // Only crossing a chunk section counts as a change worth sensing, watched players are checked every tick
+        if ((from.getBlockX() >> 4) != (to.getBlockX() >> 4)
+                || (from.getBlockY() >> 4) != (to.getBlockY() >> 4)
+                || (from.getBlockZ() >> 4) != (to.getBlockZ() >> 4)) {
+            watch(event.getPlayer(), to);
+            wakeAround(to);
+        }
+    }
+
+    private void watch(Player player, Location location) {
+        World world = location.getWorld();
+        if (world != null && isWithinReach(((CraftWorld) world).getHandle(), location.getX(), location.getZ())) {
+            watched.add(player);
+        } else {
+            watched.remove(player);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlayerTeleport(PlayerTeleportEvent event) {
+        wakeAround(event.getFrom());
+        wakeAround(event.getTo());
+        watch(event.getPlayer(), event.getTo());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        wakeAround(event.getPlayer().getLocation());
+        watch(event.getPlayer(), event.getPlayer().getLocation());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        watched.remove(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerRespawn(PlayerRespawnEvent event) {
+        wakeAround(event.getRespawnLocation());
+        watch(event.getPlayer(), event.getRespawnLocation());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlayerGameModeChange(PlayerGameModeChangeEvent event) {
+        // Changes whether the player can be targeted at all
+        wakeAround(event.getPlayer().getLocation());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onEntityDamage(EntityDamageEvent event) {
+        wakeAround(event.getEntity().getLocation());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onEntitySpawn(EntitySpawnEvent event) {
+        wakeAround(event.getLocation());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onEntityRemove(EntityRemoveFromWorldEvent event) {
+        wakeAround(event.getEntity().getLocation());
+    }
+
+    private static final class Entry {
+        private final Level level;
+        private final int cellX;
+        private final int cellZ;
+        private final int radius;
+        private double range;
+
+        private Entry(Level level, int cellX, int cellZ, int radius, double range) {
+            this.level = level;
+            this.cellX = cellX;
+            this.cellZ = cellZ;
+            this.radius = radius;
+            this.range = range;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package ahjd.asgAI.custommobs.sensors;
+
+/**
+ * Curve threat levels fade along while an entity is not being re-assessed.
+ * Decay is applied lazily whenever a threat level is read, based on the ticks since it was last written.
+ * Levels are fractional while they decay, so frequent writes do not round the decay away.
+ */
+@FunctionalInterface
+public interface ThreatDecay {
+
+    /**
+     * Computes what is left of a threat level after some time.
+     * @param value The threat level when it was last written
+     * @param elapsedTicks Ticks since then, never negative
+     * @return The decayed threat level, 0 once it has faded completely
+     */
+    double apply(double value, long elapsedTicks);
+
+    /**
+     * Loses a fixed amount of threat per period.
+     * @param amount Threat lost each period
+     * @param periodTicks Length of a period in ticks
+     * @return The linear decay curve
+     */
+    static ThreatDecay linear(int amount, int periodTicks) {
+        double perTick = (double) amount / Math.max(1, periodTicks);
+        return (value, elapsedTicks) -> Math.max(0.0, value - perTick * elapsedTicks);
+    }
+
+    /**
+     * Halves the threat level every half-life.
+     * @param halfLifeTicks Ticks after which half of the threat is left
+     * @return The exponential decay curve
+     */
+    static ThreatDecay exponential(int halfLifeTicks) {
+        double halfLife = Math.max(1, halfLifeTicks);
+        return (value, elapsedTicks) -> elapsedTicks == 0
+            ? value
+            : value * Math.pow(0.5, elapsedTicks / halfLife);
+    }
+
+    /**
+     * Never forgets.
+     * @return A curve that keeps threat levels unchanged
+     */
+    static ThreatDecay none() {
+        return (value, elapsedTicks) -> value;
+    }
+}
@@ -0,0 +1,232 @@
+package ahjd.asgAI.custommobs.sensors;
+
+import java.util.Arrays;
+
+/**
+ * Fixed capacity map from entity id to threat level, backed by open addressing over primitive arrays.
+ * Every entry remembers the tick it was last written on and is decayed along a {@link ThreatDecay}
+ * curve when read, so untouched entries cost nothing between reads. Updates and highest threat
+ * selection run in linear time without allocating. When the table is full, a new entity only gets
+ * in by evicting the entry with the lowest current threat. Levels are stored with their fractional
+ * part, so decay that is less than one level between two writes still adds up, and are read as whole
+ * levels.
+ * Not thread safe, callers synchronize externally.
+ */
+public final class ThreatTable {
+    /**
+     * Returned by {@link #highest(int, long)} when no entity qualifies
+     */
+    public static final int NONE = Integer.MIN_VALUE;
+
+    private static final int EMPTY = Integer.MIN_VALUE;
+
+    private final int capacity;
+    private final int mask;
+    private final ThreatDecay decay;
+    private final int[] keys;
+    private final double[] values;
+    private final long[] touchedTicks;
+    private int size;
+
+    /**
+     * @param capacity Maximum number of entities remembered at once
+     * @param decay How threat fades between writes
+     */
+    public ThreatTable(int capacity, ThreatDecay decay) {
+        this.capacity = Math.max(1, capacity);
+        this.decay = decay;
+        // Keep the load factor at or below one half so probe chains stay short
+        int slots = Integer.highestOneBit(this.capacity * 2 - 1) << 1;
+        this.mask = slots - 1;
+        this.keys = new int[slots];
+        this.values = new double[slots];
+        this.touchedTicks = new long[slots];
+        Arrays.fill(keys, EMPTY);
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Gets the number of stored entries, including ones that have decayed to zero but were not written since.
+     * @return The number of stored entries
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the current threat level of an entity.
+     * @param entityId The entity id
+     * @param now The current tick
+     * @return The decayed threat level, or 0 if the entity is not remembered
+     */
+    public int get(int entityId, long now) {
+        int slot = indexOf(entityId);
+        return slot >= 0 ? (int) valueAt(slot, now) : 0;
+    }
+
+    /**
+     * Adds to the decayed threat level of an entity and restarts its decay from now.
+     * @param entityId The entity id
+     * @param delta Threat to add, may be negative
+     * @param max Upper bound of the resulting level
+     * @param now The current tick
+     */
+    public void add(int entityId, int delta, int max, long now) {
+        int slot = indexOf(entityId);
+        double current = slot >= 0 ? valueAt(slot, now) : 0.0;
+        double updated = Math.min(max, Math.max(0.0, current + delta));
+
+        if (slot >= 0) {
+            if (updated < 1.0) {
+                removeAt(slot);
+            } else {
+                values[slot] = updated;
+                touchedTicks[slot] = now;
+            }
+            return;
+        }
+        if (updated < 1.0) {
+            return;
+        }
+
+        if (size >= capacity) {
+            // Entries that faded away are the lowest and go first
+            int lowest = lowestSlot(now);
+            if (valueAt(lowest, now) >= updated) {
+                // Not threatening enough to displace anything we remember
+                return;
+            }
+            removeAt(lowest);
+        }
+        insert(entityId, updated, now);
+    }
+
+    /**
+     * Finds the entity with the highest current threat above a threshold.
+     * @param threshold Entities must have strictly more threat than this
+     * @param now The current tick
+     * @return The entity id, or {@link #NONE}
+     */
+    public int highest(int threshold, long now) {
+        int best = NONE;
+        int bestValue = threshold;
+        for (int slot = 0; slot <= mask; slot++) {
+            if (keys[slot] == EMPTY) {
+                continue;
+            }
+            int value = (int) valueAt(slot, now);
+            if (value > bestValue) {
+                best = keys[slot];
+                bestValue = value;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Visits every entity whose current threat is above zero, in no particular order.
+     * @param now The current tick
+     * @param visitor Receives the entity id and its decayed threat level
+     */
+    public void forEach(long now, EntryVisitor visitor) {
+        for (int slot = 0; slot <= mask; slot++) {
+            if (keys[slot] == EMPTY) {
+                continue;
+            }
+            int value = (int) valueAt(slot, now);
+            if (value > 0) {
+                visitor.visit(keys[slot], value);
+            }
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+    }
+
+    private double valueAt(int slot, long now) {
+        return decay.apply(values[slot], Math.max(0L, now - touchedTicks[slot]));
+    }
+
+    private int indexOf(int entityId) {
+        int slot = hash(entityId);
+        while (true) {
+            int key = keys[slot];
+            if (key == EMPTY) {
+                return -1;
+            }
+            if (key == entityId) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private void insert(int entityId, double value, long now) {
+        int slot = hash(entityId);
+        while (keys[slot] != EMPTY) {
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = entityId;
+        values[slot] = value;
+        touchedTicks[slot] = now;
+        size++;
+    }
+
+    private int lowestSlot(long now) {
+        int lowest = -1;
+        double lowestValue = Double.MAX_VALUE;
+        for (int slot = 0; slot <= mask; slot++) {
+            if (keys[slot] == EMPTY) {
+                continue;
+            }
+            double value = valueAt(slot, now);
+            if (value < lowestValue) {
+                lowest = slot;
+                lowestValue = value;
+            }
+        }
+        return lowest;
+    }
+
+    /**
+     * Removes the entry at the slot and shifts later entries of the probe chain back,
+     * so lookups never need tombstones.
+     */
+    private void removeAt(int slot) {
+        int last = slot;
+        int pos = slot;
+        while (true) {
+            pos = (pos + 1) & mask;
+            int key = keys[pos];
+            if (key == EMPTY) {
+                break;
+            }
+            int ideal = hash(key);
+            boolean staysInPlace = last <= pos ? last < ideal && ideal <= pos : last < ideal || ideal <= pos;
+            if (staysInPlace) {
+                continue;
+            }
+            keys[last] = key;
+            values[last] = values[pos];
+            touchedTicks[last] = touchedTicks[pos];
+            last = pos;
+        }
+        keys[last] = EMPTY;
+        size--;
+    }
+
+    private int hash(int entityId) {
+        int h = entityId * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    @FunctionalInterface
+    public interface EntryVisitor {
+        void visit(int entityId, int threat);
+    }
+}
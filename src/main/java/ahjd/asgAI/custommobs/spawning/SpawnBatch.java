@@ -0,0 +1,100 @@
+package ahjd.asgAI.custommobs.spawning;
+
+import ahjd.asgAI.custommobs.CustomMobTemplate;
+import org.bukkit.entity.LivingEntity;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Handle for a group of spawns queued together on the {@link SpawnQueue}. The future completes on
+ * the server thread with every mob that was spawned, once each location was either spawned or
+ * failed. Cancelling drops the spawns that have not happened yet and completes the future with the
+ * mobs spawned so far.
+ */
+public final class SpawnBatch {
+    private final CustomMobTemplate template;
+    private final String squadId;
+    private final int requested;
+    private final List<LivingEntity> spawned;
+    private final CompletableFuture<List<LivingEntity>> future = new CompletableFuture<>();
+    private int remaining;
+    private int failed;
+    private boolean cancelled;
+
+    SpawnBatch(CustomMobTemplate template, String squadId, int requested) {
+        this.template = template;
+        this.squadId = squadId;
+        this.requested = requested;
+        this.remaining = requested;
+        this.spawned = new ArrayList<>(requested);
+    }
+
+    public CustomMobTemplate getTemplate() {
+        return template;
+    }
+
+    public String getSquadId() {
+        return squadId;
+    }
+
+    public int getRequested() {
+        return requested;
+    }
+
+    public int getSpawned() {
+        return spawned.size();
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+
+    public boolean isDone() {
+        return future.isDone();
+    }
+
+    /**
+     * Gets the future completed with the spawned mobs.
+     * @return The future, completed on the server thread
+     */
+    public CompletableFuture<List<LivingEntity>> getFuture() {
+        return future;
+    }
+
+    /**
+     * Drops the spawns that have not happened yet. Main thread only.
+     */
+    public void cancel() {
+        if (!isDone()) {
+            cancelled = true;
+            complete();
+        }
+    }
+
+    boolean isCancelled() {
+        return cancelled;
+    }
+
+    void recordSpawned(LivingEntity entity) {
+        spawned.add(entity);
+        finishOne();
+    }
+
+    void recordFailed() {
+        failed++;
+        finishOne();
+    }
+
+    private void finishOne() {
+        if (--remaining == 0) {
+            complete();
+        }
+    }
+
+    private void complete() {
+        future.complete(Collections.unmodifiableList(spawned));
+    }
+}
@@ -0,0 +1,142 @@
+package ahjd.asgAI.custommobs.spawning;
+
+import ahjd.asgAI.AsgAI;
+import ahjd.asgAI.custommobs.CustomMobManager;
+import ahjd.asgAI.custommobs.CustomMobTemplate;
+import org.bukkit.GameMode;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.LivingEntity;
+import org.bukkit.entity.Player;
+
+import java.util.Collection;
+import java.util.PriorityQueue;
+
+/**
+ * Spreads large groups of spawns over several ticks. Each tick at most {@code spawnsPerTick} mobs
+ * are spawned and spawning stops early once the tick's time budget is used up. Spawns closer to a
+ * player go first, so the part of a wave players can see arrives before the rest. Main thread only.
+ */
+public class SpawnQueue {
+    private final CustomMobManager manager;
+    private final PriorityQueue<PendingSpawn> queue;
+    private final int spawnsPerTick;
+    private final long budgetNanos;
+    private long nextSequence;
+    private long spawned;
+    private long failed;
+
+    /**
+     * @param manager The manager that spawns the mobs
+     * @param spawnsPerTick Most mobs spawned per tick
+     * @param budgetMillis Milliseconds per tick after which no further mob is spawned
+     */
+    public SpawnQueue(CustomMobManager manager, int spawnsPerTick, double budgetMillis) {
+        this.manager = manager;
+        this.queue = new PriorityQueue<>();
+        this.spawnsPerTick = Math.max(1, spawnsPerTick);
+        this.budgetNanos = (long) (Math.max(0.1, budgetMillis) * 1_000_000L);
+    }
+
+    /**
+     * Queues a mob of the template at every location.
+     * @param template The template, resolved once for the whole batch
+     * @param locations Where to spawn the mobs
+     * @param squadId The squad the mobs join, or null to use the template's squad if it has one
+     * @return The handle of the batch
+     */
+    public SpawnBatch submit(CustomMobTemplate template, Collection<Location> locations, String squadId) {
+        SpawnBatch batch = new SpawnBatch(template, squadId, locations.size());
+        if (locations.isEmpty()) {
+            batch.cancel();
+            return batch;
+        }
+        for (Location location : locations) {
+            queue.add(new PendingSpawn(batch, location.clone(), nearestPlayerDistanceSqr(location), nextSequence++));
+        }
+        return batch;
+    }
+
+    /**
+     * Spawns queued mobs until the per-tick count or time budget runs out.
+     */
+    public void tick() {
+        if (queue.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        int count = 0;
+        while (count < spawnsPerTick && System.nanoTime() - start < budgetNanos) {
+            PendingSpawn spawn = queue.poll();
+            if (spawn == null) {
+                break;
+            }
+            SpawnBatch batch = spawn.batch;
+            if (batch.isCancelled()) {
+                continue;
+            }
+            count++;
+            try {
+                LivingEntity entity = manager.spawnCustomMob(batch.getTemplate(), spawn.location, batch.getSquadId());
+                spawned++;
+                batch.recordSpawned(entity);
+            } catch (RuntimeException e) {
+                failed++;
+                AsgAI.getInstance().getLogger().warning("Failed to spawn custom mob " + batch.getTemplate().getId()
+                    + ": " + e.getMessage());
+                batch.recordFailed();
+            }
+        }
+    }
+
+    public int getQueued() {
+        return queue.size();
+    }
+
+    public long getSpawned() {
+        return spawned;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    public void resetStats() {
+        spawned = 0;
+        failed = 0;
+    }
+
+    /**
+     * Drops every queued spawn and completes their batches with the mobs spawned so far.
+     */
+    public void clear() {
+        for (PendingSpawn spawn : queue) {
+            spawn.batch.cancel();
+        }
+        queue.clear();
+    }
+
+    private static double nearestPlayerDistanceSqr(Location location) {
+        World world = location.getWorld();
+        double nearest = Double.MAX_VALUE;
+        if (world == null) {
+            return nearest;
+        }
+        for (Player player : world.getPlayers()) {
+            if (player.getGameMode() == GameMode.SPECTATOR) {
+                continue;
+            }
+            nearest = Math.min(nearest, player.getLocation().distanceSquared(location));
+        }
+        return nearest;
+    }
+
+    private record PendingSpawn(SpawnBatch batch, Location location, double playerDistanceSqr, long sequence)
+            implements Comparable<PendingSpawn> {
+        @Override
+        public int compareTo(PendingSpawn other) {
+            int byDistance = Double.compare(playerDistanceSqr, other.playerDistanceSqr);
+            return byDistance != 0 ? byDistance : Long.compare(sequence, other.sequence);
+        }
+    }
+}
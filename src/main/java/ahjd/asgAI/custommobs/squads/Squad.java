@@ -0,0 +1,116 @@
+package ahjd.asgAI.custommobs.squads;
+
+import ahjd.asgAI.AsgAI;
+import net.minecraft.world.entity.LivingEntity;
+import net.minecraft.world.entity.Mob;
+import org.bukkit.Bukkit;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Named group of custom mobs that share a {@link SquadBlackboard} and an alert channel.
+ * An alert sets the target of every idle member directly, so one detection informs the whole squad
+ * in time proportional to its size without searching the level. The same target is only broadcast
+ * again once {@link #ALERT_COOLDOWN_TICKS} have passed since its last broadcast. Main thread only.
+ */
+public class Squad {
+    /**
+     * Ticks before an alert about an already broadcast target is broadcast again
+     */
+    public static final int ALERT_COOLDOWN_TICKS = 40;
+
+    private final String id;
+    private final List<Mob> members;
+    private final SquadBlackboard blackboard;
+    private final List<SquadAlertListener> listeners;
+
+    Squad(String id) {
+        this.id = id;
+        this.members = new ArrayList<>();
+        this.blackboard = new SquadBlackboard();
+        this.listeners = new ArrayList<>();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public List<Mob> getMembers() {
+        return Collections.unmodifiableList(members);
+    }
+
+    public int size() {
+        return members.size();
+    }
+
+    public SquadBlackboard getBlackboard() {
+        return blackboard;
+    }
+
+    public void subscribe(SquadAlertListener listener) {
+        listeners.add(listener);
+    }
+
+    public void unsubscribe(SquadAlertListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Reports a spotted target to the squad and alerts the members that have no target yet.
+     * @param source The member that spotted the target
+     * @param target The spotted target
+     * @return true if the alert was broadcast, false if it repeated a recent one
+     */
+    public boolean alert(Mob source, LivingEntity target) {
+        int tick = Bukkit.getCurrentTick();
+        blackboard.reportTarget(target, tick);
+        if (!blackboard.markAlerted(target, tick, ALERT_COOLDOWN_TICKS)) {
+            return false;
+        }
+
+        for (int i = members.size() - 1; i >= 0; i--) {
+            Mob member = members.get(i);
+            if (member.isRemoved() || !member.isAlive()) {
+                // Dead members leave on the next broadcast
+                members.remove(i);
+                blackboard.forget(member);
+                continue;
+            }
+            if (member != source && member.getTarget() == null && member.level() == target.level()) {
+                member.setTarget(target);
+            }
+        }
+
+        SquadAlert alert = new SquadAlert(source, target, tick);
+        for (SquadAlertListener listener : List.copyOf(listeners)) {
+            try {
+                listener.onAlert(this, alert);
+            } catch (RuntimeException e) {
+                AsgAI.getInstance().getLogger().warning("Squad alert listener failed: " + e.getMessage());
+            }
+        }
+        return true;
+    }
+
+    boolean add(Mob mob) {
+        return !members.contains(mob) && members.add(mob);
+    }
+
+    boolean remove(Mob mob) {
+        blackboard.forget(mob);
+        return members.remove(mob);
+    }
+
+    void prune() {
+        for (int i = members.size() - 1; i >= 0; i--) {
+            Mob member = members.get(i);
+            if (member.isRemoved() || !member.isAlive()) {
+                members.remove(i);
+                blackboard.forget(member);
+            }
+        }
+        blackboard.prune(Bukkit.getCurrentTick());
+    }
+}
@@ -0,0 +1,13 @@
+package ahjd.asgAI.custommobs.squads;
+
+import net.minecraft.world.entity.LivingEntity;
+import net.minecraft.world.entity.Mob;
+
+/**
+ * A target spotted by one squad member and broadcast to the rest of its squad.
+ * @param source The member that raised the alert
+ * @param target The entity it spotted
+ * @param tick The server tick the alert was raised on
+ */
+public record SquadAlert(Mob source, LivingEntity target, int tick) {
+}
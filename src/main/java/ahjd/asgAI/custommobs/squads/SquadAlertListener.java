@@ -0,0 +1,15 @@
+package ahjd.asgAI.custommobs.squads;
+
+/**
+ * Receives the alerts of a squad it subscribed to. Called on the main thread.
+ */
+@FunctionalInterface
+public interface SquadAlertListener {
+
+    /**
+     * Called once per new alert, after the squad members have been informed.
+     * @param squad The squad that raised the alert
+     * @param alert The alert
+     */
+    void onAlert(Squad squad, SquadAlert alert);
+}
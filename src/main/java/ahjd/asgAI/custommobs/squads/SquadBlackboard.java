@@ -0,0 +1,132 @@
+package ahjd.asgAI.custommobs.squads;
+
+import net.minecraft.world.entity.LivingEntity;
+import net.minecraft.world.entity.Mob;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Knowledge shared by every member of a squad: the targets any member has seen recently and
+ * the threat the members currently perceive in total. Main thread only.
+ */
+public class SquadBlackboard {
+    /**
+     * Ticks a target stays known after it was last reported
+     */
+    public static final int TARGET_MEMORY_TICKS = 200;
+
+    private final Map<LivingEntity, KnownTarget> knownTargets = new IdentityHashMap<>();
+    private final Map<Mob, Integer> memberThreat = new IdentityHashMap<>();
+    private int aggregateThreat;
+
+    /**
+     * Records that a member has seen the target.
+     * @param target The target seen
+     * @param tick The current tick
+     * @return true if the target was not known yet
+     */
+    public boolean reportTarget(LivingEntity target, int tick) {
+        KnownTarget known = knownTargets.get(target);
+        if (known == null || tick - known.lastSeenTick > TARGET_MEMORY_TICKS) {
+            knownTargets.put(target, new KnownTarget(tick));
+            return true;
+        }
+        known.lastSeenTick = tick;
+        return false;
+    }
+
+    public boolean isKnown(LivingEntity target) {
+        return knownTargets.containsKey(target);
+    }
+
+    /**
+     * Gets the targets reported within the memory window that are still alive.
+     * @param tick The current tick
+     * @return The known targets, most recently seen first
+     */
+    public List<LivingEntity> getKnownTargets(int tick) {
+        prune(tick);
+        List<LivingEntity> targets = new ArrayList<>(knownTargets.keySet());
+        targets.sort((a, b) -> Integer.compare(knownTargets.get(b).lastSeenTick, knownTargets.get(a).lastSeenTick));
+        return targets;
+    }
+
+    /**
+     * Gets the most recently seen target that is still alive.
+     * @param tick The current tick
+     * @return The target, or null if the squad knows of none
+     */
+    @Nullable
+    public LivingEntity getPrimaryTarget(int tick) {
+        prune(tick);
+        LivingEntity primary = null;
+        int latest = Integer.MIN_VALUE;
+        for (Map.Entry<LivingEntity, KnownTarget> entry : knownTargets.entrySet()) {
+            if (entry.getValue().lastSeenTick > latest) {
+                primary = entry.getKey();
+                latest = entry.getValue().lastSeenTick;
+            }
+        }
+        return primary;
+    }
+
+    /**
+     * Sets the threat one member currently perceives, replacing its previous report.
+     * @param member The reporting member
+     * @param threat Its current highest threat level, 0 to withdraw
+     */
+    public void reportThreat(Mob member, int threat) {
+        Integer previous = threat > 0 ? memberThreat.put(member, threat) : memberThreat.remove(member);
+        aggregateThreat += threat - (previous != null ? previous : 0);
+    }
+
+    /**
+     * Gets the sum of the threat every member currently perceives.
+     * @return The aggregate threat
+     */
+    public int getAggregateThreat() {
+        return aggregateThreat;
+    }
+
+    /**
+     * Marks a known target as broadcast unless it was broadcast within the cooldown.
+     * @return true if the target should be broadcast now
+     */
+    boolean markAlerted(LivingEntity target, int tick, int cooldownTicks) {
+        KnownTarget known = knownTargets.get(target);
+        if (known == null || (known.lastAlertTick != KnownTarget.NEVER && tick - known.lastAlertTick < cooldownTicks)) {
+            return false;
+        }
+        known.lastAlertTick = tick;
+        return true;
+    }
+
+    void forget(Mob member) {
+        reportThreat(member, 0);
+    }
+
+    void prune(int tick) {
+        Iterator<Map.Entry<LivingEntity, KnownTarget>> iterator = knownTargets.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<LivingEntity, KnownTarget> entry = iterator.next();
+            if (!entry.getKey().isAlive() || tick - entry.getValue().lastSeenTick > TARGET_MEMORY_TICKS) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static final class KnownTarget {
+        private static final int NEVER = Integer.MIN_VALUE;
+        private int lastSeenTick;
+        private int lastAlertTick = NEVER;
+
+        private KnownTarget(int lastSeenTick) {
+            this.lastSeenTick = lastSeenTick;
+        }
+    }
+}
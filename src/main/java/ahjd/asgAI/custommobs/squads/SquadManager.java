@@ -0,0 +1,96 @@
+package ahjd.asgAI.custommobs.squads;
+
+import net.minecraft.world.entity.Mob;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Keeps track of which squad each custom mob belongs to. A mob is in at most one squad, squads
+ * are created when their first member joins and dropped when their last member leaves.
+ * Main thread only.
+ */
+public class SquadManager {
+    private final Map<String, Squad> squads = new HashMap<>();
+    private final Map<Mob, Squad> squadByMob = new IdentityHashMap<>();
+
+    /**
+     * Adds the mob to the squad with the given id, leaving its previous squad.
+     * @param mob The mob
+     * @param squadId The squad id
+     * @return The squad the mob is now in
+     */
+    public Squad join(Mob mob, String squadId) {
+        Squad current = squadByMob.get(mob);
+        if (current != null && current.getId().equals(squadId)) {
+            return current;
+        }
+        leave(mob);
+
+        Squad squad = squads.computeIfAbsent(squadId, Squad::new);
+        squad.add(mob);
+        squadByMob.put(mob, squad);
+        return squad;
+    }
+
+    /**
+     * Removes the mob from its squad, if it is in one.
+     * @param mob The mob
+     */
+    public void leave(Mob mob) {
+        Squad squad = squadByMob.remove(mob);
+        if (squad != null) {
+            squad.remove(mob);
+            if (squad.size() == 0) {
+                squads.remove(squad.getId());
+            }
+        }
+    }
+
+    @Nullable
+    public Squad getSquad(Mob mob) {
+        return squadByMob.get(mob);
+    }
+
+    @Nullable
+    public Squad getSquad(String squadId) {
+        return squads.get(squadId);
+    }
+
+    public Collection<Squad> getSquads() {
+        return Collections.unmodifiableCollection(squads.values());
+    }
+
+    /**
+     * Creates a fresh squad id for mobs spawned together. Squad ids are saved with hibernated mobs,
+     * so they have to stay unique across restarts.
+     * @return A squad id no other batch uses
+     */
+    public String nextBatchId() {
+        return "batch-" + UUID.randomUUID();
+    }
+
+    /**
+     * Drops dead members and forgotten targets from every squad.
+     */
+    public void cleanup() {
+        for (Squad squad : new ArrayList<>(squads.values())) {
+            squad.prune();
+            if (squad.size() == 0) {
+                squads.remove(squad.getId());
+            }
+        }
+        squadByMob.keySet().removeIf(mob -> mob.isRemoved() || !mob.isAlive());
+    }
+
+    public void clear() {
+        squads.clear();
+        squadByMob.clear();
+    }
+}
@@ -0,0 +1,106 @@
+package ahjd.asgAI.custommobs.zones;
+
+import net.minecraft.core.BlockPos;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.entity.Entity;
+import net.minecraft.world.entity.Mob;
+import net.minecraft.world.level.Level;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A sphere a mob defends, registered with the {@link ZoneRegistry}. The registry keeps the list of
+ * targetable players inside it up to date as players move, so defenders only look for intruders
+ * while the zone is occupied.
+ */
+public final class DefendZone {
+    private final Mob owner;
+    private final Level level;
+    private final BlockPos center;
+    private final double radius;
+    private final List<ServerPlayer> occupants = new ArrayList<>(2);
+    private final List<ZoneListener> listeners = new ArrayList<>(1);
+    private boolean registered = true;
+
+    DefendZone(Mob owner, Level level, BlockPos center, double radius) {
+        this.owner = owner;
+        this.level = level;
+        this.center = center;
+        this.radius = radius;
+    }
+
+    public Mob getOwner() {
+        return owner;
+    }
+
+    public Level getLevel() {
+        return level;
+    }
+
+    public BlockPos getCenter() {
+        return center;
+    }
+
+    public double getRadius() {
+        return radius;
+    }
+
+    public boolean isRegistered() {
+        return registered;
+    }
+
+    public boolean isOccupied() {
+        return !occupants.isEmpty();
+    }
+
+    public boolean isOccupant(Entity entity) {
+        return entity instanceof ServerPlayer player && occupants.contains(player);
+    }
+
+    /**
+     * Gets the targetable players inside the zone.
+     * @return An unmodifiable view of the occupants
+     */
+    public List<ServerPlayer> getOccupants() {
+        return Collections.unmodifiableList(occupants);
+    }
+
+    public void addListener(ZoneListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(ZoneListener listener) {
+        listeners.remove(listener);
+    }
+
+    boolean contains(double x, double y, double z) {
+        double dx = x - center.getX();
+        double dy = y - center.getY();
+        double dz = z - center.getZ();
+        return dx * dx + dy * dy + dz * dz <= radius * radius;
+    }
+
+    void enter(ServerPlayer player) {
+        occupants.add(player);
+        for (int i = 0; i < listeners.size(); i++) {
+            listeners.get(i).onEnter(this, player);
+        }
+    }
+
+    void leave(ServerPlayer player) {
+        if (!occupants.remove(player)) {
+            return;
+        }
+        for (int i = 0; i < listeners.size(); i++) {
+            listeners.get(i).onLeave(this, player);
+        }
+    }
+
+    void markUnregistered() {
+        registered = false;
+        occupants.clear();
+        listeners.clear();
+    }
+}
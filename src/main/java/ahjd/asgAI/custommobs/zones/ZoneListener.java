@@ -0,0 +1,23 @@
+package ahjd.asgAI.custommobs.zones;
+
+import net.minecraft.server.level.ServerPlayer;
+
+/**
+ * Receives players entering and leaving a defend zone. Called on the main thread.
+ */
+public interface ZoneListener {
+
+    /**
+     * Called when a player who can be targeted moves into the zone, or becomes targetable inside it.
+     * @param zone The zone
+     * @param player The player
+     */
+    void onEnter(DefendZone zone, ServerPlayer player);
+
+    /**
+     * Called when a player moves out of the zone, dies, quits or stops being targetable.
+     * @param zone The zone
+     * @param player The player
+     */
+    void onLeave(DefendZone zone, ServerPlayer player);
+}
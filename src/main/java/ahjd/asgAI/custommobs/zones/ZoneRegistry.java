@@ -0,0 +1,288 @@
+package ahjd.asgAI.custommobs.zones;
+
+import ahjd.asgAI.custommobs.perception.PlayerSpatialIndex;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.core.BlockPos;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.entity.Mob;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.Level;
+import org.bukkit.GameMode;
+import org.bukkit.Location;
+import org.bukkit.craftbukkit.CraftWorld;
+import org.bukkit.craftbukkit.entity.CraftPlayer;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.entity.PlayerDeathEvent;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerGameModeChangeEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerMoveEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.player.PlayerRespawnEvent;
+import org.bukkit.event.player.PlayerTeleportEvent;
+import org.bukkit.event.vehicle.VehicleMoveEvent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.WeakHashMap;
+
+/**
+ * Spatial index of the {@link DefendZone}s of every defending mob. Zones are indexed under every chunk
+ * column they overlap, and a player is only checked against the zones of the column they are in, once
+ * per block they or the vehicle they ride move. Entering and leaving a zone is reported to its
+ * listeners, so the cost per tick follows the number of players that moved rather than the number of
+ * zones. Zones whose owner was removed are dropped every {@link #PRUNE_INTERVAL} ticks. Main thread only.
+ */
+public class ZoneRegistry implements Listener {
+    private static final int CELL_SHIFT = 4; // Chunk columns
+    private static final int PRUNE_INTERVAL = 100;
+
+    private final Map<Level, Long2ObjectOpenHashMap<List<DefendZone>>> cellsByLevel = new WeakHashMap<>();
+    private final List<DefendZone> zones = new ArrayList<>();
+    private final Map<UUID, Presence> presences = new HashMap<>();
+    private int ticksUntilPrune = PRUNE_INTERVAL;
+
+    /**
+     * Registers a zone and fills it with the targetable players already inside.
+     * @param owner The defending mob, the zone is dropped once it is removed
+     * @param center The middle of the zone
+     * @param radius The radius of the zone
+     * @return The zone
+     */
+    public DefendZone register(Mob owner, BlockPos center, double radius) {
+        Level level = owner.level();
+        DefendZone zone = new DefendZone(owner, level, center.immutable(), radius);
+        zones.add(zone);
+        Long2ObjectOpenHashMap<List<DefendZone>> cells = cellsByLevel.computeIfAbsent(level, key -> new Long2ObjectOpenHashMap<>());
+        forEachCell(zone, cell -> cells.computeIfAbsent(cell, key -> new ArrayList<>(2)).add(zone));
+
+        for (net.minecraft.world.entity.player.Player player : level.players()) {
+            if (player instanceof ServerPlayer serverPlayer && PlayerSpatialIndex.isEligible(player)
+                    && zone.contains(player.getX(), player.getY(), player.getZ())) {
+                presences.computeIfAbsent(player.getUUID(), key -> new Presence()).enter(serverPlayer, zone);
+            }
+        }
+        return zone;
+    }
+
+    /**
+     * Removes a zone from the index. Its occupants are not told they left.
+     * @param zone The zone
+     */
+    public void unregister(DefendZone zone) {
+        if (!zone.isRegistered()) {
+            return;
+        }
+        zones.remove(zone);
+        Long2ObjectOpenHashMap<List<DefendZone>> cells = cellsByLevel.get(zone.getLevel());
+        if (cells != null) {
+            forEachCell(zone, cell -> {
+                List<DefendZone> list = cells.get(cell);
+                if (list != null && list.remove(zone) && list.isEmpty()) {
+                    cells.remove(cell);
+                }
+            });
+        }
+        for (ServerPlayer occupant : zone.getOccupants()) {
+            Presence presence = presences.get(occupant.getUUID());
+            if (presence != null) {
+                presence.zones.remove(zone);
+            }
+        }
+        zone.markUnregistered();
+    }
+
+    /**
+     * Drops zones of removed mobs every {@link #PRUNE_INTERVAL} ticks.
+     */
+    public void tick() {
+        if (--ticksUntilPrune > 0) {
+            return;
+        }
+        ticksUntilPrune = PRUNE_INTERVAL;
+        for (DefendZone zone : new ArrayList<>(zones)) {
+            if (zone.getOwner().isRemoved()) {
+                unregister(zone);
+            }
+        }
+    }
+
+    public int size() {
+        return zones.size();
+    }
+
+    public void clear() {
+        for (DefendZone zone : zones) {
+            zone.markUnregistered();
+        }
+        zones.clear();
+        cellsByLevel.clear();
+        presences.clear();
+    }
+
+    /**
+     * Re-checks which zones the player is in.
+     */
+    private void update(Player bukkitPlayer, Location location, boolean eligible) {
+        ServerPlayer player = ((CraftPlayer) bukkitPlayer).getHandle();
+        Presence presence = presences.get(player.getUUID());
+        List<DefendZone> inside = eligible && location.getWorld() != null
+            ? zonesAt(((CraftWorld) location.getWorld()).getHandle(), location.getX(), location.getY(), location.getZ())
+            : Collections.emptyList();
+        if (presence == null) {
+            if (inside.isEmpty()) {
+                return;
+            }
+            presence = new Presence();
+            presences.put(player.getUUID(), presence);
+        }
+
+        for (DefendZone zone : new ArrayList<>(presence.zones)) {
+            if (!inside.contains(zone)) {
+                presence.leave(zone);
+            }
+        }
+        for (DefendZone zone : inside) {
+            if (!presence.zones.contains(zone)) {
+                presence.enter(player, zone);
+            }
+        }
+        if (presence.zones.isEmpty()) {
+            presences.remove(player.getUUID());
+        }
+    }
+
+    private void leaveAll(Player bukkitPlayer) {
+        Presence presence = presences.remove(bukkitPlayer.getUniqueId());
+        if (presence != null) {
+            for (DefendZone zone : new ArrayList<>(presence.zones)) {
+                presence.leave(zone);
+            }
+        }
+    }
+
+    private List<DefendZone> zonesAt(Level level, double x, double y, double z) {
+        Long2ObjectOpenHashMap<List<DefendZone>> cells = cellsByLevel.get(level);
+        if (cells == null) {
+            return Collections.emptyList();
+        }
+        List<DefendZone> candidates = cells.get(ChunkPos.asLong(((int) Math.floor(x)) >> CELL_SHIFT, ((int) Math.floor(z)) >> CELL_SHIFT));
+        if (candidates == null) {
+            return Collections.emptyList();
+        }
+        List<DefendZone> inside = new ArrayList<>(2);
+        for (int i = 0, size = candidates.size(); i < size; i++) {
+            DefendZone zone = candidates.get(i);
+            if (zone.contains(x, y, z)) {
+                inside.add(zone);
+            }
+        }
+        return inside;
+    }
+
+    private static void forEachCell(DefendZone zone, CellVisitor visitor) {
+        BlockPos center = zone.getCenter();
+        int radius = (int) Math.ceil(zone.getRadius());
+        for (int cellX = (center.getX() - radius) >> CELL_SHIFT; cellX <= (center.getX() + radius) >> CELL_SHIFT; cellX++) {
+            for (int cellZ = (center.getZ() - radius) >> CELL_SHIFT; cellZ <= (center.getZ() + radius) >> CELL_SHIFT; cellZ++) {
+                visitor.visit(ChunkPos.asLong(cellX, cellZ));
+            }
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlayerMove(PlayerMoveEvent event) {
+        Location from = event.getFrom();
+        Location to = event.getTo();
+        if (from.getBlockX() != to.getBlockX() || from.getBlockY() != to.getBlockY() || from.getBlockZ() != to.getBlockZ()) {
+            update(event.getPlayer(), to, isEligible(event.getPlayer(), event.getPlayer().getGameMode()));
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onVehicleMove(VehicleMoveEvent event) {
+        // Passengers move with their vehicle without a move event of their own
+        Location from = event.getFrom();
+        Location to = event.getTo();
+        if (from.getBlockX() == to.getBlockX() && from.getBlockY() == to.getBlockY() && from.getBlockZ() == to.getBlockZ()) {
+            return;
+        }
+        for (Entity passenger : event.getVehicle().getPassengers()) {
+            if (passenger instanceof Player player) {
+                update(player, player.getLocation(), isEligible(player, player.getGameMode()));
+            }
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlayerTeleport(PlayerTeleportEvent event) {
+        update(event.getPlayer(), event.getTo(), isEligible(event.getPlayer(), event.getPlayer().getGameMode()));
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerChangedWorld(PlayerChangedWorldEvent event) {
+        update(event.getPlayer(), event.getPlayer().getLocation(), isEligible(event.getPlayer(), event.getPlayer().getGameMode()));
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        update(event.getPlayer(), event.getPlayer().getLocation(), isEligible(event.getPlayer(), event.getPlayer().getGameMode()));
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerRespawn(PlayerRespawnEvent event) {
+        update(event.getPlayer(), event.getRespawnLocation(), event.getPlayer().getGameMode() == GameMode.SURVIVAL
+            || event.getPlayer().getGameMode() == GameMode.ADVENTURE);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlayerGameModeChange(PlayerGameModeChangeEvent event) {
+        update(event.getPlayer(), event.getPlayer().getLocation(), isEligible(event.getPlayer(), event.getNewGameMode()));
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerDeath(PlayerDeathEvent event) {
+        leaveAll(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        leaveAll(event.getPlayer());
+    }
+
+    private static boolean isEligible(Player player, GameMode gameMode) {
+        return !player.isDead() && (gameMode == GameMode.SURVIVAL || gameMode == GameMode.ADVENTURE);
+    }
+
+    @FunctionalInterface
+    private interface CellVisitor {
+        void visit(long cell);
+    }
+
+    /**
+     * The zones one player is in, with the player object they were entered with.
+     */
+    private static final class Presence {
+        private final List<DefendZone> zones = new ArrayList<>(2);
+        private ServerPlayer player;
+
+        private void enter(ServerPlayer player, DefendZone zone) {
+            this.player = player;
+            zones.add(zone);
+            zone.enter(player);
+        }
+
+        private void leave(DefendZone zone) {
+            zones.remove(zone);
+            zone.leave(player);
+        }
+    }
+}